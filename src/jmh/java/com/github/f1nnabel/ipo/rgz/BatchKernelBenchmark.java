@@ -0,0 +1,54 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// One stepAll() over a batch of Monte Carlo rockets, scalar versus SIMD.
+// The vectorized case needs the incubator module, added to the fork below.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class BatchKernelBenchmark {
+    @Param({"1024"})
+    public int rockets;
+
+    @Param({"false", "true"})
+    public boolean vectorized;
+
+    private FlightParameters[] parameters;
+    private FlightKernel kernel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FlightParameters nominal = FlightParameters.of(BenchmarkModels.defaultRocket(null));
+        MonteCarloRunner runner = new MonteCarloRunner(nominal)
+                .setPayloadMass(ParameterDistribution.normal(10, 0.5))
+                .setThrustPerKgFuel(ParameterDistribution.normal(3500, 175));
+        parameters = new FlightParameters[rockets];
+        kernel = new FlightKernel(rockets, nominal.getStageCount());
+        kernel.setVectorized(vectorized);
+        for (int i = 0; i < rockets; i++) {
+            parameters[i] = runner.sample(1, i);
+        }
+        reload();
+    }
+
+    @Benchmark
+    public int stepAll() {
+        int active = kernel.stepAll(rockets);
+        if (active == 0) {
+            reload();
+        }
+        return active;
+    }
+
+    private void reload() {
+        for (int i = 0; i < rockets; i++) {
+            kernel.load(i, parameters[i]);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.f1nnabel.ipo.rgz;
+
+final class BenchmarkModels {
+    private BenchmarkModels() {
+    }
+
+    static RocketModel defaultRocket(DatabaseManager dbManager) {
+        RocketModel model = new RocketModel(dbManager);
+        model.setCycleDelay(100);
+        model.setFuelConsumptionPerCycle(0.01);
+        model.setRocketParameters(10, new double[]{5, 5, 5}, new double[]{3, 3, 3}, 3500);
+        return model;
+    }
+
+    static RocketModel withHistory(int samples) {
+        RocketModel model = defaultRocket(null);
+        for (int i = 0; i < samples; i++) {
+            double t = i * 0.1;
+            model.appendSample(t, 100 * Math.sin(t / 50), 10 * t + 500 * Math.sin(t / 20), 34 - t / 100);
+        }
+        model.restoreState(samples * 0.1, 30, 10, 1000, 0, 2, new double[]{3, 3, 1});
+        return model;
+    }
+}
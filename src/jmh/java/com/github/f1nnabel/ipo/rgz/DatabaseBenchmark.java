@@ -0,0 +1,40 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatabaseBenchmark {
+    private DatabaseManager dbManager;
+    private RocketModel model;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dbManager = new DatabaseManager();
+        model = BenchmarkModels.defaultRocket(dbManager);
+        for (int i = 0; i < 100; i++) {
+            model.step();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dbManager.close();
+    }
+
+    @Benchmark
+    public void saveStatistics() {
+        dbManager.saveStatistics(model);
+    }
+
+    @Benchmark
+    public void saveSettings() {
+        dbManager.saveSettings(model);
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Run with -prof gc: gc.alloc.rate.norm must stay at ~0 B/op for kernelStep
+// and for modelStep, where the model records nothing.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlightKernelBenchmark {
+    private FlightParameters parameters;
+    private FlightKernel kernel;
+    private RocketModel model;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = BenchmarkModels.defaultRocket(null);
+        model.setSamplingPolicy(SamplingPolicy.Sink.MEMORY, SamplingPolicy.never());
+        model.setSamplingPolicy(SamplingPolicy.Sink.UI, SamplingPolicy.never());
+        parameters = FlightParameters.of(model);
+        kernel = new FlightKernel(1, parameters.getStageCount());
+        kernel.load(0, parameters);
+    }
+
+    @Benchmark
+    public double kernelStep() {
+        if (kernel.step(0) == FlightKernel.FINISHED) {
+            kernel.load(0, parameters);
+        }
+        return kernel.getAltitude(0);
+    }
+
+    @Benchmark
+    public double modelStep() {
+        if (!model.step()) {
+            model.resetSimulationVariables();
+        }
+        return model.getAltitude();
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GraphPanelBenchmark {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 300;
+
+    @Param({"1000", "100000", "1000000"})
+    public int historyLength;
+
+    private DataWindow.GraphPanel panel;
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RocketModel model = BenchmarkModels.withHistory(historyLength);
+        panel = new DataWindow.GraphPanel(model.getTimeData(), model.getAltitudeData(), "Высота", "Время (с)",
+                "Высота (м)", model.getTimeData().max(), model.getAltitudeData().max());
+        panel.setSize(WIDTH, HEIGHT);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        Graphics2D g = image.createGraphics();
+        try {
+            panel.paint(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
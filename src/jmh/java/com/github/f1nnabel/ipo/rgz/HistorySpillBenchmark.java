@@ -0,0 +1,55 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Appending a long flight with the whole history on the heap versus a
+// bounded ring that spills older chunks, and reading it back in order.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistorySpillBenchmark {
+    private static final int SAMPLES = 4_000_000;
+
+    @Param({"0", "262144"})
+    public int residentLimit;
+
+    private DoubleSeries filled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        filled = append();
+    }
+
+    @Benchmark
+    public DoubleSeries appendFlight() {
+        return append();
+    }
+
+    @Benchmark
+    public double scan() {
+        double sum = 0;
+        for (int i = 0; i < filled.size(); i++) {
+            sum += filled.get(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public DoubleSeries copy() {
+        return filled.copy();
+    }
+
+    private DoubleSeries append() {
+        DoubleSeries series = new DoubleSeries();
+        series.setResidentLimit(residentLimit);
+        for (int i = 0; i < SAMPLES; i++) {
+            series.add(i * 0.1);
+        }
+        return series;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistorySummaryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int historyLength;
+
+    private RocketModel model;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = BenchmarkModels.withHistory(historyLength);
+    }
+
+    // What DataWindow.updateMaxValues() reads on every update.
+    @Benchmark
+    public double runningMax() {
+        return model.getSpeedData().max() + model.getAltitudeData().max() + model.getMassData().max();
+    }
+
+    @Benchmark
+    public double scanMax() {
+        return scan(model.getSpeedData()) + scan(model.getAltitudeData()) + scan(model.getMassData());
+    }
+
+    private static double scan(SeriesView data) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < data.size(); i++) {
+            max = Math.max(max, data.get(i));
+        }
+        return max;
+    }
+}
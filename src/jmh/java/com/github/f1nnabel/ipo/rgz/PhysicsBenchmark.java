@@ -0,0 +1,36 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhysicsBenchmark {
+    private RocketModel model;
+    private double altitude;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        model = BenchmarkModels.defaultRocket(null);
+        altitude = 0;
+    }
+
+    @Benchmark
+    public double updateRocketState() {
+        if (!model.step()) {
+            model.resetSimulationVariables();
+        }
+        return model.getAltitude();
+    }
+
+    @Benchmark
+    public double calculateGravity() {
+        altitude += 1;
+        return RocketModel.calculateGravity(altitude);
+    }
+}
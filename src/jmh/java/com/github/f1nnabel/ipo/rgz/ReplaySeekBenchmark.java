@@ -0,0 +1,53 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Seeking a recorded flight to random times: from the nearest keyframe at the
+// default interval versus a single keyframe at launch, which re-integrates
+// the flight from the start like a log without keyframes would.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplaySeekBenchmark {
+    @Param({"1", "100000"})
+    public double keyframeInterval;
+
+    private File file;
+    private FlightLog log;
+    private FlightReplay replay;
+    private final SplittableRandom random = new SplittableRandom(1);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        RocketModel model = BenchmarkModels.defaultRocket(null);
+        file = File.createTempFile("replay", ".rlog");
+        FlightRecorder recorder = new FlightRecorder(model, file, keyframeInterval);
+        HeadlessSimulation simulation = new HeadlessSimulation(model);
+        simulation.setRecorder(recorder);
+        simulation.run();
+        recorder.close();
+        log = FlightLog.open(file);
+        replay = new FlightReplay(log);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        replay.close();
+        log.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public double seek() {
+        replay.seek(random.nextDouble(log.getStartTime(), log.getEndTime()));
+        return replay.getModel().getAltitude();
+    }
+}
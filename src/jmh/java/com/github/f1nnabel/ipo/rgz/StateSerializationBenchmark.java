@@ -0,0 +1,54 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateSerializationBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int historyLength;
+
+    // sim: binary .sim file, json: streaming JSON export and import
+    @Param({"sim", "json"})
+    public String format;
+
+    private RocketController source;
+    private RocketController target;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        source = new RocketController(BenchmarkModels.withHistory(historyLength));
+        target = new RocketController(BenchmarkModels.defaultRocket(null));
+        file = File.createTempFile("rocket-state", "." + format);
+        save();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long save() {
+        if ("json".equals(format)) {
+            source.exportSimulationJson(file);
+        } else {
+            source.saveSimulationState(file);
+        }
+        return file.length();
+    }
+
+    @Benchmark
+    public int load() {
+        target.loadSimulationState(file);
+        return target.getModel().getTimeData().size();
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of readState() for observers while one thread steps the flight.
+// RocketStateConcurrencyTest checks that those reads are never torn.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateSnapshotStressBenchmark {
+    private RocketModel model;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        model = BenchmarkModels.defaultRocket(null);
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        final RocketState state = new RocketState();
+    }
+
+    @Benchmark
+    @Group("flight")
+    @GroupThreads(1)
+    public boolean simulation() {
+        if (!model.step()) {
+            model.resetSimulationVariables();
+        }
+        return true;
+    }
+
+    @Benchmark
+    @Group("flight")
+    @GroupThreads(3)
+    public RocketState observer(Reader reader) {
+        return model.readState(reader.state);
+    }
+}
@@ -0,0 +1,395 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+// Autosave as a small JSON header with the rocket parameters plus a binary
+// journal of checkpoints. Every checkpoint carries only the samples appended
+// since the previous one and is guarded by a CRC, so a torn write at the end
+// of the journal is simply ignored on recovery. Samples pass through the
+// model's FILE sampling policy; samples recorded for an event are always kept.
+public class AutosaveManager implements AutoCloseable {
+    public static final long DEFAULT_INTERVAL_MS = 1000;
+    public static final String JOURNAL_SUFFIX = ".journal";
+
+    private static final int AUTOSAVE_VERSION = 1;
+    private static final int CHECKPOINT_MAGIC = 0x52534A31;
+
+    private final File headerFile;
+    private final File journalFile;
+    private final long intervalNanos;
+    private final ExecutorService executor;
+    private final AtomicBoolean saveInFlight = new AtomicBoolean(false);
+
+    private long lastRequestNanos;
+    private boolean hasRequested = false;
+
+    private Header writtenHeader;
+    private int writtenGeneration;
+    private int savedSamples;
+    private int journalSamples;
+    private int nextEvent;
+    private SamplingPolicy filePolicy;
+    private FileOutputStream journalStream;
+
+    public AutosaveManager(File headerFile) {
+        this(headerFile, DEFAULT_INTERVAL_MS);
+    }
+
+    public AutosaveManager(File headerFile, long intervalMillis) {
+        this.headerFile = headerFile;
+        this.journalFile = journalFileFor(headerFile);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void requestSave(RocketModel model) {
+        long now = System.nanoTime();
+        if (hasRequested && now - lastRequestNanos < intervalNanos) {
+            return;
+        }
+        if (!saveInFlight.compareAndSet(false, true)) {
+            return;
+        }
+        hasRequested = true;
+        lastRequestNanos = now;
+        submit(new Checkpoint(model));
+    }
+
+    // Queues a checkpoint regardless of the interval, e.g. right before close().
+    public void saveNow(RocketModel model) {
+        saveInFlight.set(true);
+        submit(new Checkpoint(model));
+    }
+
+    private void submit(Checkpoint checkpoint) {
+        executor.execute(() -> {
+            try {
+                write(checkpoint);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                saveInFlight.set(false);
+            }
+        });
+    }
+
+    // Writes the checkpoints already queued, then closes the journal.
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeJournal();
+    }
+
+    private void write(Checkpoint checkpoint) throws IOException {
+        if (journalStream == null || !checkpoint.header.equals(writtenHeader)
+                || checkpoint.historyGeneration != writtenGeneration || checkpoint.sampleCount < savedSamples) {
+            startNewJournal(checkpoint.header);
+            writtenGeneration = checkpoint.historyGeneration;
+            filePolicy = null;
+        }
+        if (checkpoint.policy != filePolicy) {
+            filePolicy = checkpoint.policy;
+            filePolicy.reset();
+        }
+
+        ByteArrayOutputStream samples = new ByteArrayOutputStream();
+        DataOutputStream samplesOut = new DataOutputStream(samples);
+        int count = 0;
+        for (int i = savedSamples; i < checkpoint.sampleCount; i++) {
+            while (nextEvent < checkpoint.eventCount && checkpoint.events.get(nextEvent) < i) {
+                nextEvent++;
+            }
+            boolean event = nextEvent < checkpoint.eventCount && checkpoint.events.get(nextEvent) == i;
+            double time = checkpoint.time.get(i);
+            double speed = checkpoint.speed.get(i);
+            double altitude = checkpoint.altitude.get(i);
+            double mass = checkpoint.mass.get(i);
+            if (SamplingPolicy.sample(filePolicy, event, i, time, speed, altitude, mass)) {
+                samplesOut.writeDouble(time);
+                samplesOut.writeDouble(speed);
+                samplesOut.writeDouble(altitude);
+                samplesOut.writeDouble(mass);
+                count++;
+            }
+        }
+        samplesOut.flush();
+        // the views outlive a reset, but then they and the state may come from
+        // different runs; the next checkpoint starts a new journal
+        if (checkpoint.model.getHistoryGeneration() != checkpoint.historyGeneration) {
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(journalSamples);
+        out.writeInt(count);
+        samples.writeTo(out);
+        out.writeDouble(checkpoint.totalTime);
+        out.writeDouble(checkpoint.currentMass);
+        out.writeDouble(checkpoint.speedValue);
+        out.writeDouble(checkpoint.altitudeValue);
+        out.writeDouble(checkpoint.horizontalDistance);
+        out.writeInt(checkpoint.remainingStages);
+        out.writeInt(checkpoint.fuelMasses.length);
+        for (double fuel : checkpoint.fuelMasses) {
+            out.writeDouble(fuel);
+        }
+        out.flush();
+
+        byte[] payload = buffer.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(payload.length + 16);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeInt(CHECKPOINT_MAGIC);
+        recordOut.writeInt(payload.length);
+        recordOut.write(payload);
+        recordOut.writeLong(crc.getValue());
+        journalStream.write(record.toByteArray());
+        journalStream.getChannel().force(false);
+
+        savedSamples = checkpoint.sampleCount;
+        journalSamples += count;
+    }
+
+    // The previous journal stays in place until the new header is: the empty
+    // journal is created under a temporary name and renamed over it last.
+    private void startNewJournal(Header header) throws IOException {
+        closeJournal();
+        File tmp = new File(headerFile.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(new FileWriter(tmp))) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(header, writer);
+        }
+        File journalTmp = new File(journalFile.getPath() + ".tmp");
+        new FileOutputStream(journalTmp, false).close();
+        Files.move(tmp.toPath(), headerFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(journalTmp.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        journalStream = new FileOutputStream(journalFile, true);
+        writtenHeader = header;
+        savedSamples = 0;
+        journalSamples = 0;
+        nextEvent = 0;
+    }
+
+    private void closeJournal() {
+        if (journalStream != null) {
+            try {
+                journalStream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            journalStream = null;
+        }
+    }
+
+    public static File journalFileFor(File headerFile) {
+        return new File(headerFile.getPath() + JOURNAL_SUFFIX);
+    }
+
+    public static boolean isAutosave(File file) {
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(file)))) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return false;
+            }
+            reader.beginObject();
+            return reader.hasNext() && "autosaveVersion".equals(reader.nextName());
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    public static void recover(File headerFile, RocketModel target) throws IOException {
+        Header header;
+        try (Reader reader = new BufferedReader(new FileReader(headerFile))) {
+            header = new Gson().fromJson(reader, Header.class);
+        }
+        if (header == null || header.autosaveVersion != AUTOSAVE_VERSION) {
+            throw new IOException("Unsupported autosave file: " + headerFile);
+        }
+
+        RocketModel restored = new RocketModel(null);
+        restored.setCycleDelay(header.cycleDelay);
+        restored.setFuelConsumptionPerCycle(header.fuelConsumptionPerCycle);
+        restored.setRocketParameters(header.payloadMass, header.stageMasses.clone(),
+                header.initialFuelMasses.clone(), header.thrustPerKgFuel,
+                header.stageThrustPerKgFuel == null ? null : header.stageThrustPerKgFuel.clone(),
+                header.stageFuelConsumption == null ? null : header.stageFuelConsumption.clone());
+        restored.setTimeStep(header.deltaTime);
+
+        File journalFile = journalFileFor(headerFile);
+        if (journalFile.exists()) {
+            replayJournal(journalFile, restored);
+        }
+        target.copyFrom(restored);
+    }
+
+    private static void replayJournal(File journalFile, RocketModel restored) throws IOException {
+        int samples = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            while (true) {
+                byte[] payload;
+                long storedCrc;
+                try {
+                    if (in.readInt() != CHECKPOINT_MAGIC) {
+                        return;
+                    }
+                    int length = in.readInt();
+                    if (length < 0 || length > journalFile.length()) {
+                        return;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    storedCrc = in.readLong();
+                } catch (EOFException e) {
+                    return;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != storedCrc) {
+                    return;
+                }
+
+                DataInputStream block = new DataInputStream(new ByteArrayInputStream(payload));
+                int from = block.readInt();
+                int count = block.readInt();
+                if (from != samples) {
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    restored.appendSample(block.readDouble(), block.readDouble(), block.readDouble(), block.readDouble());
+                }
+                samples += count;
+                double totalTime = block.readDouble();
+                double currentMass = block.readDouble();
+                double speed = block.readDouble();
+                double altitude = block.readDouble();
+                double horizontalDistance = block.readDouble();
+                int remainingStages = block.readInt();
+                double[] fuelMasses = new double[block.readInt()];
+                for (int i = 0; i < fuelMasses.length; i++) {
+                    fuelMasses[i] = block.readDouble();
+                }
+                restored.restoreState(totalTime, currentMass, speed, altitude, horizontalDistance, remainingStages, fuelMasses);
+            }
+        }
+    }
+
+    private static final class Header {
+        int autosaveVersion = AUTOSAVE_VERSION;
+        double payloadMass;
+        double[] stageMasses;
+        double[] initialFuelMasses;
+        double thrustPerKgFuel;
+        int cycleDelay;
+        double fuelConsumptionPerCycle;
+        double deltaTime;
+        // absent in headers written before per-stage engines
+        double[] stageThrustPerKgFuel;
+        double[] stageFuelConsumption;
+
+        Header() {
+        }
+
+        Header(RocketModel model) {
+            payloadMass = model.getPayloadMass();
+            stageMasses = model.getStageMasses().clone();
+            initialFuelMasses = model.getInitialFuelMasses().clone();
+            thrustPerKgFuel = model.getThrustPerKgFuel();
+            cycleDelay = model.getCycleDelay();
+            fuelConsumptionPerCycle = model.getFuelConsumptionPerCycle();
+            deltaTime = model.getDeltaTime();
+            stageThrustPerKgFuel = model.getStageThrustPerKgFuel() == null ? null : model.getStageThrustPerKgFuel().clone();
+            stageFuelConsumption = model.getStageFuelConsumption() == null ? null : model.getStageFuelConsumption().clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Header)) {
+                return false;
+            }
+            Header other = (Header) o;
+            return payloadMass == other.payloadMass
+                    && Arrays.equals(stageMasses, other.stageMasses)
+                    && Arrays.equals(initialFuelMasses, other.initialFuelMasses)
+                    && thrustPerKgFuel == other.thrustPerKgFuel
+                    && cycleDelay == other.cycleDelay
+                    && fuelConsumptionPerCycle == other.fuelConsumptionPerCycle
+                    && deltaTime == other.deltaTime
+                    && Arrays.equals(stageThrustPerKgFuel, other.stageThrustPerKgFuel)
+                    && Arrays.equals(stageFuelConsumption, other.stageFuelConsumption);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(stageMasses) * 31 + Double.hashCode(payloadMass);
+        }
+    }
+
+    private static final class Checkpoint {
+        final RocketModel model;
+        final Header header;
+        final int historyGeneration;
+        final SeriesView time;
+        final SeriesView speed;
+        final SeriesView altitude;
+        final SeriesView mass;
+        final int sampleCount;
+        final SamplingPolicy policy;
+        final SeriesView events;
+        final int eventCount;
+        final double totalTime;
+        final double currentMass;
+        final double speedValue;
+        final double altitudeValue;
+        final double horizontalDistance;
+        final int remainingStages;
+        final double[] fuelMasses;
+
+        Checkpoint(RocketModel model) {
+            this.model = model;
+            header = new Header(model);
+            historyGeneration = model.getHistoryGeneration();
+            time = model.getTimeData();
+            speed = model.getSpeedData();
+            altitude = model.getAltitudeData();
+            mass = model.getMassData();
+            RocketState state = model.readState(new RocketState());
+            sampleCount = Math.min(state.getSampleCount(),
+                    Math.min(Math.min(time.size(), speed.size()), Math.min(altitude.size(), mass.size())));
+            policy = model.getSamplingPolicy(SamplingPolicy.Sink.FILE);
+            events = model.getEventSamples();
+            eventCount = events.size();
+            totalTime = state.getTotalTime();
+            currentMass = state.getCurrentMass();
+            speedValue = state.getSpeed();
+            altitudeValue = state.getAltitude();
+            horizontalDistance = state.getHorizontalDistance();
+            remainingStages = state.getRemainingStages();
+            fuelMasses = state.getFuelMasses();
+        }
+    }
+}
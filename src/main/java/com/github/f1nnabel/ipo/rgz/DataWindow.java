@@ -3,17 +3,18 @@ package com.github.f1nnabel.ipo.rgz;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.geom.Path2D;
-import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
 
-public class DataWindow extends JFrame implements RocketObserver {
-    private List<Double> timeData = new ArrayList<>();
-    private List<Double> speedData = new ArrayList<>();
-    private List<Double> altitudeData = new ArrayList<>();
-    private List<Double> massData = new ArrayList<>();
+public class DataWindow extends JFrame implements TelemetryObserver {
+    // Buckets requested per past run; about the pixel width of a graph.
+    public static final int HISTORY_POINTS = 1000;
 
-    private double time = 0;
+    private SeriesView timeData;
+    private SeriesView speedData;
+    private SeriesView altitudeData;
+    private SeriesView massData;
+
+    // changes whenever the model replaces its history, e.g. on a reset
+    private int historyGeneration;
 
     private GraphPanel speedPanel;
     private GraphPanel altitudePanel;
@@ -29,35 +30,61 @@ public class DataWindow extends JFrame implements RocketObserver {
     public DataWindow(RocketController controller) {
         this.controller = controller;
         setTitle("Данные");
-        setSize(900, 300);
-        setLayout(new GridLayout(1, 3));
 
+        historyGeneration = controller.getModel().getHistoryGeneration();
         timeData = controller.getModel().getTimeData();
         speedData = controller.getModel().getSpeedData();
         altitudeData = controller.getModel().getAltitudeData();
         massData = controller.getModel().getMassData();
 
         updateMaxValues();
+        initPanels();
+
+        controller.getModel().addObserver(this);
+
+        setVisible(true);
+    }
+
+    // Shows a finished run from the database instead of the live model.
+    public DataWindow(RunTelemetry telemetry) {
+        setTitle("Данные: запуск №" + telemetry.getRunId());
+
+        timeData = telemetry.getTimeData();
+        speedData = telemetry.getSpeedData();
+        altitudeData = telemetry.getAltitudeData();
+        massData = telemetry.getMassData();
+
+        maxTime = timeData.max();
+        maxSpeed = speedData.max();
+        maxAltitude = altitudeData.max();
+        maxMass = massData.max();
+        initPanels();
+
+        setVisible(true);
+    }
+
+    private void initPanels() {
+        setSize(900, 300);
+        setLayout(new GridLayout(1, 3));
 
         speedPanel = new GraphPanel(timeData, speedData, "Скорость", "Время (с)", "Скорость (м/с)", maxTime, maxSpeed);
         altitudePanel = new GraphPanel(timeData, altitudeData, "Высота", "Время (с)", "Высота (м)", maxTime, maxAltitude);
         massPanel = new GraphPanel(timeData, massData, "Масса", "Время (с)", "Масса (кг)", maxTime, maxMass);
+        speedPanel.setHistoryGeneration(historyGeneration);
+        altitudePanel.setHistoryGeneration(historyGeneration);
+        massPanel.setHistoryGeneration(historyGeneration);
 
         add(speedPanel);
         add(altitudePanel);
         add(massPanel);
-
-        controller.getModel().addObserver(this);
-
-        setVisible(true);
     }
 
 
 
     @Override
-    public void onUpdateStatus(double currentMass, double speed, double altitude, double horizontalDistance,
-                               int remainingStages, double[] fuelMasses, double[] initialFuelMasses) {
+    public void onFrame(TelemetryFrame frame) {
         SwingUtilities.invokeLater(() -> {
+            historyGeneration = controller.getModel().getHistoryGeneration();
             timeData = controller.getModel().getTimeData();
             speedData = controller.getModel().getSpeedData();
             altitudeData = controller.getModel().getAltitudeData();
@@ -68,9 +95,10 @@ public class DataWindow extends JFrame implements RocketObserver {
             speedPanel.updateData(timeData, speedData, maxTime, maxSpeed);
             altitudePanel.updateData(timeData, altitudeData, maxTime, maxAltitude);
             massPanel.updateData(timeData, massData, maxTime, maxMass);
+            speedPanel.setHistoryGeneration(historyGeneration);
+            altitudePanel.setHistoryGeneration(historyGeneration);
+            massPanel.setHistoryGeneration(historyGeneration);
 
-
-            controller.saveSimulationState(new File("rocket_simulation_state.json"));
             speedPanel.repaint();
             altitudePanel.repaint();
             massPanel.repaint();
@@ -78,16 +106,16 @@ public class DataWindow extends JFrame implements RocketObserver {
     }
 
 
+    @Override
+    public int getMaxUpdateRate() {
+        return UI_UPDATE_RATE;
+    }
+
     @Override
     public void onStageSeparation(int stageNumber) {
     }
 
     public void resetData() {
-        timeData.clear();
-        speedData.clear();
-        altitudeData.clear();
-        massData.clear();
-        time = 0;
         maxTime = 0;
         maxSpeed = 0;
         maxAltitude = 0;
@@ -95,20 +123,26 @@ public class DataWindow extends JFrame implements RocketObserver {
     }
     private void updateMaxValues() {
         maxTime = controller.getModel().getTotalTime();
-        maxSpeed = controller.getModel().getSpeedData().stream().max(Double::compare).orElse(0.0);
-        maxAltitude = controller.getModel().getAltitudeData().stream().max(Double::compare).orElse(0.0);
-        maxMass = controller.getModel().getMassData().stream().max(Double::compare).orElse(0.0);
+        maxSpeed = controller.getModel().getSpeedData().max();
+        maxAltitude = controller.getModel().getAltitudeData().max();
+        maxMass = controller.getModel().getMassData().max();
     }
-    private class GraphPanel extends JPanel {
-        private List<Double> xData;
-        private List<Double> yData;
+    static class GraphPanel extends JPanel {
+        private SeriesView xData;
+        private SeriesView yData;
         private String title;
         private String xLabel;
         private String yLabel;
 
         private double maxX;
         private double maxY;
-        public GraphPanel(List<Double> xData, List<Double> yData, String title, String xLabel, String yLabel, double maxX, double maxY) {
+
+        private final MinMaxPyramid pyramid = new MinMaxPyramid();
+        private final double[] range = new double[2];
+        private int historyGeneration;
+        private int pyramidGeneration;
+
+        public GraphPanel(SeriesView xData, SeriesView yData, String title, String xLabel, String yLabel, double maxX, double maxY) {
             this.xData = xData;
             this.yData = yData;
             this.title = title;
@@ -120,13 +154,18 @@ public class DataWindow extends JFrame implements RocketObserver {
 
 
 
-        public void updateData(List<Double> xData, List<Double> yData, double maxX, double maxY) {
+        public void updateData(SeriesView xData, SeriesView yData, double maxX, double maxY) {
             this.xData = xData;
             this.yData = yData;
             this.maxX = maxX;
             this.maxY = maxY;
         }
 
+        // A different generation means the series were replaced, not appended to.
+        public void setHistoryGeneration(int historyGeneration) {
+            this.historyGeneration = historyGeneration;
+        }
+
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
@@ -140,16 +179,6 @@ public class DataWindow extends JFrame implements RocketObserver {
             int width = getWidth();
             int height = getHeight();
 
-            double xMax = maxTime;
-            double yMax = 0;
-            if (title.equals("Скорость")) {
-                yMax = maxSpeed;
-            } else if (title.equals("Высота")) {
-                yMax = maxAltitude;
-            } else if (title.equals("Масса")) {
-                yMax = maxMass;
-            }
-
             g2.setColor(Color.WHITE);
             g2.fillRect(0, 0, width, height);
 
@@ -163,9 +192,6 @@ public class DataWindow extends JFrame implements RocketObserver {
 
             g2.drawString(title, width / 2 - g2.getFontMetrics().stringWidth(title) / 2, labelPadding);
 
-            double xScale = (width - 2 * padding) / xMax;
-            double yScale = (height - 2 * padding) / yMax;
-
             g2.setColor(Color.LIGHT_GRAY);
             for (int i = 0; i < 10; i++) {
                 int x = padding + i * (width - 2 * padding) / 10;
@@ -176,15 +202,44 @@ public class DataWindow extends JFrame implements RocketObserver {
 
             g2.setColor(Color.BLUE);
 
-            if (xData.size() > 1) {
+            int count = Math.min(xData.size(), yData.size());
+            if (count > 1) {
+                int plotWidth = Math.max(1, width - padding * 2);
+                int plotHeight = height - padding * 2;
                 Path2D.Double path = new Path2D.Double();
-                for (int i = 0; i < xData.size(); i++) {
-                    double x = xData.get(i) / maxX * (getWidth() - padding * 2) + padding;
-                    double y = getHeight() - padding - (yData.get(i) / maxY * (getHeight() - padding * 2));
-                    if (i == 0) {
-                        path.moveTo(x, y);
-                    } else {
-                        path.lineTo(x, y);
+                if (count <= plotWidth) {
+                    for (int i = 0; i < count; i++) {
+                        double x = xData.get(i) / maxX * plotWidth + padding;
+                        double y = height - padding - (yData.get(i) / maxY * plotHeight);
+                        if (i == 0) {
+                            path.moveTo(x, y);
+                        } else {
+                            path.lineTo(x, y);
+                        }
+                    }
+                } else {
+                    // one min..max segment per pixel column over the samples whose x falls into it;
+                    // sampling policies may space samples unevenly, so columns are found by x value
+                    syncPyramid(count);
+                    int from = 0;
+                    boolean started = false;
+                    for (int column = 0; column < plotWidth && from < count; column++) {
+                        int to = column == plotWidth - 1 ? count
+                                : firstIndexAtOrAfter((column + 1) * maxX / plotWidth, from, count);
+                        if (to > from) {
+                            pyramid.range(yData, from, to, range);
+                            double x = column + padding;
+                            double yLow = height - padding - (range[0] / maxY * plotHeight);
+                            double yHigh = height - padding - (range[1] / maxY * plotHeight);
+                            if (!started) {
+                                path.moveTo(x, yLow);
+                                started = true;
+                            } else {
+                                path.lineTo(x, yLow);
+                            }
+                            path.lineTo(x, yHigh);
+                            from = to;
+                        }
                     }
                 }
                 g2.setColor(Color.RED);
@@ -192,5 +247,30 @@ public class DataWindow extends JFrame implements RocketObserver {
             }
 
         }
+
+        private void syncPyramid(int count) {
+            if (historyGeneration != pyramidGeneration || count < pyramid.size()) {
+                pyramid.clear();
+                pyramidGeneration = historyGeneration;
+            }
+            for (int i = pyramid.size(); i < count; i++) {
+                pyramid.append(yData.get(i));
+            }
+        }
+
+        // Binary search over [from, to); x never decreases because it is the flight time.
+        private int firstIndexAtOrAfter(double x, int from, int to) {
+            int low = from;
+            int high = to;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (xData.get(mid) < x) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
     }
 }
@@ -2,20 +2,100 @@ package com.github.f1nnabel.ipo.rgz;
 
 import java.sql.*;
 
-public class DatabaseManager {
-    private static final String DB_URL = "jdbc:sqlite:simulation.db";
+// Owns one long-lived connection with cached statements for settings, plus
+// the telemetry writer's connection and the run-history reader. The schema
+// is created and migrated once per process. Use getDefault() unless a
+// separate lifecycle is needed, and close() when done.
+public class DatabaseManager implements AutoCloseable {
+    static final String DB_URL = "jdbc:sqlite:simulation.db";
+    private static final int TELEMETRY_QUEUE_CAPACITY = 8192;
+    private static final int TELEMETRY_BATCH_SIZE = 512;
+    private static final long TELEMETRY_FLUSH_INTERVAL_MS = 250;
+    private static final int BUSY_TIMEOUT_MS = 5000;
+
+    // PRAGMA user_version of the current schema; 0 is the original
+    // settings/statistics layout, 3 moved stages into settings_stages.
+    static final int SCHEMA_VERSION = 3;
+
+    private static final String INSERT_SETTINGS = "INSERT INTO settings (payloadMass, thrustPerKgFuel, cycleDelay, fuelConsumptionPerCycle) VALUES (?, ?, ?, ?);";
+    private static final String INSERT_STAGE = "INSERT INTO settings_stages (settings_id, stage, stageMass, fuelMass, thrustPerKgFuel, fuelConsumptionPerCycle) VALUES (?, ?, ?, ?, ?, ?);";
+    private static final String SELECT_LAST_SETTINGS = "SELECT * FROM settings ORDER BY id DESC LIMIT 1;";
+    private static final String SELECT_STAGES = "SELECT stageMass, fuelMass, thrustPerKgFuel, fuelConsumptionPerCycle FROM settings_stages WHERE settings_id = ? ORDER BY stage;";
+    private static final String SELECT_LAST_ROWID = "SELECT last_insert_rowid();";
+
+    private static DatabaseManager defaultInstance;
+    private static boolean schemaReady = false;
+
+    private final TelemetryWriter.BackpressurePolicy telemetryPolicy;
+    private TelemetryWriter telemetryWriter;
+    private RunHistoryRepository runHistory;
+
+    private Connection conn;
+    private PreparedStatement insertSettingsStatement;
+    private PreparedStatement insertStageStatement;
+    private PreparedStatement selectLastSettingsStatement;
+    private PreparedStatement selectStagesStatement;
+    private PreparedStatement lastRowIdStatement;
+    private boolean closed = false;
 
     public DatabaseManager() {
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            if (conn != null) {
-                createTables(conn);
-            }
+        this(TelemetryWriter.BackpressurePolicy.BLOCK);
+    }
+
+    public DatabaseManager(TelemetryWriter.BackpressurePolicy telemetryPolicy) {
+        this.telemetryPolicy = telemetryPolicy;
+        try {
+            conn = DriverManager.getConnection(DB_URL);
+            configure(conn);
+            prepareSchema(conn);
+            insertSettingsStatement = conn.prepareStatement(INSERT_SETTINGS);
+            insertStageStatement = conn.prepareStatement(INSERT_STAGE);
+            selectLastSettingsStatement = conn.prepareStatement(SELECT_LAST_SETTINGS);
+            selectStagesStatement = conn.prepareStatement(SELECT_STAGES);
+            lastRowIdStatement = conn.prepareStatement(SELECT_LAST_ROWID);
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
-    private void createTables(Connection conn) throws SQLException {
+    // Shared instance used by models created without an explicit manager;
+    // closed by a shutdown hook.
+    public static synchronized DatabaseManager getDefault() {
+        if (defaultInstance == null) {
+            DatabaseManager manager = new DatabaseManager();
+            Runtime.getRuntime().addShutdownHook(new Thread(manager::close, "database-shutdown"));
+            defaultInstance = manager;
+        }
+        return defaultInstance;
+    }
+
+    private static synchronized void prepareSchema(Connection conn) throws SQLException {
+        if (!schemaReady) {
+            upgradeSchema(conn);
+            schemaReady = true;
+        }
+    }
+
+    // Creates missing tables and migrates data from older schemas; a
+    // database that is already current is left as it is.
+    static void upgradeSchema(Connection conn) throws SQLException {
+        createTables(conn);
+        migrate(conn);
+    }
+
+    // WAL lets the history reader run alongside the telemetry writer, and
+    // NORMAL sync only fsyncs at checkpoints, which is safe in WAL mode.
+    static void configure(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL;");
+            stmt.execute("PRAGMA synchronous=NORMAL;");
+            stmt.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MS + ";");
+        }
+    }
+
+    private static void createTables(Connection conn) throws SQLException {
+        // stageMasses and fuelMasses are the comma-separated columns of
+        // schema 2 and older; they stay NULL once the stages are migrated.
         String createSettingsTable = "CREATE TABLE IF NOT EXISTS settings (" +
                 "id INTEGER PRIMARY KEY AUTOINCREMENT," +
                 "payloadMass REAL," +
@@ -26,112 +106,360 @@ public class DatabaseManager {
                 "fuelConsumptionPerCycle REAL" +
                 ");";
 
-        String createStatisticsTable = "CREATE TABLE IF NOT EXISTS statistics (" +
-                "id INTEGER," +
+        // One row per stage; NULL thrust or consumption means the stage uses
+        // the value of its settings row.
+        String createStagesTable = "CREATE TABLE IF NOT EXISTS settings_stages (" +
+                "settings_id INTEGER NOT NULL," +
+                "stage INTEGER NOT NULL," +
+                "stageMass REAL NOT NULL," +
+                "fuelMass REAL NOT NULL," +
+                "thrustPerKgFuel REAL," +
+                "fuelConsumptionPerCycle REAL," +
+                "PRIMARY KEY (settings_id, stage)," +
+                "FOREIGN KEY(settings_id) REFERENCES settings(id)" +
+                ") WITHOUT ROWID;";
+
+        String createRunsTable = "CREATE TABLE IF NOT EXISTS runs (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
                 "settings_id INTEGER," +
+                "started_at DATETIME DEFAULT CURRENT_TIMESTAMP," +
+                "delta_time REAL," +
+                "FOREIGN KEY(settings_id) REFERENCES settings(id)" +
+                ");";
+
+        // fuelMasses is the per-stage fuel packed as little-endian doubles.
+        String createTelemetryTable = "CREATE TABLE IF NOT EXISTS telemetry (" +
+                "run_id INTEGER NOT NULL," +
+                "tick INTEGER NOT NULL," +
+                "time REAL NOT NULL," +
                 "currentMass REAL," +
                 "speed REAL," +
                 "altitude REAL," +
                 "horizontalDistance REAL," +
                 "remainingStages INTEGER," +
-                "fuelMasses TEXT," +
-                "timeStamp DATETIME DEFAULT CURRENT_TIMESTAMP," +
-                "FOREIGN KEY(settings_id) REFERENCES settings(id)" +
-                ");";
+                "fuelMasses BLOB," +
+                "PRIMARY KEY (run_id, tick)," +
+                "FOREIGN KEY(run_id) REFERENCES runs(id)" +
+                ") WITHOUT ROWID;";
 
-        Statement stmt = conn.createStatement();
-        stmt.execute(createSettingsTable);
-        stmt.execute(createStatisticsTable);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(createSettingsTable);
+            stmt.execute(createStagesTable);
+            stmt.execute(createRunsTable);
+            stmt.execute(createTelemetryTable);
+            stmt.execute("CREATE INDEX IF NOT EXISTS runs_settings ON runs(settings_id);");
+            stmt.execute("CREATE INDEX IF NOT EXISTS telemetry_run_time ON telemetry(run_id, time);");
+        }
     }
 
-    public void saveSettings(RocketModel model) {
-        String insertSettings = "INSERT INTO settings (payloadMass, stageMasses, fuelMasses, thrustPerKgFuel, cycleDelay, fuelConsumptionPerCycle) VALUES (?, ?, ?, ?, ?, ?);";
+    private static void migrate(Connection conn) throws SQLException {
+        int version;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version;")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+        if (version >= SCHEMA_VERSION) {
+            return;
+        }
+        conn.setAutoCommit(false);
+        try {
+            if (tableExists(conn, "statistics")) {
+                migrateStatistics(conn);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DROP TABLE statistics;");
+                }
+            }
+            if (version < 3) {
+                migrateStages(conn);
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA user_version=" + SCHEMA_VERSION + ";");
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(insertSettings)) {
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?;")) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
 
-            pstmt.setDouble(1, model.getPayloadMass());
-            pstmt.setString(2, arrayToString(model.getStageMasses()));
-            pstmt.setString(3, arrayToString(model.getFuelMasses()));
-            pstmt.setDouble(4, model.getThrustPerKgFuel());
-            pstmt.setInt(5, model.getCycleDelay());
-            pstmt.setDouble(6, model.getFuelConsumptionPerCycle());
+    // Every settings_id of the old table becomes one run. Old ids were
+    // round(totalTime * 10), so the time is recovered from them; ticks follow
+    // insertion order because those ids could repeat.
+    private static void migrateStatistics(Connection conn) throws SQLException {
+        String selectStatistics = "SELECT id, settings_id, currentMass, speed, altitude, horizontalDistance, remainingStages, fuelMasses, timeStamp " +
+                "FROM statistics ORDER BY settings_id, rowid;";
+        String insertRun = "INSERT INTO runs (settings_id, started_at, delta_time) VALUES (?, ?, 0.1);";
+        String insertTelemetry = "INSERT INTO telemetry (run_id, tick, time, currentMass, speed, altitude, horizontalDistance, remainingStages, fuelMasses) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?);";
 
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery(selectStatistics);
+             PreparedStatement runStmt = conn.prepareStatement(insertRun);
+             PreparedStatement telemetryStmt = conn.prepareStatement(insertTelemetry);
+             Statement keyStmt = conn.createStatement()) {
+            boolean first = true;
+            int currentSettingsId = 0;
+            long runId = -1;
+            long tick = 0;
+            int pending = 0;
+            while (rs.next()) {
+                int settingsId = rs.getInt("settings_id");
+                if (first || settingsId != currentSettingsId) {
+                    first = false;
+                    currentSettingsId = settingsId;
+                    runStmt.setInt(1, settingsId);
+                    runStmt.setString(2, rs.getString("timeStamp"));
+                    runStmt.executeUpdate();
+                    try (ResultSet keys = keyStmt.executeQuery("SELECT last_insert_rowid();")) {
+                        keys.next();
+                        runId = keys.getLong(1);
+                    }
+                    tick = 0;
+                }
+                telemetryStmt.setLong(1, runId);
+                telemetryStmt.setLong(2, tick++);
+                telemetryStmt.setDouble(3, rs.getInt("id") / 10.0);
+                telemetryStmt.setDouble(4, rs.getDouble("currentMass"));
+                telemetryStmt.setDouble(5, rs.getDouble("speed"));
+                telemetryStmt.setDouble(6, rs.getDouble("altitude"));
+                telemetryStmt.setDouble(7, rs.getDouble("horizontalDistance"));
+                telemetryStmt.setInt(8, rs.getInt("remainingStages"));
+                telemetryStmt.setBytes(9, TelemetryWriter.packDoubles(stringToArray(rs.getString("fuelMasses"))));
+                telemetryStmt.addBatch();
+                if (++pending == TELEMETRY_BATCH_SIZE) {
+                    telemetryStmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                telemetryStmt.executeBatch();
+            }
         }
     }
 
-    public void saveStatistics(RocketModel model) {
-        String insertStatistics = "INSERT INTO statistics (id, settings_id, currentMass, speed, altitude, horizontalDistance, remainingStages, fuelMasses) VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
+    private static void migrateStages(Connection conn) throws SQLException {
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id, stageMasses, fuelMasses FROM settings WHERE stageMasses IS NOT NULL;");
+             PreparedStatement insert = conn.prepareStatement(INSERT_STAGE)) {
+            int pending = 0;
+            while (rs.next()) {
+                double[] stageMasses = stringToArray(rs.getString("stageMasses"));
+                double[] fuelMasses = stringToArray(rs.getString("fuelMasses"));
+                for (int i = 0; i < stageMasses.length; i++) {
+                    insert.setInt(1, rs.getInt("id"));
+                    insert.setInt(2, i);
+                    insert.setDouble(3, stageMasses[i]);
+                    insert.setDouble(4, i < fuelMasses.length ? fuelMasses[i] : 0);
+                    insert.setNull(5, Types.REAL);
+                    insert.setNull(6, Types.REAL);
+                    insert.addBatch();
+                    if (++pending == TELEMETRY_BATCH_SIZE) {
+                        insert.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            if (pending > 0) {
+                insert.executeBatch();
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE settings SET stageMasses = NULL, fuelMasses = NULL;");
+        }
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            int lastSettingsId = getLastSettingsId(conn);
+    // The settings row and its stage rows go in one transaction.
+    public synchronized void saveSettings(RocketModel model) {
+        if (insertSettingsStatement == null || closed) {
+            return;
+        }
+        try {
+            conn.setAutoCommit(false);
+            try {
+                insertSettingsStatement.setDouble(1, model.getPayloadMass());
+                insertSettingsStatement.setDouble(2, model.getThrustPerKgFuel());
+                insertSettingsStatement.setInt(3, model.getCycleDelay());
+                insertSettingsStatement.setDouble(4, model.getFuelConsumptionPerCycle());
+                insertSettingsStatement.executeUpdate();
 
-            try (PreparedStatement pstmt = conn.prepareStatement(insertStatistics)) {
-                pstmt.setInt(1, (int) Math.round((model.getTotalTime()*10)));
-                pstmt.setInt(2, lastSettingsId);
-                pstmt.setDouble(3, model.getCurrentMass());
-                pstmt.setDouble(4, model.getSpeed());
-                pstmt.setDouble(5, model.getAltitude());
-                pstmt.setDouble(6, model.getHorizontalDistance());
-                pstmt.setInt(7, model.getRemainingStages());
-                pstmt.setString(8, arrayToString(model.getFuelMasses()));
+                int settingsId;
+                try (ResultSet keys = lastRowIdStatement.executeQuery()) {
+                    keys.next();
+                    settingsId = keys.getInt(1);
+                }
+                insertStages(settingsId, model);
+                conn.commit();
 
-                pstmt.executeUpdate();
+                TelemetryWriter writer = getTelemetryWriter();
+                if (writer != null) {
+                    writer.setSettingsId(settingsId);
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
-    private int getLastSettingsId(Connection conn) throws SQLException {
-        String query = "SELECT id FROM settings ORDER BY id DESC LIMIT 1;";
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            if (rs.next()) {
-                return rs.getInt("id");
+    private void insertStages(int settingsId, RocketModel model) throws SQLException {
+        double[] stageMasses = model.getStageMasses();
+        double[] fuelMasses = model.getInitialFuelMasses();
+        double[] stageThrusts = model.getStageThrustPerKgFuel();
+        double[] stageConsumption = model.getStageFuelConsumption();
+        for (int i = 0; i < stageMasses.length; i++) {
+            insertStageStatement.setInt(1, settingsId);
+            insertStageStatement.setInt(2, i);
+            insertStageStatement.setDouble(3, stageMasses[i]);
+            insertStageStatement.setDouble(4, fuelMasses[i]);
+            if (stageThrusts != null) {
+                insertStageStatement.setDouble(5, stageThrusts[i]);
+            } else {
+                insertStageStatement.setNull(5, Types.REAL);
+            }
+            if (stageConsumption != null) {
+                insertStageStatement.setDouble(6, stageConsumption[i]);
             } else {
-                throw new SQLException("No settings found in the database.");
+                insertStageStatement.setNull(6, Types.REAL);
             }
+            insertStageStatement.addBatch();
+        }
+        if (stageMasses.length > 0) {
+            insertStageStatement.executeBatch();
         }
     }
 
-    private String arrayToString(double[] array) {
-        StringBuilder sb = new StringBuilder();
-        for (double d : array) {
-            sb.append(d).append(",");
+    public void saveStatistics(RocketModel model) {
+        TelemetryWriter writer = getTelemetryWriter();
+        if (writer != null) {
+            writer.submit(model);
         }
-        if (sb.length() > 0) {
-            sb.setLength(sb.length() - 1);
+    }
+
+    public void beginRun() {
+        TelemetryWriter writer = getTelemetryWriter();
+        if (writer != null) {
+            writer.beginRun();
         }
-        return sb.toString();
     }
 
-    public void loadLastSettings(RocketModel model) {
-        String selectSettings = "SELECT * FROM settings ORDER BY id DESC LIMIT 1;";
+    public synchronized TelemetryWriter getTelemetryWriter() {
+        if (telemetryWriter == null && !closed) {
+            try {
+                telemetryWriter = new TelemetryWriter(DB_URL, TELEMETRY_QUEUE_CAPACITY, TELEMETRY_BATCH_SIZE,
+                        TELEMETRY_FLUSH_INTERVAL_MS, telemetryPolicy);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        return telemetryWriter;
+    }
+
+    public synchronized RunHistoryRepository getRunHistory() {
+        if (runHistory == null) {
+            runHistory = new RunHistoryRepository(DB_URL);
+        }
+        return runHistory;
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(selectSettings)) {
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (telemetryWriter != null) {
+            telemetryWriter.close();
+        }
+        if (runHistory != null) {
+            runHistory.close();
+        }
+        try {
+            for (Statement stmt : new Statement[]{insertSettingsStatement, insertStageStatement,
+                    selectLastSettingsStatement, selectStagesStatement, lastRowIdStatement}) {
+                if (stmt != null) {
+                    stmt.close();
+                }
+            }
+            if (conn != null) {
+                conn.close();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
 
-            if (rs.next()) {
+    public synchronized void loadLastSettings(RocketModel model) {
+        if (selectLastSettingsStatement == null || closed) {
+            return;
+        }
+        try {
+            int settingsId;
+            double thrustPerKgFuel;
+            double fuelConsumptionPerCycle;
+            try (ResultSet rs = selectLastSettingsStatement.executeQuery()) {
+                if (!rs.next()) {
+                    return;
+                }
+                settingsId = rs.getInt("id");
+                thrustPerKgFuel = rs.getDouble("thrustPerKgFuel");
+                fuelConsumptionPerCycle = rs.getDouble("fuelConsumptionPerCycle");
                 model.setPayloadMass(rs.getDouble("payloadMass"));
-                model.setStageMasses(stringToArray(rs.getString("stageMasses")));
-                model.setFuelMasses(stringToArray(rs.getString("fuelMasses")));
-                model.setThrustPerKgFuel(rs.getDouble("thrustPerKgFuel"));
+                model.setThrustPerKgFuel(thrustPerKgFuel);
                 model.setCycleDelay(rs.getInt("cycleDelay"));
-                model.setFuelConsumptionPerCycle(rs.getDouble("fuelConsumptionPerCycle"));
+                model.setFuelConsumptionPerCycle(fuelConsumptionPerCycle);
+            }
 
-                model.resetSimulationVariables();
+            DoubleSeries stageMasses = new DoubleSeries();
+            DoubleSeries fuelMasses = new DoubleSeries();
+            DoubleSeries stageThrusts = new DoubleSeries();
+            DoubleSeries stageConsumption = new DoubleSeries();
+            boolean customThrust = false;
+            boolean customConsumption = false;
+            selectStagesStatement.setInt(1, settingsId);
+            try (ResultSet rs = selectStagesStatement.executeQuery()) {
+                while (rs.next()) {
+                    stageMasses.add(rs.getDouble(1));
+                    fuelMasses.add(rs.getDouble(2));
+                    double thrust = rs.getDouble(3);
+                    if (rs.wasNull()) {
+                        thrust = thrustPerKgFuel;
+                    } else {
+                        customThrust = true;
+                    }
+                    stageThrusts.add(thrust);
+                    double consumption = rs.getDouble(4);
+                    if (rs.wasNull()) {
+                        consumption = fuelConsumptionPerCycle;
+                    } else {
+                        customConsumption = true;
+                    }
+                    stageConsumption.add(consumption);
+                }
             }
+            model.setStages(stageMasses.toArray(), fuelMasses.toArray(), customThrust ? stageThrusts.toArray() : null,
+                    customConsumption ? stageConsumption.toArray() : null);
+
+            model.resetSimulationVariables();
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
-    private double[] stringToArray(String str) {
+    private static double[] stringToArray(String str) {
         if (str == null || str.isEmpty()) {
             return new double[0];
         }
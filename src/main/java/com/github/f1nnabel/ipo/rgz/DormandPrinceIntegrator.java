@@ -0,0 +1,107 @@
+package com.github.f1nnabel.ipo.rgz;
+
+// Dormand–Prince 5(4) with local error control on the embedded 4th order solution.
+public class DormandPrinceIntegrator implements Integrator {
+    private static final double C2 = 1.0 / 5, C3 = 3.0 / 10, C4 = 4.0 / 5, C5 = 8.0 / 9;
+    private static final double A21 = 1.0 / 5;
+    private static final double A31 = 3.0 / 40, A32 = 9.0 / 40;
+    private static final double A41 = 44.0 / 45, A42 = -56.0 / 15, A43 = 32.0 / 9;
+    private static final double A51 = 19372.0 / 6561, A52 = -25360.0 / 2187, A53 = 64448.0 / 6561, A54 = -212.0 / 729;
+    private static final double A61 = 9017.0 / 3168, A62 = -355.0 / 33, A63 = 46732.0 / 5247, A64 = 49.0 / 176, A65 = -5103.0 / 18656;
+    private static final double B1 = 35.0 / 384, B3 = 500.0 / 1113, B4 = 125.0 / 192, B5 = -2187.0 / 6784, B6 = 11.0 / 84;
+    private static final double E1 = 71.0 / 57600, E3 = -71.0 / 16695, E4 = 71.0 / 1920, E5 = -17253.0 / 339200,
+            E6 = 22.0 / 525, E7 = -1.0 / 40;
+
+    private static final double SAFETY = 0.9;
+    private static final double MIN_SCALE = 0.2;
+    private static final double MAX_SCALE = 5.0;
+
+    private final double relativeTolerance;
+    private final double absoluteTolerance;
+    private double nextStep = 1e-3;
+    private int rejectedSteps = 0;
+
+    private double[] k1 = new double[0], k2, k3, k4, k5, k6, k7, tmp, next;
+
+    public DormandPrinceIntegrator() {
+        this(1e-9, 1e-6);
+    }
+
+    public DormandPrinceIntegrator(double relativeTolerance, double absoluteTolerance) {
+        this.relativeTolerance = relativeTolerance;
+        this.absoluteTolerance = absoluteTolerance;
+    }
+
+    public void setInitialStep(double step) {
+        this.nextStep = step;
+    }
+
+    public int getRejectedSteps() {
+        return rejectedSteps;
+    }
+
+    @Override
+    public boolean isAdaptive() {
+        return true;
+    }
+
+    @Override
+    public double step(OdeSystem system, double t, double[] y, double maxStep) {
+        int n = y.length;
+        if (k1.length != n) {
+            k1 = new double[n];
+            k2 = new double[n];
+            k3 = new double[n];
+            k4 = new double[n];
+            k5 = new double[n];
+            k6 = new double[n];
+            k7 = new double[n];
+            tmp = new double[n];
+            next = new double[n];
+        }
+        double h = Math.min(nextStep, maxStep);
+        while (true) {
+            system.derivatives(t, y, k1);
+            for (int i = 0; i < n; i++) {
+                tmp[i] = y[i] + h * A21 * k1[i];
+            }
+            system.derivatives(t + C2 * h, tmp, k2);
+            for (int i = 0; i < n; i++) {
+                tmp[i] = y[i] + h * (A31 * k1[i] + A32 * k2[i]);
+            }
+            system.derivatives(t + C3 * h, tmp, k3);
+            for (int i = 0; i < n; i++) {
+                tmp[i] = y[i] + h * (A41 * k1[i] + A42 * k2[i] + A43 * k3[i]);
+            }
+            system.derivatives(t + C4 * h, tmp, k4);
+            for (int i = 0; i < n; i++) {
+                tmp[i] = y[i] + h * (A51 * k1[i] + A52 * k2[i] + A53 * k3[i] + A54 * k4[i]);
+            }
+            system.derivatives(t + C5 * h, tmp, k5);
+            for (int i = 0; i < n; i++) {
+                tmp[i] = y[i] + h * (A61 * k1[i] + A62 * k2[i] + A63 * k3[i] + A64 * k4[i] + A65 * k5[i]);
+            }
+            system.derivatives(t + h, tmp, k6);
+            for (int i = 0; i < n; i++) {
+                next[i] = y[i] + h * (B1 * k1[i] + B3 * k3[i] + B4 * k4[i] + B5 * k5[i] + B6 * k6[i]);
+            }
+            system.derivatives(t + h, next, k7);
+
+            double error = 0;
+            for (int i = 0; i < n; i++) {
+                double e = h * (E1 * k1[i] + E3 * k3[i] + E4 * k4[i] + E5 * k5[i] + E6 * k6[i] + E7 * k7[i]);
+                double scale = absoluteTolerance + relativeTolerance * Math.max(Math.abs(y[i]), Math.abs(next[i]));
+                error = Math.max(error, Math.abs(e) / scale);
+            }
+
+            double factor = error == 0 ? MAX_SCALE : SAFETY * Math.pow(error, -0.2);
+            if (error <= 1) {
+                System.arraycopy(next, 0, y, 0, n);
+                nextStep = h * Math.min(MAX_SCALE, Math.max(MIN_SCALE, factor));
+                return h;
+            }
+            rejectedSteps++;
+            h *= Math.max(MIN_SCALE, factor);
+        }
+    }
+}
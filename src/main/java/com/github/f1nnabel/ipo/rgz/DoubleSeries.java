@@ -0,0 +1,452 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Append-only column of primitive doubles stored in fixed-size chunks.
+// Single writer; readers on other threads see every value below size().
+// A series loaded from a .sim file starts with a read-only prefix backed by
+// the mapped file; appended values go to chunks after it.
+// With a resident limit the chunks form a ring: once it is full the oldest
+// chunk is copied to a temporary spill file and its array is reused, so heap
+// use stays bounded while get() still reads the whole series.
+public class DoubleSeries implements SeriesView, Serializable {
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CHUNKS = 4;
+    static final int MAPPED_SEGMENT_SHIFT = 26;
+    private static final int MAPPED_SEGMENT_MASK = (1 << MAPPED_SEGMENT_SHIFT) - 1;
+    private static final int SPILL_SEGMENT_SHIFT = 20;
+    private static final int SPILL_SEGMENT_MASK = (1 << SPILL_SEGMENT_SHIFT) - 1;
+    private static final int UNBOUNDED_CHUNKS = 1 << 30;
+
+    // Slot of chunk c is c & (chunks.length - 1); the length is a power of two.
+    private transient volatile double[][] chunks = new double[INITIAL_CHUNKS][];
+    private transient int maxResidentChunks = UNBOUNDED_CHUNKS;
+    private transient volatile Spilled spilled = Spilled.NONE;
+    private transient volatile int size = 0;
+    private transient double min;
+    private transient double max;
+    private transient double sum;
+    private transient double last;
+    private transient SeriesView readOnlyView;
+
+    private transient DoubleBuffer[] mapped;
+    private transient int mappedSize = 0;
+    private transient double mappedMin;
+    private transient double mappedMax;
+    private transient double mappedSum;
+
+    public void add(double value) {
+        int index = size;
+        int local = index - mappedSize;
+        int chunkIndex = local >>> CHUNK_SHIFT;
+        double[][] current = chunks;
+        if (chunkIndex - spilled.chunks == current.length) {
+            current = makeRoom(chunkIndex, current);
+        }
+        int slot = chunkIndex & (current.length - 1);
+        double[] chunk = current[slot];
+        if (chunk == null) {
+            chunk = new double[CHUNK_SIZE];
+            current[slot] = chunk;
+        }
+        chunk[local & CHUNK_MASK] = value;
+        if (index == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        sum += value;
+        last = value;
+        size = index + 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        if (index < mappedSize) {
+            return mapped[index >>> MAPPED_SEGMENT_SHIFT].get(index & MAPPED_SEGMENT_MASK);
+        }
+        int local = index - mappedSize;
+        int chunkIndex = local >>> CHUNK_SHIFT;
+        Spilled before = spilled;
+        if (chunkIndex < before.chunks) {
+            return before.file.get(chunkIndex, local & CHUNK_MASK);
+        }
+        double[][] current = chunks;
+        double value = current[chunkIndex & (current.length - 1)][local & CHUNK_MASK];
+        // the slot may have been spilled and reused while it was read
+        VarHandle.loadLoadFence();
+        Spilled after = spilled;
+        if (chunkIndex < after.chunks) {
+            return after.file.get(chunkIndex, local & CHUNK_MASK);
+        }
+        return value;
+    }
+
+    // Keeps at most about maxValues appended values on the heap (at least
+    // INITIAL_CHUNKS chunks); older ones are spilled to a temporary file.
+    // Zero or less removes the limit for values appended from now on.
+    public void setResidentLimit(int maxValues) {
+        if (maxValues <= 0) {
+            maxResidentChunks = UNBOUNDED_CHUNKS;
+            return;
+        }
+        int limit = Integer.highestOneBit(Math.max(INITIAL_CHUNKS, (maxValues + CHUNK_MASK) >>> CHUNK_SHIFT));
+        maxResidentChunks = limit;
+        double[][] current = chunks;
+        if (current.length <= limit) {
+            return;
+        }
+        int local = size - mappedSize;
+        int lastChunk = local == 0 ? 0 : (local - 1) >>> CHUNK_SHIFT;
+        while (lastChunk - spilled.chunks >= limit) {
+            spillOldest(current);
+        }
+        double[][] ring = new double[limit][];
+        for (int c = spilled.chunks; c <= lastChunk; c++) {
+            ring[c & (limit - 1)] = current[c & (current.length - 1)];
+        }
+        chunks = ring;
+    }
+
+    public int getResidentLimit() {
+        return maxResidentChunks == UNBOUNDED_CHUNKS ? 0 : maxResidentChunks << CHUNK_SHIFT;
+    }
+
+    // Called when chunk chunkIndex has no free slot: grows the ring while it is
+    // below the limit, otherwise spills the oldest chunk and reuses its slot.
+    private double[][] makeRoom(int chunkIndex, double[][] current) {
+        if (current.length < maxResidentChunks) {
+            double[][] grown = new double[current.length * 2][];
+            for (int c = spilled.chunks; c < chunkIndex; c++) {
+                grown[c & (grown.length - 1)] = current[c & (current.length - 1)];
+            }
+            chunks = grown;
+            return grown;
+        }
+        spillOldest(current);
+        return current;
+    }
+
+    private void spillOldest(double[][] current) {
+        Spilled before = spilled;
+        int chunkIndex = before.chunks;
+        double[] chunk = current[chunkIndex & (current.length - 1)];
+        SpillFile file = before.file;
+        if (file == null) {
+            file = new SpillFile(null, 0);
+        } else if (file.isClosed()) {
+            // spilled again after close(): the closed file keeps serving the older chunks
+            file = new SpillFile(file, chunkIndex);
+        }
+        file.write(chunkIndex, chunk);
+        double chunkMin = chunk[0];
+        double chunkMax = chunk[0];
+        double chunkSum = 0;
+        for (double value : chunk) {
+            chunkMin = Math.min(chunkMin, value);
+            chunkMax = Math.max(chunkMax, value);
+            chunkSum += value;
+        }
+        spilled = before.chunks == 0
+                ? new Spilled(file, 1, chunkMin, chunkMax, chunkSum)
+                : new Spilled(file, chunkIndex + 1, Math.min(before.min, chunkMin), Math.max(before.max, chunkMax),
+                before.sum + chunkSum);
+        // readers must see the new count before the reused slot is overwritten
+        VarHandle.storeStoreFence();
+    }
+
+    @Override
+    public double min() {
+        return size == 0 ? 0.0 : min;
+    }
+
+    @Override
+    public double max() {
+        return size == 0 ? 0.0 : max;
+    }
+
+    @Override
+    public double mean() {
+        int n = size;
+        return n == 0 ? 0.0 : sum / n;
+    }
+
+    @Override
+    public double last() {
+        return size == 0 ? 0.0 : last;
+    }
+
+    // A short series keeps its chunk arrays, so a model that is reset for
+    // every flight does not reallocate them.
+    public void clear() {
+        close();
+        size = 0;
+        if (chunks.length != INITIAL_CHUNKS) {
+            chunks = new double[INITIAL_CHUNKS][];
+        }
+        spilled = Spilled.NONE;
+        mapped = null;
+        mappedSize = 0;
+        min = 0;
+        max = 0;
+        sum = 0;
+        last = 0;
+    }
+
+    // Closes the spill file of this series. Values already spilled stay
+    // readable, also through copies, because the mapping outlives the file
+    // descriptor; it is unmapped once nothing refers to it any more.
+    public void close() {
+        SpillFile file = spilled.file;
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    // Shares the mapped prefix and the spilled chunks with this series; only
+    // the resident chunks are copied.
+    public DoubleSeries copy() {
+        DoubleSeries copy = new DoubleSeries();
+        copy.maxResidentChunks = maxResidentChunks;
+        Spilled shared = spilled;
+        int n = size;
+        if (mappedSize > 0) {
+            copy.adoptMapped(mapped, mappedSize, mappedMin, mappedMax, mappedSum);
+        }
+        int from = mappedSize;
+        if (shared.chunks > 0) {
+            copy.spilled = new Spilled(new SpillFile(shared.file, shared.chunks), shared.chunks, shared.min, shared.max,
+                    shared.sum);
+            from += shared.chunks << CHUNK_SHIFT;
+            if (mappedSize == 0) {
+                copy.min = shared.min;
+                copy.max = shared.max;
+            } else {
+                copy.min = Math.min(copy.min, shared.min);
+                copy.max = Math.max(copy.max, shared.max);
+            }
+            copy.sum += shared.sum;
+            copy.last = get(from - 1);
+            copy.size = from;
+        }
+        for (int i = from; i < n; i++) {
+            copy.add(get(i));
+        }
+        return copy;
+    }
+
+    // Segments hold 2^MAPPED_SEGMENT_SHIFT values each, the last one may be shorter.
+    static DoubleSeries mapped(DoubleBuffer[] segments, int size, double min, double max, double sum) {
+        DoubleSeries series = new DoubleSeries();
+        if (size > 0) {
+            series.adoptMapped(segments, size, min, max, sum);
+        }
+        return series;
+    }
+
+    private void adoptMapped(DoubleBuffer[] segments, int count, double prefixMin, double prefixMax, double prefixSum) {
+        mapped = segments;
+        mappedSize = count;
+        mappedMin = prefixMin;
+        mappedMax = prefixMax;
+        mappedSum = prefixSum;
+        min = prefixMin;
+        max = prefixMax;
+        sum = prefixSum;
+        last = segments[(count - 1) >>> MAPPED_SEGMENT_SHIFT].get((count - 1) & MAPPED_SEGMENT_MASK);
+        size = count;
+    }
+
+    public SeriesView view() {
+        if (readOnlyView == null) {
+            readOnlyView = new ReadOnlyView(this);
+        }
+        return readOnlyView;
+    }
+
+    public static DoubleSeries of(double... values) {
+        DoubleSeries series = new DoubleSeries();
+        for (double value : values) {
+            series.add(value);
+        }
+        return series;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        int n = size;
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            out.writeDouble(get(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        chunks = new double[INITIAL_CHUNKS][];
+        maxResidentChunks = UNBOUNDED_CHUNKS;
+        spilled = Spilled.NONE;
+        mappedSize = 0;
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            add(in.readDouble());
+        }
+    }
+
+    // How many leading chunks live in the spill file, with their statistics.
+    // Replaced as a whole so readers see a consistent count.
+    private static final class Spilled {
+        static final Spilled NONE = new Spilled(null, 0, 0, 0, 0);
+
+        final SpillFile file;
+        final int chunks;
+        final double min;
+        final double max;
+        final double sum;
+
+        Spilled(SpillFile file, int chunks, double min, double max, double sum) {
+            this.file = file;
+            this.chunks = chunks;
+            this.min = min;
+            this.max = max;
+            this.sum = sum;
+        }
+    }
+
+    // Spilled chunks in an unlinked temporary file, mapped in segments of
+    // 2^SPILL_SEGMENT_SHIFT values. The first baseChunks chunks are read from
+    // the series this one was copied from; the file is created on first write.
+    private static final class SpillFile {
+        private static final long SEGMENT_BYTES = (long) Double.BYTES << SPILL_SEGMENT_SHIFT;
+
+        private final SpillFile base;
+        private final int baseChunks;
+        private FileChannel channel;
+        private boolean closed = false;
+        private volatile DoubleBuffer[] segments = new DoubleBuffer[0];
+
+        SpillFile(SpillFile base, int baseChunks) {
+            this.base = base;
+            this.baseChunks = baseChunks;
+        }
+
+        double get(int chunkIndex, int offset) {
+            if (chunkIndex < baseChunks) {
+                return base.get(chunkIndex, offset);
+            }
+            long position = ((long) (chunkIndex - baseChunks) << CHUNK_SHIFT) + offset;
+            return segments[(int) (position >>> SPILL_SEGMENT_SHIFT)].get((int) (position & SPILL_SEGMENT_MASK));
+        }
+
+        void write(int chunkIndex, double[] values) {
+            long position = (long) (chunkIndex - baseChunks) << CHUNK_SHIFT;
+            int segment = (int) (position >>> SPILL_SEGMENT_SHIFT);
+            DoubleBuffer[] current = segments;
+            if (segment == current.length) {
+                current = Arrays.copyOf(current, segment + 1);
+                current[segment] = map(segment);
+                segments = current;
+            }
+            current[segment].put((int) (position & SPILL_SEGMENT_MASK), values, 0, CHUNK_SIZE);
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        // Only this file's own channel: the base belongs to the series it was copied from.
+        void close() {
+            closed = true;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                channel = null;
+            }
+        }
+
+        private DoubleBuffer map(int segment) {
+            try {
+                if (channel == null) {
+                    Path path = Files.createTempFile("rocket-history", ".spill");
+                    channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    // the mappings stay valid after the file is unlinked
+                    try {
+                        Files.delete(path);
+                    } catch (IOException e) {
+                        path.toFile().deleteOnExit();
+                    }
+                }
+                return channel.map(FileChannel.MapMode.READ_WRITE, segment * SEGMENT_BYTES, SEGMENT_BYTES)
+                        .order(ByteOrder.nativeOrder())
+                        .asDoubleBuffer();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot spill history to disk", e);
+            }
+        }
+    }
+
+    private static final class ReadOnlyView implements SeriesView {
+        private final DoubleSeries series;
+
+        ReadOnlyView(DoubleSeries series) {
+            this.series = series;
+        }
+
+        @Override
+        public int size() {
+            return series.size();
+        }
+
+        @Override
+        public double get(int index) {
+            return series.get(index);
+        }
+
+        @Override
+        public double min() {
+            return series.min();
+        }
+
+        @Override
+        public double max() {
+            return series.max();
+        }
+
+        @Override
+        public double mean() {
+            return series.mean();
+        }
+
+        @Override
+        public double last() {
+            return series.last();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.f1nnabel.ipo.rgz;
+
+public class EulerIntegrator implements Integrator {
+    private double[] k = new double[0];
+
+    @Override
+    public double step(OdeSystem system, double t, double[] y, double maxStep) {
+        if (k.length != y.length) {
+            k = new double[y.length];
+        }
+        system.derivatives(t, y, k);
+        for (int i = 0; i < y.length; i++) {
+            y[i] += maxStep * k[i];
+        }
+        return maxStep;
+    }
+}
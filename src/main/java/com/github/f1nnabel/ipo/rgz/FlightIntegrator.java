@@ -0,0 +1,177 @@
+package com.github.f1nnabel.ipo.rgz;
+
+// Integrates a flight as a continuous ODE in altitude and speed with a
+// pluggable Integrator. Each burn phase ends exactly at stage burnout (the
+// burn rate is constant, so the burnout time is known in advance); apogee and
+// ground impact are located inside the step where they occur. Stage
+// separations are published to the model's observers as step() does.
+public class FlightIntegrator {
+    private static final int ALTITUDE = 0;
+    private static final int SPEED = 1;
+    private static final int EVENT_ITERATIONS = 60;
+
+    private final Integrator integrator;
+    private final RungeKutta4Integrator eventStepper = new RungeKutta4Integrator();
+    private double maxSimulatedTime = HeadlessSimulation.DEFAULT_MAX_SIMULATED_TIME;
+    private boolean recordHistory = true;
+
+    private double thrust;
+    private double phaseStart;
+    private double phaseStartMass;
+    private double massFlow;
+    private double[] sampleFuel;
+
+    public FlightIntegrator(Integrator integrator) {
+        this.integrator = integrator;
+    }
+
+    public void setMaxSimulatedTime(double maxSimulatedTime) {
+        this.maxSimulatedTime = maxSimulatedTime;
+    }
+
+    public void setRecordHistory(boolean recordHistory) {
+        this.recordHistory = recordHistory;
+    }
+
+    public FlightResult run(RocketModel model) {
+        long start = System.nanoTime();
+        model.beginIntegration();
+        double[] stageMasses = model.getStageMasses();
+        double[] fuel = model.getFuelMasses().clone();
+        sampleFuel = fuel.clone();
+        double payloadMass = model.getPayloadMass();
+        double cyclePeriod = model.getCycleDelay() / 1000.0;
+        double fixedStep = model.getDeltaTime();
+        if (integrator instanceof DormandPrinceIntegrator) {
+            ((DormandPrinceIntegrator) integrator).setInitialStep(fixedStep);
+        }
+
+        double t = model.getTotalTime();
+        double[] y = {model.getAltitude(), model.getSpeed()};
+        double[] previous = new double[2];
+        int stages = model.getRemainingStages();
+        long steps = 0;
+        double apogee = y[ALTITUDE];
+        double maxSpeed = y[SPEED];
+        double burnTime = stages == 0 ? t : Double.NaN;
+        boolean landed = model.isFlightFinished();
+        OdeSystem dynamics = this::derivatives;
+
+        while (!landed && t < maxSimulatedTime) {
+            boolean burning = stages > 0;
+            int currentStage = stages - 1;
+            double phaseEnd = maxSimulatedTime;
+            phaseStart = t;
+            if (burning) {
+                double fuelFlow = model.getFuelConsumptionPerCycle(currentStage) / cyclePeriod;
+                massFlow = fuelFlow;
+                thrust = fuelFlow * model.getThrustPerKgFuel(currentStage);
+                phaseStartMass = payloadMass;
+                for (int i = 0; i < stages; i++) {
+                    phaseStartMass += stageMasses[i] + fuel[i];
+                }
+                phaseEnd = Math.min(maxSimulatedTime, t + fuel[currentStage] / fuelFlow);
+            } else {
+                massFlow = 0;
+                thrust = 0;
+                phaseStartMass = payloadMass;
+            }
+
+            while (t < phaseEnd && !landed) {
+                double maxStep = phaseEnd - t;
+                if (!integrator.isAdaptive()) {
+                    maxStep = Math.min(maxStep, fixedStep);
+                }
+                previous[ALTITUDE] = y[ALTITUDE];
+                previous[SPEED] = y[SPEED];
+                double stepStart = t;
+                double taken = integrator.step(dynamics, t, y, maxStep);
+                t = taken == maxStep && maxStep == phaseEnd - stepStart ? phaseEnd : t + taken;
+                steps++;
+
+                if (previous[SPEED] > 0 && y[SPEED] <= 0) {
+                    double tau = locate(stepStart, previous, taken, SPEED);
+                    apogee = Math.max(apogee, stateAt(stepStart, previous, tau)[ALTITUDE]);
+                }
+                if (y[ALTITUDE] < 0) {
+                    if (burning) {
+                        y[ALTITUDE] = 0;
+                        y[SPEED] = 0;
+                    } else {
+                        double tau = previous[ALTITUDE] > 0 ? locate(stepStart, previous, taken, ALTITUDE) : 0;
+                        t = stepStart + tau;
+                        y[ALTITUDE] = 0;
+                        y[SPEED] = 0;
+                        landed = true;
+                    }
+                }
+                apogee = Math.max(apogee, y[ALTITUDE]);
+                maxSpeed = Math.max(maxSpeed, y[SPEED]);
+                if (recordHistory) {
+                    System.arraycopy(fuel, 0, sampleFuel, 0, fuel.length);
+                    if (burning) {
+                        sampleFuel[currentStage] = Math.max(0, fuel[currentStage] - massFlow * (t - phaseStart));
+                    }
+                    model.recordSample(t, y[SPEED], y[ALTITUDE], massAt(t), stages, sampleFuel);
+                }
+            }
+
+            if (burning && t >= phaseEnd && phaseEnd < maxSimulatedTime) {
+                fuel[currentStage] = 0;
+                stages--;
+                model.publishStageSeparation(stages + 1);
+                if (stages == 0) {
+                    burnTime = t;
+                }
+            }
+            if (!burning && y[ALTITUDE] <= 0 && y[SPEED] <= 0) {
+                landed = true;
+            }
+        }
+
+        double mass = payloadMass;
+        for (int i = 0; i < stages; i++) {
+            mass += stageMasses[i] + fuel[i];
+        }
+        model.restoreState(t, mass, y[SPEED], y[ALTITUDE], model.getHorizontalDistance(), stages, fuel);
+        return new FlightResult(steps, t, System.nanoTime() - start, apogee, maxSpeed, burnTime, landed);
+    }
+
+    private double massAt(double t) {
+        return phaseStartMass - massFlow * (t - phaseStart);
+    }
+
+    private void derivatives(double t, double[] y, double[] dydt) {
+        double acceleration = thrust / massAt(t) - RocketModel.calculateGravity(y[ALTITUDE]);
+        if (thrust > 0 && y[ALTITUDE] <= 0 && y[SPEED] <= 0 && acceleration < 0) {
+            dydt[ALTITUDE] = 0;
+            dydt[SPEED] = 0;
+            return;
+        }
+        dydt[ALTITUDE] = y[SPEED];
+        dydt[SPEED] = acceleration;
+    }
+
+    // Bisects for the offset within [0, step] where component changes sign, re-integrating from the step start.
+    private double locate(double t, double[] start, double step, int component) {
+        double low = 0;
+        double high = step;
+        for (int i = 0; i < EVENT_ITERATIONS && high - low > 1e-12; i++) {
+            double mid = (low + high) / 2;
+            if (stateAt(t, start, mid)[component] > 0) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+
+    private double[] stateAt(double t, double[] start, double offset) {
+        double[] state = start.clone();
+        if (offset > 0) {
+            eventStepper.step(this::derivatives, t, state, offset);
+        }
+        return state;
+    }
+}
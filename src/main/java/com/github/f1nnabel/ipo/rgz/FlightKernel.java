@@ -0,0 +1,315 @@
+package com.github.f1nnabel.ipo.rgz;
+
+// Fixed-step flight physics for a batch of rockets kept in flat primitive
+// columns, one slot (lane) per rocket. Per-stage values are stored row by row
+// with maxStages entries per rocket; the burning stage is also copied into
+// per-lane columns, together with everything that stays constant during a
+// burn: the stage's thrust, fuel burnt per step, and the mass below the stage
+// (payload plus all lower stages with their fuel). A step touches a handful of doubles
+// and allocates nothing. The arithmetic matches the original RocketModel
+// update operation for operation, in both the scalar and the vector path.
+public final class FlightKernel {
+    public static final double GM = RocketModel.GRAVITATIONAL_CONSTANT * RocketModel.EARTH_MASS;
+
+    // True when the JVM was started with --add-modules jdk.incubator.vector.
+    public static final boolean VECTOR_API_AVAILABLE =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    // step() results
+    public static final int FINISHED = 0;
+    public static final int BURNING = 1;
+    public static final int SEPARATED = 2;
+    public static final int COASTING = 3;
+    public static final int LANDED = 4;
+
+    private final int capacity;
+    private final int maxStages;
+    private boolean vectorized = VECTOR_API_AVAILABLE;
+    // stepAll() treats lanes at or past this time as finished
+    double maxSimulatedTime = Double.POSITIVE_INFINITY;
+
+    final double[] time;
+    final double[] speed;
+    final double[] altitude;
+    final double[] mass;
+    final double[] payloadMass;
+    final double[] thrust;
+    final double[] burnPerStep;
+    final double[] deltaTime;
+    final int[] remainingStages;
+
+    // burning stage of every lane; burning is 1 while a stage is left, else 0
+    final double[] burning;
+    final double[] fuel;
+    final double[] dryMass;
+    final double[] massBelow;
+
+    // flight statistics kept by stepAll()
+    final long[] steps;
+    final double[] apogee;
+    final double[] maxSpeed;
+    final double[] burnTime;
+
+    private final double[] stageDryMass;
+    private final double[] stageFuel;
+    private final double[] stageMassBelow;
+    private final double[] stageThrust;
+    private final double[] stageBurnPerStep;
+
+    public FlightKernel(int capacity, int maxStages) {
+        if (capacity <= 0 || maxStages < 0) {
+            throw new IllegalArgumentException("Invalid kernel size: " + capacity + " rockets, " + maxStages + " stages");
+        }
+        this.capacity = capacity;
+        this.maxStages = maxStages;
+        time = new double[capacity];
+        speed = new double[capacity];
+        altitude = new double[capacity];
+        mass = new double[capacity];
+        payloadMass = new double[capacity];
+        thrust = new double[capacity];
+        burnPerStep = new double[capacity];
+        deltaTime = new double[capacity];
+        remainingStages = new int[capacity];
+        burning = new double[capacity];
+        fuel = new double[capacity];
+        dryMass = new double[capacity];
+        massBelow = new double[capacity];
+        steps = new long[capacity];
+        apogee = new double[capacity];
+        maxSpeed = new double[capacity];
+        burnTime = new double[capacity];
+        stageDryMass = new double[capacity * maxStages];
+        stageFuel = new double[capacity * maxStages];
+        stageMassBelow = new double[capacity * maxStages];
+        stageThrust = new double[capacity * maxStages];
+        stageBurnPerStep = new double[capacity * maxStages];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMaxStages() {
+        return maxStages;
+    }
+
+    public boolean isVectorized() {
+        return vectorized;
+    }
+
+    // Vectorized stepping needs the incubator module; without it this stays off.
+    public void setVectorized(boolean vectorized) {
+        this.vectorized = vectorized && VECTOR_API_AVAILABLE;
+    }
+
+    public void setMaxSimulatedTime(double maxSimulatedTime) {
+        this.maxSimulatedTime = maxSimulatedTime;
+    }
+
+    public void load(int rocket, RocketModel model) {
+        load(rocket, model.getPayloadMass(), model.getStageMasses(), model.getFuelMasses(), model.getRemainingStages(),
+                model.getThrustPerKgFuel(), model.getCycleDelay(), model.getFuelConsumptionPerCycle(),
+                model.getStageThrustPerKgFuel(), model.getStageFuelConsumption(),
+                model.getDeltaTime(), model.getTotalTime(), model.getSpeed(), model.getAltitude(),
+                model.getCurrentMass());
+    }
+
+    public void load(int rocket, FlightParameters parameters) {
+        double[] stageMasses = parameters.getStageMasses();
+        double[] fuelMasses = parameters.getFuelMasses();
+        double initialMass = parameters.getPayloadMass();
+        for (int i = 0; i < stageMasses.length; i++) {
+            initialMass += stageMasses[i] + fuelMasses[i];
+        }
+        load(rocket, parameters.getPayloadMass(), stageMasses, fuelMasses, stageMasses.length,
+                parameters.getThrustPerKgFuel(), parameters.getCycleDelay(), parameters.getFuelConsumptionPerCycle(),
+                parameters.getStageThrustPerKgFuel(), parameters.getStageFuelConsumption(),
+                parameters.getTimeStep(), 0, 0, 0, initialMass);
+    }
+
+    // stageThrustPerKgFuel and stageFuelConsumption may be null to use the
+    // single value for every stage.
+    public void load(int rocket, double payload, double[] stageMasses, double[] fuelMasses, int stages,
+                     double thrustPerKgFuel, int cycleDelay, double fuelConsumptionPerCycle,
+                     double[] stageThrustPerKgFuel, double[] stageFuelConsumption, double timeStep,
+                     double totalTime, double currentSpeed, double currentAltitude, double currentMass) {
+        if (stages > maxStages || stageMasses.length < stages || fuelMasses.length < stages
+                || (stageThrustPerKgFuel != null && stageThrustPerKgFuel.length < stages)
+                || (stageFuelConsumption != null && stageFuelConsumption.length < stages)) {
+            throw new IllegalArgumentException("Rocket has more stages than the kernel holds: " + stages);
+        }
+        double cyclePeriod = cycleDelay / 1000.0;
+        payloadMass[rocket] = payload;
+        deltaTime[rocket] = timeStep;
+        remainingStages[rocket] = stages;
+        time[rocket] = totalTime;
+        speed[rocket] = currentSpeed;
+        altitude[rocket] = currentAltitude;
+        mass[rocket] = currentMass;
+        int row = rocket * maxStages;
+        double below = payload;
+        for (int i = 0; i < stages; i++) {
+            stageDryMass[row + i] = stageMasses[i];
+            stageFuel[row + i] = fuelMasses[i];
+            stageMassBelow[row + i] = below;
+            double consumption = stageFuelConsumption == null ? fuelConsumptionPerCycle : stageFuelConsumption[i];
+            double thrustPerKg = stageThrustPerKgFuel == null ? thrustPerKgFuel : stageThrustPerKgFuel[i];
+            stageThrust[row + i] = consumption / cyclePeriod * thrustPerKg;
+            stageBurnPerStep[row + i] = consumption * (timeStep / cyclePeriod);
+            below += stageMasses[i] + fuelMasses[i];
+        }
+        enterStage(rocket);
+        steps[rocket] = 0;
+        apogee[rocket] = currentAltitude;
+        maxSpeed[rocket] = currentSpeed;
+        burnTime[rocket] = stages == 0 ? totalTime : Double.NaN;
+    }
+
+    private void enterStage(int rocket) {
+        int stages = remainingStages[rocket];
+        if (stages == 0) {
+            burning[rocket] = 0;
+            fuel[rocket] = 0;
+            dryMass[rocket] = 0;
+            massBelow[rocket] = payloadMass[rocket];
+            thrust[rocket] = 0;
+            burnPerStep[rocket] = 0;
+            return;
+        }
+        int slot = rocket * maxStages + stages - 1;
+        burning[rocket] = 1;
+        fuel[rocket] = stageFuel[slot];
+        dryMass[rocket] = stageDryMass[slot];
+        massBelow[rocket] = stageMassBelow[slot];
+        thrust[rocket] = stageThrust[slot];
+        burnPerStep[rocket] = stageBurnPerStep[slot];
+    }
+
+    // The burning stage ran dry: drop it without advancing time.
+    void separate(int rocket) {
+        int stages = remainingStages[rocket] - 1;
+        stageFuel[rocket * maxStages + stages] = 0;
+        remainingStages[rocket] = stages;
+        enterStage(rocket);
+        if (stages == 0) {
+            burnTime[rocket] = time[rocket];
+        }
+    }
+
+    public int step(int rocket) {
+        double h = altitude[rocket];
+        double v = speed[rocket];
+        if (remainingStages[rocket] == 0) {
+            if (h <= 0 && v <= 0) {
+                return FINISHED;
+            }
+            return coast(rocket, h, v);
+        }
+
+        double f = fuel[rocket] - burnPerStep[rocket];
+        if (f <= 0) {
+            separate(rocket);
+            return SEPARATED;
+        }
+        fuel[rocket] = f;
+
+        double m = massBelow[rocket] + (dryMass[rocket] + f);
+        double r = RocketModel.EARTH_RADIUS + h;
+        double acceleration = (thrust[rocket] / m) - GM / (r * r);
+        double dt = deltaTime[rocket];
+        v += acceleration * dt;
+        h += v * dt;
+        if (h < 0) {
+            h = 0;
+            v = 0;
+        }
+        speed[rocket] = v;
+        altitude[rocket] = h;
+        mass[rocket] = m;
+        time[rocket] += dt;
+        return BURNING;
+    }
+
+    private int coast(int rocket, double h, double v) {
+        double r = RocketModel.EARTH_RADIUS + h;
+        double dt = deltaTime[rocket];
+        v += -(GM / (r * r)) * dt;
+        h += v * dt;
+        int result = COASTING;
+        if (h <= 0) {
+            h = 0;
+            v = 0;
+            result = LANDED;
+        }
+        speed[rocket] = v;
+        altitude[rocket] = h;
+        mass[rocket] = payloadMass[rocket];
+        time[rocket] += dt;
+        return result;
+    }
+
+    // Steps every rocket in [0, count) once and updates its statistics, like
+    // HeadlessSimulation does for a model. Returns how many were still flying.
+    public int stepAll(int count) {
+        if (vectorized) {
+            return VectorFlightKernel.stepAll(this, count);
+        }
+        return stepScalar(0, count);
+    }
+
+    int stepScalar(int from, int to) {
+        int active = 0;
+        for (int rocket = from; rocket < to; rocket++) {
+            if (time[rocket] >= maxSimulatedTime || step(rocket) == FINISHED) {
+                continue;
+            }
+            active++;
+            steps[rocket]++;
+            apogee[rocket] = Math.max(apogee[rocket], altitude[rocket]);
+            maxSpeed[rocket] = Math.max(maxSpeed[rocket], speed[rocket]);
+        }
+        return active;
+    }
+
+    // True if the next step drops the burning stage, which takes no time.
+    public boolean separatesNext(int rocket) {
+        return remainingStages[rocket] > 0 && fuel[rocket] - burnPerStep[rocket] <= 0;
+    }
+
+    public boolean isFinished(int rocket) {
+        return remainingStages[rocket] == 0 && altitude[rocket] <= 0 && speed[rocket] <= 0;
+    }
+
+    public FlightResult result(int rocket, long wallTimeNanos) {
+        return new FlightResult(steps[rocket], time[rocket], wallTimeNanos, apogee[rocket], maxSpeed[rocket],
+                burnTime[rocket], isFinished(rocket));
+    }
+
+    public double getTime(int rocket) {
+        return time[rocket];
+    }
+
+    public double getSpeed(int rocket) {
+        return speed[rocket];
+    }
+
+    public double getAltitude(int rocket) {
+        return altitude[rocket];
+    }
+
+    public double getMass(int rocket) {
+        return mass[rocket];
+    }
+
+    public int getRemainingStages(int rocket) {
+        return remainingStages[rocket];
+    }
+
+    public double getFuel(int rocket, int stage) {
+        if (stage == remainingStages[rocket] - 1) {
+            return fuel[rocket];
+        }
+        return stageFuel[rocket * maxStages + stage];
+    }
+}
@@ -0,0 +1,262 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// Recorded flight written by FlightRecorder. Big-endian layout:
+//   int magic, version, headerBytes, stageCount, cycleDelay, flags, startRemainingStages, reserved
+//   double payloadMass, thrustPerKgFuel, fuelConsumptionPerCycle, deltaTime, keyframeInterval
+//   double stageMasses[stageCount], initialFuelMasses[stageCount], startFuelMasses[stageCount]
+//   double stageThrustPerKgFuel[stageCount], stageFuelConsumption[stageCount]
+//          (only with FLAG_STAGE_ENGINES)
+// followed by fixed-size keyframes in time order:
+//   double totalTime, currentMass, speed, altitude, horizontalDistance, burningFuel
+//   int remainingStages
+// Stages burn from the last one down, so only the burning stage's fuel is
+// stored: the stages below it still hold their fuel from the start of the
+// recording and the ones above it were dropped empty. A torn last keyframe
+// is ignored. Keyframes are read straight from the mapped file.
+public final class FlightLog implements AutoCloseable {
+    public static final int MAGIC = 0x474F4C52; // "RLOG"
+    public static final int VERSION = 1;
+
+    static final int KEYFRAME_BYTES = 6 * Double.BYTES + Integer.BYTES;
+    private static final int FIXED_HEADER_BYTES = 8 * Integer.BYTES + 5 * Double.BYTES;
+    private static final int FLAG_STAGE_ENGINES = 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer keyframes;
+    private final int keyframeCount;
+
+    private final double payloadMass;
+    private final double[] stageMasses;
+    private final double[] initialFuelMasses;
+    private final double[] startFuelMasses;
+    private final int startRemainingStages;
+    private final double thrustPerKgFuel;
+    private final double[] stageThrustPerKgFuel;
+    private final double[] stageFuelConsumption;
+    private final int cycleDelay;
+    private final double fuelConsumptionPerCycle;
+    private final double deltaTime;
+    private final double keyframeInterval;
+
+    private FlightLog(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer prefix = ByteBuffer.allocate(FIXED_HEADER_BYTES);
+            if (!readFully(channel, prefix) || prefix.getInt(0) != MAGIC) {
+                throw new IOException("Not a flight log: " + file);
+            }
+            int version = prefix.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported flight log version " + version + ": " + file);
+            }
+            int headerBytes = prefix.getInt(8);
+            int stageCount = prefix.getInt(12);
+            int flags = prefix.getInt(20);
+            if (stageCount < 0 || headerBytes != headerBytes(stageCount, flags)) {
+                throw new IOException("Corrupt flight log header: " + file);
+            }
+            ByteBuffer header = ByteBuffer.allocate(headerBytes);
+            if (!readFully(channel, header)) {
+                throw new IOException("Truncated flight log: " + file);
+            }
+            header.position(4 * Integer.BYTES);
+            cycleDelay = header.getInt();
+            header.getInt();
+            startRemainingStages = header.getInt();
+            header.getInt();
+            payloadMass = header.getDouble();
+            thrustPerKgFuel = header.getDouble();
+            fuelConsumptionPerCycle = header.getDouble();
+            deltaTime = header.getDouble();
+            keyframeInterval = header.getDouble();
+            stageMasses = getArray(header, stageCount);
+            initialFuelMasses = getArray(header, stageCount);
+            startFuelMasses = getArray(header, stageCount);
+            if ((flags & FLAG_STAGE_ENGINES) != 0) {
+                stageThrustPerKgFuel = getArray(header, stageCount);
+                stageFuelConsumption = getArray(header, stageCount);
+            } else {
+                stageThrustPerKgFuel = null;
+                stageFuelConsumption = null;
+            }
+
+            long count = (channel.size() - headerBytes) / KEYFRAME_BYTES;
+            if (count == 0) {
+                throw new IOException("Flight log has no keyframes: " + file);
+            }
+            if (count * KEYFRAME_BYTES > Integer.MAX_VALUE) {
+                throw new IOException("Flight log is too large: " + file);
+            }
+            keyframeCount = (int) count;
+            keyframes = channel.map(FileChannel.MapMode.READ_ONLY, headerBytes, count * KEYFRAME_BYTES);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static FlightLog open(File file) throws IOException {
+        return new FlightLog(file);
+    }
+
+    static void writeHeader(DataOutputStream out, RocketModel model, RocketState state, double keyframeInterval)
+            throws IOException {
+        double[] stageMasses = model.getStageMasses();
+        double[] stageThrusts = model.getStageThrustPerKgFuel();
+        double[] stageConsumption = model.getStageFuelConsumption();
+        int stageCount = stageMasses.length;
+        int flags = stageThrusts != null || stageConsumption != null ? FLAG_STAGE_ENGINES : 0;
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(headerBytes(stageCount, flags));
+        out.writeInt(stageCount);
+        out.writeInt(model.getCycleDelay());
+        out.writeInt(flags);
+        out.writeInt(state.getRemainingStages());
+        out.writeInt(0);
+        out.writeDouble(model.getPayloadMass());
+        out.writeDouble(model.getThrustPerKgFuel());
+        out.writeDouble(model.getFuelConsumptionPerCycle());
+        out.writeDouble(model.getDeltaTime());
+        out.writeDouble(keyframeInterval);
+        putArray(out, stageMasses);
+        putArray(out, model.getInitialFuelMasses());
+        putArray(out, state.getFuelMasses());
+        if (flags != 0) {
+            for (int i = 0; i < stageCount; i++) {
+                out.writeDouble(model.getThrustPerKgFuel(i));
+            }
+            for (int i = 0; i < stageCount; i++) {
+                out.writeDouble(model.getFuelConsumptionPerCycle(i));
+            }
+        }
+    }
+
+    static void writeKeyframe(DataOutputStream out, double totalTime, double currentMass, double speed,
+                              double altitude, double horizontalDistance, int remainingStages,
+                              double[] fuelMasses) throws IOException {
+        out.writeDouble(totalTime);
+        out.writeDouble(currentMass);
+        out.writeDouble(speed);
+        out.writeDouble(altitude);
+        out.writeDouble(horizontalDistance);
+        out.writeDouble(remainingStages > 0 ? fuelMasses[remainingStages - 1] : 0);
+        out.writeInt(remainingStages);
+    }
+
+    // A model with the recorded parameters and no database, at the first keyframe.
+    public RocketModel createModel() {
+        RocketModel model = new RocketModel(null);
+        model.setCycleDelay(cycleDelay);
+        model.setFuelConsumptionPerCycle(fuelConsumptionPerCycle);
+        model.setRocketParameters(payloadMass, stageMasses.clone(), initialFuelMasses.clone(), thrustPerKgFuel,
+                stageThrustPerKgFuel == null ? null : stageThrustPerKgFuel.clone(),
+                stageFuelConsumption == null ? null : stageFuelConsumption.clone());
+        model.setTimeStep(deltaTime);
+        restore(0, model);
+        return model;
+    }
+
+    public void restore(int keyframe, RocketModel model) {
+        int offset = offset(keyframe);
+        int remainingStages = keyframes.getInt(offset + 6 * Double.BYTES);
+        double[] fuelMasses = new double[stageMasses.length];
+        for (int i = 0; i < fuelMasses.length; i++) {
+            if (i < remainingStages - 1 || i >= startRemainingStages) {
+                fuelMasses[i] = startFuelMasses[i];
+            } else if (i == remainingStages - 1) {
+                fuelMasses[i] = keyframes.getDouble(offset + 5 * Double.BYTES);
+            }
+        }
+        model.restoreState(keyframes.getDouble(offset), keyframes.getDouble(offset + Double.BYTES),
+                keyframes.getDouble(offset + 2 * Double.BYTES), keyframes.getDouble(offset + 3 * Double.BYTES),
+                keyframes.getDouble(offset + 4 * Double.BYTES), remainingStages, fuelMasses);
+    }
+
+    // Index of the last keyframe at or before the time, or 0 if the time is before the first one.
+    public int findKeyframe(double time) {
+        int low = 0;
+        int high = keyframeCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (getKeyframeTime(mid) <= time) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public int getKeyframeCount() {
+        return keyframeCount;
+    }
+
+    public double getKeyframeTime(int keyframe) {
+        return keyframes.getDouble(offset(keyframe));
+    }
+
+    public double getStartTime() {
+        return getKeyframeTime(0);
+    }
+
+    public double getEndTime() {
+        return getKeyframeTime(keyframeCount - 1);
+    }
+
+    public double getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public int getStageCount() {
+        return stageMasses.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int offset(int keyframe) {
+        if (keyframe < 0 || keyframe >= keyframeCount) {
+            throw new IndexOutOfBoundsException("Keyframe " + keyframe + " of " + keyframeCount);
+        }
+        return keyframe * KEYFRAME_BYTES;
+    }
+
+    private static int headerBytes(int stageCount, int flags) {
+        int stageArrays = (flags & FLAG_STAGE_ENGINES) != 0 ? 5 : 3;
+        return FIXED_HEADER_BYTES + stageArrays * stageCount * Double.BYTES;
+    }
+
+    private static void putArray(DataOutputStream out, double[] values) throws IOException {
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static double[] getArray(ByteBuffer buffer, int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = buffer.getDouble();
+        }
+        return values;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.util.Arrays;
+
+public final class FlightParameters {
+    private final double payloadMass;
+    private final double[] stageMasses;
+    private final double[] fuelMasses;
+    private final double thrustPerKgFuel;
+    private final int cycleDelay;
+    private final double fuelConsumptionPerCycle;
+    private final double timeStep;
+    // null when every stage uses thrustPerKgFuel / fuelConsumptionPerCycle
+    private final double[] stageThrustPerKgFuel;
+    private final double[] stageFuelConsumption;
+
+    public FlightParameters(double payloadMass, double[] stageMasses, double[] fuelMasses, double thrustPerKgFuel,
+                            int cycleDelay, double fuelConsumptionPerCycle, double timeStep) {
+        this(payloadMass, stageMasses, fuelMasses, thrustPerKgFuel, cycleDelay, fuelConsumptionPerCycle, timeStep,
+                null, null);
+    }
+
+    public FlightParameters(double payloadMass, double[] stageMasses, double[] fuelMasses, double thrustPerKgFuel,
+                            int cycleDelay, double fuelConsumptionPerCycle, double timeStep,
+                            double[] stageThrustPerKgFuel, double[] stageFuelConsumption) {
+        if (stageMasses.length != fuelMasses.length
+                || (stageThrustPerKgFuel != null && stageThrustPerKgFuel.length != stageMasses.length)
+                || (stageFuelConsumption != null && stageFuelConsumption.length != stageMasses.length)) {
+            throw new IllegalArgumentException("Per-stage arrays must have the same length");
+        }
+        this.payloadMass = payloadMass;
+        this.stageMasses = stageMasses.clone();
+        this.fuelMasses = fuelMasses.clone();
+        this.thrustPerKgFuel = thrustPerKgFuel;
+        this.cycleDelay = cycleDelay;
+        this.fuelConsumptionPerCycle = fuelConsumptionPerCycle;
+        this.timeStep = timeStep;
+        this.stageThrustPerKgFuel = stageThrustPerKgFuel == null ? null : stageThrustPerKgFuel.clone();
+        this.stageFuelConsumption = stageFuelConsumption == null ? null : stageFuelConsumption.clone();
+    }
+
+    public static FlightParameters of(RocketModel model) {
+        return new FlightParameters(model.getPayloadMass(), model.getStageMasses(), model.getInitialFuelMasses(),
+                model.getThrustPerKgFuel(), model.getCycleDelay(), model.getFuelConsumptionPerCycle(),
+                model.getDeltaTime(), model.getStageThrustPerKgFuel(), model.getStageFuelConsumption());
+    }
+
+    public RocketModel createModel() {
+        RocketModel model = new RocketModel(null);
+        model.setCycleDelay(cycleDelay);
+        model.setFuelConsumptionPerCycle(fuelConsumptionPerCycle);
+        model.setRocketParameters(payloadMass, stageMasses.clone(), fuelMasses.clone(), thrustPerKgFuel,
+                getStageThrustPerKgFuel(), getStageFuelConsumption());
+        model.setTimeStep(timeStep);
+        return model;
+    }
+
+    public FlightResult simulate() {
+        return new HeadlessSimulation(createModel()).run();
+    }
+
+    public FlightResult simulate(Integrator.Type integrator) {
+        HeadlessSimulation simulation = new HeadlessSimulation(createModel());
+        simulation.setIntegrator(integrator);
+        return simulation.run();
+    }
+
+    public FlightParameters withPayloadMass(double value) {
+        return new FlightParameters(value, stageMasses, fuelMasses, thrustPerKgFuel, cycleDelay, fuelConsumptionPerCycle, timeStep,
+                stageThrustPerKgFuel, stageFuelConsumption);
+    }
+
+    public FlightParameters withStageMass(int stage, double value) {
+        double[] masses = stageMasses.clone();
+        masses[stage] = value;
+        return new FlightParameters(payloadMass, masses, fuelMasses, thrustPerKgFuel, cycleDelay, fuelConsumptionPerCycle, timeStep,
+                stageThrustPerKgFuel, stageFuelConsumption);
+    }
+
+    public FlightParameters withFuelMass(int stage, double value) {
+        double[] masses = fuelMasses.clone();
+        masses[stage] = value;
+        return new FlightParameters(payloadMass, stageMasses, masses, thrustPerKgFuel, cycleDelay, fuelConsumptionPerCycle, timeStep,
+                stageThrustPerKgFuel, stageFuelConsumption);
+    }
+
+    public FlightParameters withStageThrustPerKgFuel(int stage, double value) {
+        double[] thrusts = stageThrustPerKgFuel == null ? filled(thrustPerKgFuel) : stageThrustPerKgFuel.clone();
+        thrusts[stage] = value;
+        return new FlightParameters(payloadMass, stageMasses, fuelMasses, thrustPerKgFuel, cycleDelay, fuelConsumptionPerCycle, timeStep,
+                thrusts, stageFuelConsumption);
+    }
+
+    public FlightParameters withStageFuelConsumption(int stage, double value) {
+        double[] consumption = stageFuelConsumption == null ? filled(fuelConsumptionPerCycle) : stageFuelConsumption.clone();
+        consumption[stage] = value;
+        return new FlightParameters(payloadMass, stageMasses, fuelMasses, thrustPerKgFuel, cycleDelay, fuelConsumptionPerCycle, timeStep,
+                stageThrustPerKgFuel, consumption);
+    }
+
+    private double[] filled(double value) {
+        double[] values = new double[stageMasses.length];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    public FlightParameters withThrustPerKgFuel(double value) {
+        return new FlightParameters(payloadMass, stageMasses, fuelMasses, value, cycleDelay, fuelConsumptionPerCycle, timeStep,
+                stageThrustPerKgFuel, stageFuelConsumption);
+    }
+
+    public FlightParameters withCycleDelay(int value) {
+        return new FlightParameters(payloadMass, stageMasses, fuelMasses, thrustPerKgFuel, value, fuelConsumptionPerCycle, timeStep,
+                stageThrustPerKgFuel, stageFuelConsumption);
+    }
+
+    public FlightParameters withFuelConsumptionPerCycle(double value) {
+        return new FlightParameters(payloadMass, stageMasses, fuelMasses, thrustPerKgFuel, cycleDelay, value, timeStep,
+                stageThrustPerKgFuel, stageFuelConsumption);
+    }
+
+    public FlightParameters withTimeStep(double value) {
+        return new FlightParameters(payloadMass, stageMasses, fuelMasses, thrustPerKgFuel, cycleDelay, fuelConsumptionPerCycle, value,
+                stageThrustPerKgFuel, stageFuelConsumption);
+    }
+
+    public double getPayloadMass() { return payloadMass; }
+    public double[] getStageMasses() { return stageMasses.clone(); }
+    public double[] getFuelMasses() { return fuelMasses.clone(); }
+    public double getThrustPerKgFuel() { return thrustPerKgFuel; }
+    public int getCycleDelay() { return cycleDelay; }
+    public double getFuelConsumptionPerCycle() { return fuelConsumptionPerCycle; }
+    public double getTimeStep() { return timeStep; }
+    public int getStageCount() { return stageMasses.length; }
+    public double[] getStageThrustPerKgFuel() { return stageThrustPerKgFuel == null ? null : stageThrustPerKgFuel.clone(); }
+    public double[] getStageFuelConsumption() { return stageFuelConsumption == null ? null : stageFuelConsumption.clone(); }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FlightParameters)) {
+            return false;
+        }
+        FlightParameters other = (FlightParameters) o;
+        return Double.compare(payloadMass, other.payloadMass) == 0
+                && Arrays.equals(stageMasses, other.stageMasses)
+                && Arrays.equals(fuelMasses, other.fuelMasses)
+                && Double.compare(thrustPerKgFuel, other.thrustPerKgFuel) == 0
+                && cycleDelay == other.cycleDelay
+                && Double.compare(fuelConsumptionPerCycle, other.fuelConsumptionPerCycle) == 0
+                && Double.compare(timeStep, other.timeStep) == 0
+                && Arrays.equals(stageThrustPerKgFuel, other.stageThrustPerKgFuel)
+                && Arrays.equals(stageFuelConsumption, other.stageFuelConsumption);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Double.hashCode(payloadMass);
+        result = 31 * result + Arrays.hashCode(stageMasses);
+        result = 31 * result + Arrays.hashCode(fuelMasses);
+        result = 31 * result + Double.hashCode(thrustPerKgFuel);
+        result = 31 * result + cycleDelay;
+        result = 31 * result + Double.hashCode(fuelConsumptionPerCycle);
+        result = 31 * result + Double.hashCode(timeStep);
+        result = 31 * result + Arrays.hashCode(stageThrustPerKgFuel);
+        result = 31 * result + Arrays.hashCode(stageFuelConsumption);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "FlightParameters{payloadMass=" + payloadMass +
+                ", stageMasses=" + Arrays.toString(stageMasses) +
+                ", fuelMasses=" + Arrays.toString(fuelMasses) +
+                ", thrustPerKgFuel=" + thrustPerKgFuel +
+                ", cycleDelay=" + cycleDelay +
+                ", fuelConsumptionPerCycle=" + fuelConsumptionPerCycle +
+                ", timeStep=" + timeStep +
+                (stageThrustPerKgFuel != null ? ", stageThrustPerKgFuel=" + Arrays.toString(stageThrustPerKgFuel) : "") +
+                (stageFuelConsumption != null ? ", stageFuelConsumption=" + Arrays.toString(stageFuelConsumption) : "") + '}';
+    }
+}
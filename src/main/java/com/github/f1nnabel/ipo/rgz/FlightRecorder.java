@@ -0,0 +1,140 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+// Writes a FlightLog of one flight: the parameters, then a keyframe of the
+// flight state at least keyframeInterval seconds of simulated time apart.
+// Any exact state is a valid keyframe because stepping from it is
+// deterministic, so frames the observer bus coalesces cost nothing. Attach
+// it to a running model with start(), or call sample() after every step of a
+// headless run. A reset of the model ends the recording, since the frames
+// that follow belong to another flight.
+public class FlightRecorder implements TelemetryObserver, AutoCloseable {
+    public static final double DEFAULT_KEYFRAME_INTERVAL = 1.0;
+
+    private final RocketModel model;
+    private final DataOutputStream out;
+    private final double keyframeInterval;
+    private final RocketState state = new RocketState();
+    private double lastKeyframeTime;
+    private int lastRemainingStages;
+    private int keyframes = 0;
+    private boolean closed = false;
+
+    public FlightRecorder(RocketModel model, File file) throws IOException {
+        this(model, file, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    public FlightRecorder(RocketModel model, File file, double keyframeInterval) throws IOException {
+        if (!(keyframeInterval > 0)) {
+            throw new IllegalArgumentException("Keyframe interval must be positive: " + keyframeInterval);
+        }
+        this.model = model;
+        this.keyframeInterval = keyframeInterval;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            model.readState(state);
+            FlightLog.writeHeader(out, model, state, keyframeInterval);
+            writeKeyframe(state.getTotalTime(), state.getCurrentMass(), state.getSpeed(), state.getAltitude(),
+                    state.getHorizontalDistance(), state.getRemainingStages(), state.getFuelMasses());
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    public void start() {
+        model.addObserver(this);
+    }
+
+    // For runs that step the model directly instead of publishing frames.
+    public synchronized void sample(RocketModel source) {
+        if (closed || (source.getTotalTime() >= lastKeyframeTime
+                && source.getTotalTime() < lastKeyframeTime + keyframeInterval)) {
+            return;
+        }
+        source.readState(state);
+        keyframe(state.getTotalTime(), state.getCurrentMass(), state.getSpeed(), state.getAltitude(),
+                state.getHorizontalDistance(), state.getRemainingStages(), state.getFuelMasses(), false);
+    }
+
+    @Override
+    public synchronized void onFrame(TelemetryFrame frame) {
+        if (closed) {
+            return;
+        }
+        int stages = frame.getStageCount();
+        if (state.fuelMasses.length != stages) {
+            state.fuelMasses = new double[stages];
+        }
+        for (int i = 0; i < stages; i++) {
+            state.fuelMasses[i] = frame.getFuelMass(i);
+        }
+        keyframe(frame.getSimTime(), frame.getCurrentMass(), frame.getSpeed(), frame.getAltitude(),
+                frame.getHorizontalDistance(), frame.getRemainingStages(), state.fuelMasses, false);
+    }
+
+    @Override
+    public void onStageSeparation(int stageNumber) {
+    }
+
+    public synchronized int getKeyframeCount() {
+        return keyframes;
+    }
+
+    // Ends the log with the model's current state so the whole flight can be replayed.
+    @Override
+    public void close() {
+        model.removeObserver(this);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            model.readState(state);
+            keyframe(state.getTotalTime(), state.getCurrentMass(), state.getSpeed(), state.getAltitude(),
+                    state.getHorizontalDistance(), state.getRemainingStages(), state.getFuelMasses(), true);
+            finish();
+        }
+    }
+
+    private void finish() {
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void keyframe(double totalTime, double currentMass, double speed, double altitude,
+                          double horizontalDistance, int remainingStages, double[] fuelMasses, boolean last) {
+        if (totalTime < lastKeyframeTime) {
+            finish();
+            return;
+        }
+        if (last ? totalTime == lastKeyframeTime && remainingStages == lastRemainingStages
+                : totalTime < lastKeyframeTime + keyframeInterval) {
+            return;
+        }
+        try {
+            writeKeyframe(totalTime, currentMass, speed, altitude, horizontalDistance, remainingStages, fuelMasses);
+        } catch (IOException e) {
+            e.printStackTrace();
+            finish();
+        }
+    }
+
+    private void writeKeyframe(double totalTime, double currentMass, double speed, double altitude,
+                               double horizontalDistance, int remainingStages, double[] fuelMasses)
+            throws IOException {
+        FlightLog.writeKeyframe(out, totalTime, currentMass, speed, altitude, horizontalDistance, remainingStages,
+                fuelMasses);
+        lastKeyframeTime = totalTime;
+        lastRemainingStages = remainingStages;
+        keyframes++;
+    }
+}
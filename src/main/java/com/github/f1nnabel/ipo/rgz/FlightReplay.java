@@ -0,0 +1,173 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Plays a FlightLog back on a model of its own. seek() loads the nearest
+// keyframe at or before the time and steps forward from it, so no seek
+// integrates more than one keyframe interval. Playback moves simulated time
+// at any multiple of real time, negative to rewind, and publishes a frame to
+// the model's observers after every move; stage separations passed while
+// playing forward are published too, including the ones a keyframe jumps
+// over. The model keeps no history, since seeking makes it discontinuous.
+public class FlightReplay implements AutoCloseable {
+    private static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / TelemetryObserver.UI_UPDATE_RATE;
+
+    private final FlightLog log;
+    private final RocketModel model;
+    private final double timeEpsilon;
+
+    private volatile double speed = 1.0;
+    private volatile boolean playing = false;
+    private Thread playbackThread;
+    private double anchorTime;
+    private long anchorNanos;
+
+    public FlightReplay(FlightLog log) {
+        this.log = log;
+        this.model = log.createModel();
+        this.model.setSamplingPolicy(SamplingPolicy.Sink.MEMORY, SamplingPolicy.never());
+        this.timeEpsilon = model.getDeltaTime() * 1e-6;
+    }
+
+    public RocketModel getModel() {
+        return model;
+    }
+
+    public FlightLog getLog() {
+        return log;
+    }
+
+    public void addObserver(TelemetryObserver observer) {
+        model.addObserver(observer);
+    }
+
+    public void removeObserver(TelemetryObserver observer) {
+        model.removeObserver(observer);
+    }
+
+    public void addObserver(RocketObserver observer) {
+        model.addObserver(observer);
+    }
+
+    public void removeObserver(RocketObserver observer) {
+        model.removeObserver(observer);
+    }
+
+    public double getTime() {
+        return model.getTotalTime();
+    }
+
+    // Moves to the last simulation step at or before the time, clamped to the recording.
+    public void seek(double time) {
+        synchronized (this) {
+            moveTo(time, false);
+            anchor();
+        }
+        model.notifyObservers();
+    }
+
+    private void moveTo(double time, boolean publishSeparations) {
+        double target = Math.max(log.getStartTime(), Math.min(log.getEndTime(), time));
+        int keyframe = log.findKeyframe(target);
+        double current = model.getTotalTime();
+        // stepping on from the current state is cheaper unless a keyframe is closer
+        if (target < current || log.getKeyframeTime(keyframe) > current) {
+            int remainingStages = model.getRemainingStages();
+            log.restore(keyframe, model);
+            if (publishSeparations && target >= current) {
+                for (int stage = remainingStages; stage > model.getRemainingStages(); stage--) {
+                    model.publishStageSeparation(stage);
+                }
+            }
+        }
+        while (model.getTotalTime() + model.getDeltaTime() <= target + timeEpsilon) {
+            if (!model.step()) {
+                break;
+            }
+        }
+        // a separation takes no time, so it belongs to the step at the target
+        while (model.separatesNext()) {
+            model.step();
+        }
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public synchronized void setSpeed(double speed) {
+        anchor();
+        this.speed = speed;
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public void play() {
+        if (playing) {
+            return;
+        }
+        // a thread that has just finished may still need the lock on its way out
+        awaitPlaybackThread();
+        synchronized (this) {
+            if (playing) {
+                return;
+            }
+            anchor();
+            playing = true;
+            playbackThread = new Thread(this::runPlayback, "flight-replay");
+            playbackThread.setDaemon(true);
+            playbackThread.start();
+        }
+    }
+
+    public void pause() {
+        playing = false;
+        awaitPlaybackThread();
+    }
+
+    @Override
+    public void close() {
+        pause();
+    }
+
+    private void anchor() {
+        anchorTime = model.getTotalTime();
+        anchorNanos = System.nanoTime();
+    }
+
+    private void runPlayback() {
+        while (playing) {
+            boolean finished;
+            synchronized (this) {
+                double target = anchorTime + speed * (System.nanoTime() - anchorNanos) / 1e9;
+                moveTo(target, speed > 0);
+                finished = speed >= 0 ? target >= log.getEndTime() : target <= log.getStartTime();
+            }
+            model.notifyObservers();
+            if (finished) {
+                playing = false;
+                return;
+            }
+            LockSupport.parkNanos(this, FRAME_NANOS);
+        }
+    }
+
+    private void awaitPlaybackThread() {
+        Thread thread;
+        synchronized (this) {
+            thread = playbackThread;
+        }
+        if (thread == null || thread == Thread.currentThread()) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
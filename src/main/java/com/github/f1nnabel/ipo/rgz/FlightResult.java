@@ -0,0 +1,44 @@
+package com.github.f1nnabel.ipo.rgz;
+
+public class FlightResult {
+    private final long steps;
+    private final double simulatedTime;
+    private final long wallTimeNanos;
+    private final double apogee;
+    private final double maxSpeed;
+    private final double burnTime;
+    private final boolean landed;
+
+    public FlightResult(long steps, double simulatedTime, long wallTimeNanos, double apogee, double maxSpeed,
+                        double burnTime, boolean landed) {
+        this.steps = steps;
+        this.simulatedTime = simulatedTime;
+        this.wallTimeNanos = wallTimeNanos;
+        this.apogee = apogee;
+        this.maxSpeed = maxSpeed;
+        this.burnTime = burnTime;
+        this.landed = landed;
+    }
+
+    public long getSteps() { return steps; }
+    public double getSimulatedTime() { return simulatedTime; }
+    public long getWallTimeNanos() { return wallTimeNanos; }
+    public double getApogee() { return apogee; }
+    public double getMaxSpeed() { return maxSpeed; }
+    public double getBurnTime() { return burnTime; }
+    public boolean isLanded() { return landed; }
+
+    public double getSimSecondsPerWallSecond() {
+        if (wallTimeNanos <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return simulatedTime / (wallTimeNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Шагов: %d, время полёта: %.2f с, апогей: %.2f м, макс. скорость: %.2f м/с, " +
+                        "работа двигателей: %.2f с, %.0f с симуляции / с",
+                steps, simulatedTime, apogee, maxSpeed, burnTime, getSimSecondsPerWallSecond());
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.f1nnabel.ipo.rgz;
+
+public class HeadlessSimulation {
+    public static final double DEFAULT_MAX_SIMULATED_TIME = 1_000_000;
+
+    private final RocketModel model;
+    private double maxSimulatedTime = DEFAULT_MAX_SIMULATED_TIME;
+    private Integrator.Type integrator;
+    private FlightRecorder recorder;
+
+    public HeadlessSimulation(RocketModel model) {
+        this.model = model;
+    }
+
+    public void setMaxSimulatedTime(double maxSimulatedTime) {
+        this.maxSimulatedTime = maxSimulatedTime;
+    }
+
+    // null keeps the model's own fixed-step update; otherwise the flight is integrated by FlightIntegrator
+    public void setIntegrator(Integrator.Type integrator) {
+        this.integrator = integrator;
+    }
+
+    // Keyframes are taken after every step of the model's own update; a
+    // replay re-integrates with that update, so other integrators cannot record.
+    public void setRecorder(FlightRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public FlightResult run() {
+        if (integrator != null) {
+            if (recorder != null) {
+                throw new IllegalStateException("Only the fixed-step update can be recorded");
+            }
+            FlightIntegrator flightIntegrator = new FlightIntegrator(integrator.create());
+            flightIntegrator.setMaxSimulatedTime(maxSimulatedTime);
+            return flightIntegrator.run(model);
+        }
+        double apogee = model.getAltitude();
+        double maxSpeed = model.getSpeed();
+        double burnTime = model.getRemainingStages() == 0 ? model.getTotalTime() : Double.NaN;
+        long steps = 0;
+
+        long start = System.nanoTime();
+        while (model.getTotalTime() < maxSimulatedTime && model.step()) {
+            steps++;
+            if (recorder != null) {
+                recorder.sample(model);
+            }
+            apogee = Math.max(apogee, model.getAltitude());
+            maxSpeed = Math.max(maxSpeed, model.getSpeed());
+            if (Double.isNaN(burnTime) && model.getRemainingStages() == 0) {
+                burnTime = model.getTotalTime();
+            }
+        }
+        long wallTime = System.nanoTime() - start;
+
+        return new FlightResult(steps, model.getTotalTime(), wallTime, apogee, maxSpeed, burnTime,
+                model.isFlightFinished());
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.f1nnabel.ipo.rgz;
+
+public class Histogram {
+    private final double min;
+    private final double max;
+    private final long[] counts;
+
+    public Histogram(double[] values, int bins) {
+        double low = Double.POSITIVE_INFINITY;
+        double high = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            if (!Double.isNaN(value)) {
+                low = Math.min(low, value);
+                high = Math.max(high, value);
+            }
+        }
+        if (low > high) {
+            low = 0;
+            high = 0;
+        }
+        this.min = low;
+        this.max = high;
+        this.counts = new long[bins];
+        double width = (high - low) / bins;
+        for (double value : values) {
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            int bin = width > 0 ? (int) ((value - low) / width) : 0;
+            counts[Math.min(bin, bins - 1)]++;
+        }
+    }
+
+    public int getBinCount() { return counts.length; }
+    public long getCount(int bin) { return counts[bin]; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+
+    public double getBinStart(int bin) {
+        return min + (max - min) * bin / counts.length;
+    }
+
+    public double getBinEnd(int bin) {
+        return min + (max - min) * (bin + 1) / counts.length;
+    }
+
+    @Override
+    public String toString() {
+        long peak = 1;
+        for (long count : counts) {
+            peak = Math.max(peak, count);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            int bar = (int) (counts[i] * 40 / peak);
+            sb.append(String.format("%12.2f .. %12.2f | %-40s %d%n", getBinStart(i), getBinEnd(i), "#".repeat(bar), counts[i]));
+        }
+        return sb.toString();
+    }
+}
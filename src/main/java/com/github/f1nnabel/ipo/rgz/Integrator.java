@@ -0,0 +1,28 @@
+package com.github.f1nnabel.ipo.rgz;
+
+public interface Integrator {
+    enum Type {
+        EULER,
+        RK4,
+        RK45;
+
+        public Integrator create() {
+            switch (this) {
+                case EULER:
+                    return new EulerIntegrator();
+                case RK4:
+                    return new RungeKutta4Integrator();
+                default:
+                    return new DormandPrinceIntegrator();
+            }
+        }
+    }
+
+    // Advances y in place from t by at most maxStep and returns the step actually taken.
+    double step(OdeSystem system, double t, double[] y, double maxStep);
+
+    // Fixed-step integrators always take maxStep; adaptive ones choose their own step up to it.
+    default boolean isAdaptive() {
+        return false;
+    }
+}
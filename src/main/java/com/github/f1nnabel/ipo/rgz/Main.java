@@ -1,10 +1,363 @@
 package com.github.f1nnabel.ipo.rgz;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
 public class Main {
     public static void main(String[] args) {
+        if (Arrays.asList(args).contains("--headless") || Arrays.asList(args).contains("--monte-carlo")
+                || Arrays.asList(args).contains("--sweep") || Arrays.asList(args).contains("--rockets")
+                || Arrays.asList(args).contains("--replay")) {
+            runHeadless(args);
+            return;
+        }
         RocketModel model = new RocketModel();
         RocketController controller = new RocketController(model);
         MainWindow mainWindow = new MainWindow(controller);
         model.addObserver(mainWindow);
     }
+
+    private static void runHeadless(String[] args) {
+        double payloadMass = 10;
+        double[] stageMasses = {5, 5, 5};
+        double[] fuelMasses = {3, 3, 3};
+        double thrustPerKgFuel = 3500;
+        int cycleDelay = 100;
+        double fuelConsumption = 0.01;
+        double[] stageThrusts = null;
+        double[] stageConsumption = null;
+        double timeStep = Double.NaN;
+        double maxTime = HeadlessSimulation.DEFAULT_MAX_SIMULATED_TIME;
+        boolean useDatabase = false;
+        Integrator.Type integrator = null;
+        int flights = 0;
+        long seed = 1;
+        double spread = 0.05;
+        int bins = 10;
+        String rowAxis = null;
+        String columnAxis = null;
+        String csvFile = null;
+        SweepResult.Metric metric = SweepResult.Metric.APOGEE;
+        SamplingPolicy memorySampling = null;
+        String memorySamplingSpec = null;
+        SamplingPolicy databaseSampling = null;
+        int rockets = 0;
+        int workers = Runtime.getRuntime().availableProcessors();
+        String recordFile = null;
+        double keyframeInterval = FlightRecorder.DEFAULT_KEYFRAME_INTERVAL;
+        String replayFile = null;
+        double seekTime = Double.NaN;
+        double replaySpeed = 1.0;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--headless":
+                    break;
+                case "--payload":
+                    payloadMass = Double.parseDouble(args[++i]);
+                    break;
+                case "--stages":
+                    stageMasses = parseArray(args[++i]);
+                    break;
+                case "--fuel":
+                    fuelMasses = parseArray(args[++i]);
+                    break;
+                case "--thrust":
+                    thrustPerKgFuel = Double.parseDouble(args[++i]);
+                    break;
+                case "--stage-thrust":
+                    stageThrusts = parseArray(args[++i]);
+                    break;
+                case "--stage-fuel-per-cycle":
+                    stageConsumption = parseArray(args[++i]);
+                    break;
+                case "--cycle-delay":
+                    cycleDelay = Integer.parseInt(args[++i]);
+                    break;
+                case "--fuel-per-cycle":
+                    fuelConsumption = Double.parseDouble(args[++i]);
+                    break;
+                case "--dt":
+                    timeStep = Double.parseDouble(args[++i]);
+                    break;
+                case "--max-time":
+                    maxTime = Double.parseDouble(args[++i]);
+                    break;
+                case "--integrator":
+                    integrator = Integrator.Type.valueOf(args[++i].toUpperCase());
+                    break;
+                case "--db":
+                    useDatabase = true;
+                    break;
+                case "--monte-carlo":
+                    flights = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--spread":
+                    spread = Double.parseDouble(args[++i]);
+                    break;
+                case "--bins":
+                    bins = Integer.parseInt(args[++i]);
+                    break;
+                case "--sweep":
+                    rowAxis = args[++i];
+                    columnAxis = args[++i];
+                    break;
+                case "--metric":
+                    metric = SweepResult.Metric.valueOf(args[++i].toUpperCase().replace('-', '_'));
+                    break;
+                case "--csv":
+                    csvFile = args[++i];
+                    break;
+                case "--rockets":
+                    rockets = Integer.parseInt(args[++i]);
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                case "--sample-memory":
+                    memorySamplingSpec = args[++i];
+                    memorySampling = SamplingPolicy.parse(memorySamplingSpec);
+                    break;
+                case "--sample-db":
+                    databaseSampling = SamplingPolicy.parse(args[++i]);
+                    break;
+                case "--record":
+                    recordFile = args[++i];
+                    break;
+                case "--keyframe-interval":
+                    keyframeInterval = Double.parseDouble(args[++i]);
+                    break;
+                case "--replay":
+                    replayFile = args[++i];
+                    break;
+                case "--seek":
+                    seekTime = Double.parseDouble(args[++i]);
+                    break;
+                case "--speed":
+                    replaySpeed = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    System.err.println("Неизвестный параметр: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        if (replayFile != null) {
+            runReplay(new File(replayFile), seekTime, replaySpeed);
+            return;
+        }
+        if (recordFile != null && integrator != null) {
+            System.err.println("Запись полёта возможна только без --integrator");
+            System.exit(2);
+        }
+
+        FlightParameters nominal = new FlightParameters(payloadMass, stageMasses, fuelMasses, thrustPerKgFuel,
+                cycleDelay, fuelConsumption, Double.isNaN(timeStep) ? cycleDelay / 1000.0 : timeStep,
+                stageThrusts, stageConsumption);
+
+        if (rowAxis != null) {
+            ParameterSweep sweep = new ParameterSweep(nominal);
+            SweepResult result = sweep.sweep(parseAxis(rowAxis), parseAxis(columnAxis));
+            if (csvFile != null) {
+                result.writeCsv(new File(csvFile), metric);
+            } else {
+                try {
+                    result.writeCsv(new OutputStreamWriter(System.out), metric);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            return;
+        }
+
+        if (flights > 0) {
+            MonteCarloRunner runner = new MonteCarloRunner(nominal)
+                    .setPayloadMass(spread(payloadMass, spread))
+                    .setThrustPerKgFuel(spread(thrustPerKgFuel, spread))
+                    .setFuelConsumptionPerCycle(spread(fuelConsumption, spread));
+            for (int stage = 0; stage < stageMasses.length; stage++) {
+                runner.setStageMass(stage, spread(stageMasses[stage], spread));
+                runner.setFuelMass(stage, spread(fuelMasses[stage], spread));
+                if (stageThrusts != null) {
+                    runner.setStageThrustPerKgFuel(stage, spread(stageThrusts[stage], spread));
+                }
+                if (stageConsumption != null) {
+                    runner.setStageFuelConsumption(stage, spread(stageConsumption[stage], spread));
+                }
+            }
+            System.out.print(runner.run(flights, seed).summary(bins));
+            return;
+        }
+
+        if (rockets > 0) {
+            runFleet(nominal, rockets, workers, memorySamplingSpec);
+            return;
+        }
+
+        DatabaseManager dbManager = useDatabase ? new DatabaseManager() : null;
+        RocketModel model = new RocketModel(dbManager);
+        model.setCycleDelay(cycleDelay);
+        model.setFuelConsumptionPerCycle(fuelConsumption);
+        model.setRocketParameters(payloadMass, stageMasses, fuelMasses, thrustPerKgFuel, stageThrusts, stageConsumption);
+        if (!Double.isNaN(timeStep)) {
+            model.setTimeStep(timeStep);
+        }
+        if (memorySampling != null) {
+            model.setSamplingPolicy(SamplingPolicy.Sink.MEMORY, memorySampling);
+        }
+        if (databaseSampling != null) {
+            model.setSamplingPolicy(SamplingPolicy.Sink.DATABASE, databaseSampling);
+        }
+
+        HeadlessSimulation simulation = new HeadlessSimulation(model);
+        simulation.setMaxSimulatedTime(maxTime);
+        simulation.setIntegrator(integrator);
+        FlightRecorder recorder = null;
+        if (recordFile != null) {
+            try {
+                recorder = new FlightRecorder(model, new File(recordFile), keyframeInterval);
+                simulation.setRecorder(recorder);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        FlightResult result = simulation.run();
+        if (recorder != null) {
+            recorder.close();
+            System.out.printf("Записано ключевых кадров: %d%n", recorder.getKeyframeCount());
+        }
+        if (dbManager != null) {
+            dbManager.close();
+        }
+        System.out.println(result);
+    }
+
+    // With a seek time prints the state at that time, otherwise plays the
+    // whole recording at the given speed and prints what happens.
+    private static void runReplay(File file, double seekTime, double speed) {
+        try (FlightLog log = FlightLog.open(file);
+             FlightReplay replay = new FlightReplay(log)) {
+            if (!Double.isNaN(seekTime)) {
+                replay.seek(seekTime);
+                RocketModel model = replay.getModel();
+                System.out.printf("Время: %.2f с, масса: %.2f кг, скорость: %.2f м/с, высота: %.2f м, " +
+                                "дальность: %.2f м, ступеней: %d%n", model.getTotalTime(), model.getCurrentMass(),
+                        model.getSpeed(), model.getAltitude(), model.getHorizontalDistance(),
+                        model.getRemainingStages());
+                return;
+            }
+            RocketObserver printer = new RocketObserver() {
+                @Override
+                public void onStageSeparation(int stageNumber) {
+                    System.out.printf("Время: %.2f с, отделение ступени %d%n", replay.getTime(), stageNumber);
+                }
+
+                @Override
+                public void onUpdateStatus(double currentMass, double speed, double altitude,
+                                           double horizontalDistance, int remainingStages, double[] fuelMasses,
+                                           double[] initialFuelMasses) {
+                    System.out.printf("Время: %.2f с, скорость: %.2f м/с, высота: %.2f м%n", replay.getTime(),
+                            speed, altitude);
+                }
+
+                @Override
+                public int getMaxUpdateRate() {
+                    return 1;
+                }
+            };
+            replay.addObserver(printer);
+            replay.setSpeed(speed);
+            if (speed < 0) {
+                replay.seek(log.getEndTime());
+            }
+            replay.play();
+            while (replay.isPlaying()) {
+                Thread.sleep(100);
+            }
+            replay.removeObserver(printer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Flies identical rockets in real time on one SimulationEngine.
+    private static void runFleet(FlightParameters parameters, int rockets, int workers, String memorySampling) {
+        long start = System.nanoTime();
+        try (SimulationEngine engine = new SimulationEngine(workers)) {
+            for (int i = 0; i < rockets; i++) {
+                RocketModel model = parameters.createModel();
+                if (memorySampling != null) {
+                    // policies keep state, so every rocket parses its own
+                    model.setSamplingPolicy(SamplingPolicy.Sink.MEMORY, SamplingPolicy.parse(memorySampling));
+                }
+                engine.add(model);
+            }
+            engine.startAll(true);
+            engine.awaitFinished(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            double apogee = 0;
+            for (RocketModel model : engine.getModels()) {
+                apogee = Math.max(apogee, model.getAltitudeData().max());
+                model.releaseHistory();
+            }
+            System.out.printf("Ракет: %d, потоков: %d, время: %.1f с, максимальная высота: %.1f м%n", rockets,
+                    engine.getWorkerCount(), (System.nanoTime() - start) / 1e9, apogee);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // name=from:to:count, name is payload, thrust, fuel-per-cycle, cycle-delay, stageN, fuelN,
+    // thrustN or burnN (per-stage thrust and fuel per cycle)
+    private static SweepAxis parseAxis(String spec) {
+        String[] nameAndRange = spec.split("=");
+        String[] range = nameAndRange[1].split(":");
+        double[] values = SweepAxis.range(Double.parseDouble(range[0]), Double.parseDouble(range[1]),
+                Integer.parseInt(range[2]));
+        String name = nameAndRange[0];
+        switch (name) {
+            case "payload":
+                return SweepAxis.payloadMass(values);
+            case "thrust":
+                return SweepAxis.thrustPerKgFuel(values);
+            case "fuel-per-cycle":
+                return SweepAxis.fuelConsumptionPerCycle(values);
+            case "cycle-delay":
+                return SweepAxis.cycleDelay(values);
+            default:
+                if (name.startsWith("stage")) {
+                    return SweepAxis.stageMass(Integer.parseInt(name.substring(5)) - 1, values);
+                }
+                if (name.startsWith("fuel")) {
+                    return SweepAxis.fuelMass(Integer.parseInt(name.substring(4)) - 1, values);
+                }
+                if (name.startsWith("thrust")) {
+                    return SweepAxis.stageThrustPerKgFuel(Integer.parseInt(name.substring(6)) - 1, values);
+                }
+                if (name.startsWith("burn")) {
+                    return SweepAxis.stageFuelConsumption(Integer.parseInt(name.substring(4)) - 1, values);
+                }
+                throw new IllegalArgumentException("Unknown sweep axis: " + name);
+        }
+    }
+
+    private static ParameterDistribution spread(double nominal, double relativeDeviation) {
+        return ParameterDistribution.normal(nominal, Math.abs(nominal) * relativeDeviation);
+    }
+
+    private static double[] parseArray(String value) {
+        String[] parts = value.split(",");
+        double[] array = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            array[i] = Double.parseDouble(parts[i].trim());
+        }
+        return array;
+    }
 }
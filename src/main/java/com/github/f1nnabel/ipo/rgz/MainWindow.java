@@ -8,18 +8,23 @@ import java.awt.event.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.io.*;
+import java.sql.SQLException;
 
-public class MainWindow extends JFrame implements RocketObserver {
+public class MainWindow extends JFrame implements TelemetryObserver {
     private RocketController controller;
 
     private JButton settingsButton;
     private JButton dataButton;
+    private JButton historyButton;
 
     private JButton startStopButton;
     private JLabel statusLabel;
 
-    private JProgressBar[] fuelBars;
-    private JLabel[] fuelLabels;
+    private JPanel indicatorsPanel;
+    private JProgressBar[] fuelBars = new JProgressBar[0];
+    private JLabel[] fuelLabels = new JLabel[0];
+    // remainingStages of the last frame shown; -1 redraws every stage
+    private int shownRemainingStages = -1;
 
     private boolean isSimulating = false;
 
@@ -40,6 +45,12 @@ public class MainWindow extends JFrame implements RocketObserver {
         setTitle("Симуляция Ракеты");
         setSize(400, 400);
         setDefaultCloseOperation(EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                controller.shutdown();
+            }
+        });
         setLayout(new BorderLayout());
 
         JPanel mainPanel = new JPanel();
@@ -48,8 +59,10 @@ public class MainWindow extends JFrame implements RocketObserver {
         JPanel firstRow = new JPanel(new FlowLayout(FlowLayout.CENTER));
         settingsButton = new JButton("Настройки");
         dataButton = new JButton("Данные");
+        historyButton = new JButton("История");
         firstRow.add(settingsButton);
         firstRow.add(dataButton);
+        firstRow.add(historyButton);
         mainPanel.add(firstRow);
 
         JPanel secondRow = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -59,25 +72,17 @@ public class MainWindow extends JFrame implements RocketObserver {
         secondRow.add(loadSimulationButton);
         mainPanel.add(secondRow);
 
-        JPanel indicatorsPanel = new JPanel();
+        indicatorsPanel = new JPanel();
         indicatorsPanel.setLayout(new BoxLayout(indicatorsPanel, BoxLayout.Y_AXIS));
         indicatorsPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
-
-        fuelBars = new JProgressBar[3];
-        fuelLabels = new JLabel[3];
-        for (int i = 0; i < 3; i++) {
-            JPanel stagePanel = new JPanel(new BorderLayout());
-            fuelLabels[i] = new JLabel("Ступень " + (i + 1));
-            fuelBars[i] = new JProgressBar(0, 100);
-            fuelBars[i].setValue(100);
-            fuelBars[i].setForeground(Color.GREEN);
-
-            stagePanel.add(fuelLabels[i], BorderLayout.NORTH);
-            stagePanel.add(fuelBars[i], BorderLayout.CENTER);
-            indicatorsPanel.add(stagePanel);
-            indicatorsPanel.add(Box.createVerticalStrut(5));
-        }
-        mainPanel.add(indicatorsPanel);
+        RocketModel model = controller.getModel();
+        buildFuelBars(model.getStageMasses() == null ? 3 : model.getStageCount());
+        JScrollPane indicatorsScrollPane = new JScrollPane(indicatorsPanel,
+                JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+        indicatorsScrollPane.setBorder(null);
+        indicatorsScrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        indicatorsScrollPane.setPreferredSize(new Dimension(380, 180));
+        mainPanel.add(indicatorsScrollPane);
 
         JPanel statusPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         statusLabel = new JLabel("Готово к запуску");
@@ -96,6 +101,7 @@ public class MainWindow extends JFrame implements RocketObserver {
 
         settingsButton.addActionListener(e -> openSettingsWindow());
         dataButton.addActionListener(e -> openDataWindow());
+        historyButton.addActionListener(e -> openRunHistory());
         saveSimulationButton.addActionListener(e -> saveSimulation());
         loadSimulationButton.addActionListener(e -> loadSimulation());
         startStopButton.addActionListener(e -> handleStartStopSimulation());
@@ -109,15 +115,54 @@ public class MainWindow extends JFrame implements RocketObserver {
 
 
 
+    // One label and bar per stage; rebuilt only when the number of stages changes.
+    private void buildFuelBars(int stages) {
+        indicatorsPanel.removeAll();
+        fuelBars = new JProgressBar[stages];
+        fuelLabels = new JLabel[stages];
+        for (int i = 0; i < stages; i++) {
+            JPanel stagePanel = new JPanel(new BorderLayout());
+            fuelLabels[i] = new JLabel("Ступень " + (i + 1));
+            fuelBars[i] = new JProgressBar(0, 100);
+            fuelBars[i].setValue(100);
+            fuelBars[i].setForeground(Color.GREEN);
+
+            stagePanel.add(fuelLabels[i], BorderLayout.NORTH);
+            stagePanel.add(fuelBars[i], BorderLayout.CENTER);
+            indicatorsPanel.add(stagePanel);
+            indicatorsPanel.add(Box.createVerticalStrut(5));
+        }
+        shownRemainingStages = -1;
+        indicatorsPanel.revalidate();
+        indicatorsPanel.repaint();
+    }
+
     private void openSettingsWindow() {
         SettingsWindow settingsWindow = new SettingsWindow(controller);
         childWindows.add(settingsWindow);
     }
 
     private void openDataWindow() {
-        DataWindow dataWindow = new DataWindow(controller);
-        controller.getModel().addObserver(dataWindow);
-        childWindows.add(dataWindow);
+        childWindows.add(new DataWindow(controller));
+    }
+
+    private void openRunHistory() {
+        RunHistoryRepository repository = DatabaseManager.getDefault().getRunHistory();
+        try {
+            List<RunInfo> runs = repository.listRuns();
+            if (runs.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "В базе данных нет сохранённых запусков.", "История", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            RunInfo run = (RunInfo) JOptionPane.showInputDialog(this, "Выберите запуск:", "История",
+                    JOptionPane.PLAIN_MESSAGE, null, runs.toArray(), runs.get(0));
+            if (run != null) {
+                childWindows.add(new DataWindow(repository.loadTelemetry(run, DataWindow.HISTORY_POINTS)));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Не удалось прочитать историю запусков.", "Ошибка", JOptionPane.ERROR_MESSAGE);
+        }
     }
 
     private void handleStartStopSimulation() {
@@ -149,44 +194,62 @@ public class MainWindow extends JFrame implements RocketObserver {
         startStopButton.setText("Начать симуляцию");
         statusLabel.setText("Симуляция сброшена");
 
-        for (int i = 0; i < 3; i++) {
-            fuelBars[i].setValue(100);
-            fuelBars[i].setForeground(Color.GREEN);
-            fuelLabels[i].setText("Ступень " + (i + 1));
-        }
+        buildFuelBars(controller.getModel().getStageCount());
     }
 
 
+    @Override
+    public int getMaxUpdateRate() {
+        return UI_UPDATE_RATE;
+    }
+
     @Override
     public void onStageSeparation(int stageNumber) {
         System.out.println("Ступень " + stageNumber + " отделилась!");
     }
 
     @Override
-    public void onUpdateStatus(double currentMass, double speed, double altitude, double horizontalDistance,
-                               int remainingStages, double[] fuelMasses, double[] initialFuelMasses) {
+    public void onFrame(TelemetryFrame frame) {
+        frame.retain();
         SwingUtilities.invokeLater(() -> {
-            statusLabel.setText(String.format("Масса: %.2f кг, Скорость: %.2f м/с, Высота: %.2f м", currentMass, speed, altitude));
-            for (int i = 0; i < 3; i++) {
-                if (i < remainingStages) {
-                    fuelLabels[i].setText(String.format("Ступень %d масса: %.2f", i + 1, fuelMasses[i]));
-                    int fuelPercentage = (int) (fuelMasses[i] / initialFuelMasses[i] * 100);
-                    fuelBars[i].setValue(fuelPercentage);
-                    if (fuelPercentage == 0) {
-                        fuelBars[i].setForeground(Color.RED);
-                    } else {
-                        fuelBars[i].setForeground(Color.GREEN);
-                    }
-                } else {
-                    fuelBars[i].setValue(0);
-                    fuelBars[i].setForeground(Color.RED);
-                    fuelLabels[i].setText(String.format("Ступень %d отделена!", i + 1));
+            try {
+                statusLabel.setText(String.format("Масса: %.2f кг, Скорость: %.2f м/с, Высота: %.2f м",
+                        frame.getCurrentMass(), frame.getSpeed(), frame.getAltitude()));
+                if (frame.getStageCount() != fuelBars.length) {
+                    buildFuelBars(frame.getStageCount());
                 }
+                // only the burning stage changes between separations
+                int remaining = frame.getRemainingStages();
+                int from = remaining == shownRemainingStages ? Math.max(0, remaining - 1) : 0;
+                int to = remaining == shownRemainingStages ? remaining : fuelBars.length;
+                for (int i = from; i < to; i++) {
+                    showStage(frame, i);
+                }
+                shownRemainingStages = remaining;
+            } finally {
+                frame.release();
             }
         });
 
     }
 
+    private void showStage(TelemetryFrame frame, int i) {
+        if (i < frame.getRemainingStages()) {
+            fuelLabels[i].setText(String.format("Ступень %d масса: %.2f", i + 1, frame.getFuelMass(i)));
+            int fuelPercentage = frame.getFuelPercentage(i);
+            fuelBars[i].setValue(fuelPercentage);
+            if (fuelPercentage == 0) {
+                fuelBars[i].setForeground(Color.RED);
+            } else {
+                fuelBars[i].setForeground(Color.GREEN);
+            }
+        } else {
+            fuelBars[i].setValue(0);
+            fuelBars[i].setForeground(Color.RED);
+            fuelLabels[i].setText(String.format("Ступень %d отделена!", i + 1));
+        }
+    }
+
     private void saveSettings() {
         JFileChooser fileChooser = new JFileChooser();
         int option = fileChooser.showSaveDialog(this);
@@ -221,7 +284,7 @@ public class MainWindow extends JFrame implements RocketObserver {
 
     private void loadSimulation() {
         JFileChooser fileChooser = new JFileChooser();
-        FileNameExtensionFilter filter = new FileNameExtensionFilter("Simulation Files (*.sim)", "sim");
+        FileNameExtensionFilter filter = new FileNameExtensionFilter("Simulation Files (*.sim, *.json)", "sim", "json");
         fileChooser.setFileFilter(filter);
         int option = fileChooser.showOpenDialog(this);
         if (option == JFileChooser.APPROVE_OPTION) {
@@ -0,0 +1,81 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.util.Arrays;
+
+// Min/max summaries of a series over buckets of 2^level consecutive samples,
+// for every level from BASE_LEVEL up. Appending a sample touches one bucket
+// per level, so the pyramid follows a growing series incrementally, and the
+// min/max of any index range takes O(log n) lookups.
+public class MinMaxPyramid {
+    private static final int BASE_LEVEL = 3;
+    private static final int MAX_LEVEL = 28;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final double[][] mins = new double[MAX_LEVEL + 1][];
+    private final double[][] maxs = new double[MAX_LEVEL + 1][];
+    private int sampleCount = 0;
+
+    public void append(double value) {
+        int index = sampleCount;
+        for (int level = BASE_LEVEL; level <= MAX_LEVEL; level++) {
+            int bucket = index >>> level;
+            double[] levelMins = mins[level];
+            double[] levelMaxs = maxs[level];
+            if ((index & ((1 << level) - 1)) == 0) {
+                if (levelMins == null) {
+                    levelMins = new double[INITIAL_CAPACITY];
+                    levelMaxs = new double[INITIAL_CAPACITY];
+                } else if (bucket == levelMins.length) {
+                    levelMins = Arrays.copyOf(levelMins, bucket * 2);
+                    levelMaxs = Arrays.copyOf(levelMaxs, bucket * 2);
+                }
+                mins[level] = levelMins;
+                maxs[level] = levelMaxs;
+                levelMins[bucket] = value;
+                levelMaxs[bucket] = value;
+            } else {
+                levelMins[bucket] = Math.min(levelMins[bucket], value);
+                levelMaxs[bucket] = Math.max(levelMaxs[bucket], value);
+            }
+        }
+        sampleCount = index + 1;
+    }
+
+    public void clear() {
+        Arrays.fill(mins, null);
+        Arrays.fill(maxs, null);
+        sampleCount = 0;
+    }
+
+    public int size() {
+        return sampleCount;
+    }
+
+    // Min and max of samples [from, to) of the series the pyramid was built
+    // from, as {min, max} in result: whole aligned buckets come from the
+    // pyramid, the few samples around them from values.
+    public void range(SeriesView values, int from, int to, double[] result) {
+        double low = Double.POSITIVE_INFINITY;
+        double high = Double.NEGATIVE_INFINITY;
+        int index = from;
+        while (index < to) {
+            int level = index == 0 ? MAX_LEVEL : Math.min(MAX_LEVEL, Integer.numberOfTrailingZeros(index));
+            while (level >= BASE_LEVEL && index + (1 << level) > to) {
+                level--;
+            }
+            if (level < BASE_LEVEL) {
+                double value = values.get(index);
+                low = Math.min(low, value);
+                high = Math.max(high, value);
+                index++;
+            } else {
+                int bucket = index >>> level;
+                low = Math.min(low, mins[level][bucket]);
+                high = Math.max(high, maxs[level][bucket]);
+                index += 1 << level;
+            }
+        }
+        result[0] = low;
+        result[1] = high;
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.util.Arrays;
+
+public class MonteCarloResult {
+    private final long seed;
+    private final FlightParameters[] parameters;
+    private final FlightResult[] results;
+    private final long wallTimeNanos;
+
+    public MonteCarloResult(long seed, FlightParameters[] parameters, FlightResult[] results, long wallTimeNanos) {
+        this.seed = seed;
+        this.parameters = parameters;
+        this.results = results;
+        this.wallTimeNanos = wallTimeNanos;
+    }
+
+    public long getSeed() { return seed; }
+    public int getFlightCount() { return results.length; }
+    public FlightParameters getParameters(int flight) { return parameters[flight]; }
+    public FlightResult getResult(int flight) { return results[flight]; }
+    public long getWallTimeNanos() { return wallTimeNanos; }
+
+    public double[] getApogees() {
+        double[] values = new double[results.length];
+        for (int i = 0; i < results.length; i++) {
+            values[i] = results[i].getApogee();
+        }
+        return values;
+    }
+
+    public double[] getMaxSpeeds() {
+        double[] values = new double[results.length];
+        for (int i = 0; i < results.length; i++) {
+            values[i] = results[i].getMaxSpeed();
+        }
+        return values;
+    }
+
+    public double[] getBurnTimes() {
+        double[] values = new double[results.length];
+        for (int i = 0; i < results.length; i++) {
+            values[i] = results[i].getBurnTime();
+        }
+        return values;
+    }
+
+    public static double percentile(double[] values, double percentile) {
+        double[] sorted = Arrays.stream(values).filter(v -> !Double.isNaN(v)).sorted().toArray();
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        double rank = percentile / 100.0 * (sorted.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return sorted[lower] + (sorted[upper] - sorted[lower]) * (rank - lower);
+    }
+
+    public String summary(int bins) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Полётов: %d, seed: %d, время: %.1f мс%n", results.length, seed, wallTimeNanos / 1e6));
+        appendMetric(sb, "Апогей (м)", getApogees(), bins);
+        appendMetric(sb, "Макс. скорость (м/с)", getMaxSpeeds(), bins);
+        appendMetric(sb, "Работа двигателей (с)", getBurnTimes(), bins);
+        return sb.toString();
+    }
+
+    private static void appendMetric(StringBuilder sb, String name, double[] values, int bins) {
+        sb.append(String.format("%s: p5=%.2f p50=%.2f p95=%.2f%n", name,
+                percentile(values, 5), percentile(values, 50), percentile(values, 95)));
+        sb.append(new Histogram(values, bins));
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Runs independent headless flights with parameters drawn from distributions.
+// Every flight gets its own generator derived from the seed and its index, so
+// results do not depend on how the flights are scheduled across threads.
+// Flights are flown in blocks side by side in a FlightKernel, which steps them
+// with SIMD when the Vector API is available.
+public class MonteCarloRunner {
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private ParameterDistribution payloadMass;
+    private ParameterDistribution[] stageMasses;
+    private ParameterDistribution[] fuelMasses;
+    private ParameterDistribution thrustPerKgFuel;
+    private ParameterDistribution fuelConsumptionPerCycle;
+    // null while every stage uses the single thrust / consumption value
+    private ParameterDistribution[] stageThrustPerKgFuel;
+    private ParameterDistribution[] stageFuelConsumption;
+    private final double nominalThrustPerKgFuel;
+    private final double nominalFuelConsumption;
+    private int cycleDelay;
+    private double timeStep;
+    private int parallelism = ForkJoinPool.getCommonPoolParallelism();
+
+    public MonteCarloRunner(FlightParameters nominal) {
+        payloadMass = ParameterDistribution.fixed(nominal.getPayloadMass());
+        stageMasses = fixed(nominal.getStageMasses());
+        fuelMasses = fixed(nominal.getFuelMasses());
+        thrustPerKgFuel = ParameterDistribution.fixed(nominal.getThrustPerKgFuel());
+        fuelConsumptionPerCycle = ParameterDistribution.fixed(nominal.getFuelConsumptionPerCycle());
+        double[] stageThrusts = nominal.getStageThrustPerKgFuel();
+        double[] stageConsumption = nominal.getStageFuelConsumption();
+        stageThrustPerKgFuel = stageThrusts == null ? null : fixed(stageThrusts);
+        stageFuelConsumption = stageConsumption == null ? null : fixed(stageConsumption);
+        nominalThrustPerKgFuel = nominal.getThrustPerKgFuel();
+        nominalFuelConsumption = nominal.getFuelConsumptionPerCycle();
+        cycleDelay = nominal.getCycleDelay();
+        timeStep = nominal.getTimeStep();
+    }
+
+    public MonteCarloRunner setPayloadMass(ParameterDistribution distribution) {
+        this.payloadMass = distribution;
+        return this;
+    }
+
+    public MonteCarloRunner setStageMass(int stage, ParameterDistribution distribution) {
+        this.stageMasses[stage] = distribution;
+        return this;
+    }
+
+    public MonteCarloRunner setFuelMass(int stage, ParameterDistribution distribution) {
+        this.fuelMasses[stage] = distribution;
+        return this;
+    }
+
+    public MonteCarloRunner setThrustPerKgFuel(ParameterDistribution distribution) {
+        this.thrustPerKgFuel = distribution;
+        return this;
+    }
+
+    public MonteCarloRunner setFuelConsumptionPerCycle(ParameterDistribution distribution) {
+        this.fuelConsumptionPerCycle = distribution;
+        return this;
+    }
+
+    // Other stages keep the nominal single value as a fixed distribution.
+    public MonteCarloRunner setStageThrustPerKgFuel(int stage, ParameterDistribution distribution) {
+        if (stageThrustPerKgFuel == null) {
+            stageThrustPerKgFuel = fixed(nominalThrustPerKgFuel, stageMasses.length);
+        }
+        this.stageThrustPerKgFuel[stage] = distribution;
+        return this;
+    }
+
+    public MonteCarloRunner setStageFuelConsumption(int stage, ParameterDistribution distribution) {
+        if (stageFuelConsumption == null) {
+            stageFuelConsumption = fixed(nominalFuelConsumption, stageMasses.length);
+        }
+        this.stageFuelConsumption[stage] = distribution;
+        return this;
+    }
+
+    public MonteCarloRunner setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public FlightParameters sample(long seed, int flight) {
+        SplittableRandom random = new SplittableRandom(flightSeed(seed, flight));
+        double payload = payloadMass.sample(random);
+        double[] stages = new double[stageMasses.length];
+        double[] fuel = new double[fuelMasses.length];
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = stageMasses[i].sample(random);
+            fuel[i] = fuelMasses[i].sample(random);
+        }
+        double thrust = thrustPerKgFuel.sample(random);
+        double consumption = fuelConsumptionPerCycle.sample(random);
+        return new FlightParameters(payload, stages, fuel, thrust, cycleDelay, consumption, timeStep,
+                sample(stageThrustPerKgFuel, random), sample(stageFuelConsumption, random));
+    }
+
+    public MonteCarloResult run(int flights, long seed) {
+        FlightParameters[] parameters = new FlightParameters[flights];
+        FlightResult[] results = new FlightResult[flights];
+        long start = System.nanoTime();
+        // enough blocks to keep every thread busy, but no bigger than MAX_BATCH_SIZE
+        int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, (flights + parallelism - 1) / parallelism));
+        int batches = (flights + batchSize - 1) / batchSize;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, batches).parallel().forEach(b ->
+                    runBatch(seed, b * batchSize, Math.min(flights, (b + 1) * batchSize), parameters, results)
+            )).join();
+        } finally {
+            pool.shutdown();
+        }
+        return new MonteCarloResult(seed, parameters, results, System.nanoTime() - start);
+    }
+
+    // Gives the same results as FlightParameters.simulate() for each flight;
+    // the wall time of the block is shared evenly between its flights.
+    private void runBatch(long seed, int from, int to, FlightParameters[] parameters, FlightResult[] results) {
+        long start = System.nanoTime();
+        int count = to - from;
+        FlightKernel kernel = new FlightKernel(count, stageMasses.length);
+        kernel.setMaxSimulatedTime(HeadlessSimulation.DEFAULT_MAX_SIMULATED_TIME);
+        for (int i = 0; i < count; i++) {
+            parameters[from + i] = sample(seed, from + i);
+            kernel.load(i, parameters[from + i]);
+        }
+        int live;
+        do {
+            live = kernel.stepAll(count);
+        } while (live > 0);
+        long wallTime = (System.nanoTime() - start) / count;
+        for (int i = 0; i < count; i++) {
+            results[from + i] = kernel.result(i, wallTime);
+        }
+    }
+
+    private static long flightSeed(long seed, int flight) {
+        long z = seed + (flight + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static double[] sample(ParameterDistribution[] distributions, SplittableRandom random) {
+        if (distributions == null) {
+            return null;
+        }
+        double[] values = new double[distributions.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = distributions[i].sample(random);
+        }
+        return values;
+    }
+
+    private static ParameterDistribution[] fixed(double value, int count) {
+        ParameterDistribution[] distributions = new ParameterDistribution[count];
+        Arrays.fill(distributions, ParameterDistribution.fixed(value));
+        return distributions;
+    }
+
+    private static ParameterDistribution[] fixed(double[] values) {
+        return Arrays.stream(values).mapToObj(ParameterDistribution::fixed).toArray(ParameterDistribution[]::new);
+    }
+}
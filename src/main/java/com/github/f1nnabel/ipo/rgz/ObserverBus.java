@@ -0,0 +1,181 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Delivers telemetry frames to observers on a dispatcher thread. Each observer
+// keeps only the latest pending frame and gets it at most at its declared
+// rate; stage separations are queued and never coalesced. Publishing never
+// waits for observers. Every pending slot holds its own reference to the frame.
+// One dispatcher serves every bus that has subscribers, so observing many
+// models costs one thread, and it runs only while some bus has subscribers.
+public class ObserverBus {
+    private static final Set<ObserverBus> ACTIVE_BUSES = ConcurrentHashMap.newKeySet();
+    private static final Object DISPATCHER_LOCK = new Object();
+    private static volatile Thread dispatcher;
+
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public synchronized void subscribe(TelemetryObserver observer) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.observer.equals(observer)) {
+                return;
+            }
+        }
+        subscriptions.add(new Subscription(observer));
+        synchronized (DISPATCHER_LOCK) {
+            ACTIVE_BUSES.add(this);
+            startDispatcher();
+        }
+    }
+
+    public synchronized void unsubscribe(TelemetryObserver observer) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.observer.equals(observer)) {
+                subscription.removed = true;
+                subscriptions.remove(subscription);
+                subscription.discardPending();
+            }
+        }
+        if (subscriptions.isEmpty()) {
+            // lets the dispatcher see that this bus has nobody left to serve
+            wakeDispatcher();
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public void publish(TelemetryFrame frame) {
+        for (Subscription subscription : subscriptions) {
+            TelemetryFrame previous = subscription.pending.getAndSet(frame.retain());
+            if (previous != null) {
+                previous.release();
+            }
+            if (subscription.removed) {
+                subscription.discardPending();
+            }
+        }
+        wakeDispatcher();
+    }
+
+    public void publishStageSeparation(int stageNumber) {
+        for (Subscription subscription : subscriptions) {
+            subscription.separations.add(stageNumber);
+        }
+        wakeDispatcher();
+    }
+
+    private static void wakeDispatcher() {
+        Thread thread = dispatcher;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private static void startDispatcher() {
+        if (dispatcher == null) {
+            Thread thread = new Thread(ObserverBus::dispatchLoop, "rocket-observers");
+            thread.setDaemon(true);
+            dispatcher = thread;
+            thread.start();
+        }
+    }
+
+    private static void dispatchLoop() {
+        while (true) {
+            long now = System.nanoTime();
+            long nextDue = Long.MAX_VALUE;
+            for (ObserverBus bus : ACTIVE_BUSES) {
+                if (bus.subscriptions.isEmpty()) {
+                    // checked under the lock, so a concurrent subscribe
+                    // either finds the bus gone and adds it back, or keeps it
+                    synchronized (DISPATCHER_LOCK) {
+                        if (bus.subscriptions.isEmpty()) {
+                            ACTIVE_BUSES.remove(bus);
+                        }
+                    }
+                    continue;
+                }
+                nextDue = Math.min(nextDue, bus.dispatch(now));
+            }
+            synchronized (DISPATCHER_LOCK) {
+                if (ACTIVE_BUSES.isEmpty()) {
+                    dispatcher = null;
+                    return;
+                }
+            }
+            if (nextDue == Long.MAX_VALUE) {
+                LockSupport.park(ObserverBus.class);
+            } else {
+                LockSupport.parkNanos(ObserverBus.class, nextDue - System.nanoTime());
+            }
+        }
+    }
+
+    // Delivers what is due at now and returns when the next held-back frame
+    // is due, or Long.MAX_VALUE if nothing is held back.
+    private long dispatch(long now) {
+        long nextDue = Long.MAX_VALUE;
+        for (Subscription subscription : subscriptions) {
+            Integer stageNumber;
+            while ((stageNumber = subscription.separations.poll()) != null) {
+                try {
+                    subscription.observer.onStageSeparation(stageNumber);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (subscription.pending.get() == null) {
+                continue;
+            }
+            long due = subscription.lastDeliveryNanos + subscription.minIntervalNanos;
+            if (subscription.delivered && now - due < 0) {
+                nextDue = Math.min(nextDue, due);
+                continue;
+            }
+            TelemetryFrame frame = subscription.pending.getAndSet(null);
+            if (frame != null) {
+                try {
+                    subscription.observer.onFrame(frame);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    frame.release();
+                }
+                subscription.lastDeliveryNanos = now;
+                subscription.delivered = true;
+            }
+        }
+        return nextDue;
+    }
+
+    private static final class Subscription {
+        final TelemetryObserver observer;
+        final long minIntervalNanos;
+        final AtomicReference<TelemetryFrame> pending = new AtomicReference<>();
+        final ConcurrentLinkedQueue<Integer> separations = new ConcurrentLinkedQueue<>();
+        long lastDeliveryNanos;
+        boolean delivered = false;
+        volatile boolean removed = false;
+
+        Subscription(TelemetryObserver observer) {
+            this.observer = observer;
+            int rate = observer.getMaxUpdateRate();
+            this.minIntervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        }
+
+        void discardPending() {
+            TelemetryFrame frame = pending.getAndSet(null);
+            if (frame != null) {
+                frame.release();
+            }
+        }
+    }
+}
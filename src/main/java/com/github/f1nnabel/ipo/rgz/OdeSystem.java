@@ -0,0 +1,5 @@
+package com.github.f1nnabel.ipo.rgz;
+
+public interface OdeSystem {
+    void derivatives(double t, double[] y, double[] dydt);
+}
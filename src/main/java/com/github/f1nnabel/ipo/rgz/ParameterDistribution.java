@@ -0,0 +1,20 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.util.SplittableRandom;
+
+public interface ParameterDistribution {
+    double sample(SplittableRandom random);
+
+    static ParameterDistribution fixed(double value) {
+        return random -> value;
+    }
+
+    static ParameterDistribution uniform(double min, double max) {
+        return random -> min + (max - min) * random.nextDouble();
+    }
+
+    // Masses and rates cannot be negative, so samples below zero are clamped.
+    static ParameterDistribution normal(double mean, double standardDeviation) {
+        return random -> Math.max(0, mean + standardDeviation * random.nextGaussian());
+    }
+}
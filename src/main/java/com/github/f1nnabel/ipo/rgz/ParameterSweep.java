@@ -0,0 +1,80 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+// Grid search over flight parameters. Results are memoized by the exact
+// parameter tuple, so overlapping sweeps on the same instance reuse flights.
+public class ParameterSweep {
+    private final FlightParameters base;
+    private final ConcurrentHashMap<FlightParameters, CompletableFuture<FlightResult>> cache = new ConcurrentHashMap<>();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong flightsRun = new AtomicLong();
+    private int parallelism = ForkJoinPool.getCommonPoolParallelism();
+
+    public ParameterSweep(FlightParameters base) {
+        this.base = base;
+    }
+
+    public ParameterSweep setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public SweepResult sweep(SweepAxis rows, SweepAxis columns) {
+        FlightResult[][] results = new FlightResult[rows.size()][columns.size()];
+        int cells = rows.size() * columns.size();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, cells).parallel().forEach(cell -> {
+                int r = cell / columns.size();
+                int c = cell % columns.size();
+                results[r][c] = evaluate(columns.apply(rows.apply(base, r), c));
+            })).join();
+        } finally {
+            pool.shutdown();
+        }
+        return new SweepResult(rows, columns, results);
+    }
+
+    // The first caller for a tuple flies it; concurrent callers wait for that
+    // flight instead of running their own.
+    public FlightResult evaluate(FlightParameters parameters) {
+        CompletableFuture<FlightResult> future = new CompletableFuture<>();
+        CompletableFuture<FlightResult> cached = cache.putIfAbsent(parameters, future);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            try {
+                return cached.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            FlightResult result = parameters.simulate();
+            flightsRun.incrementAndGet();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            // a failed flight is not cached, so a later call tries again
+            cache.remove(parameters, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public long getCacheHits() { return cacheHits.get(); }
+    public long getFlightsRun() { return flightsRun.get(); }
+    public int getCacheSize() { return cache.size(); }
+
+    public void clearCache() {
+        cache.clear();
+    }
+}
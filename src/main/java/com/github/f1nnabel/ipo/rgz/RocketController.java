@@ -1,16 +1,29 @@
 package com.github.f1nnabel.ipo.rgz;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-
 import java.io.*;
 
 public class RocketController implements RocketControl {
     private RocketModel model;
     private boolean settingsConfirmed = false;
+    private AutosaveManager autosaveManager;
+    private FlightRecorder recorder;
+    private boolean shutDown = false;
+    // Checkpoints the flight for every published frame, whichever windows are open;
+    // AutosaveManager drops requests that come sooner than its interval.
+    private final TelemetryObserver autosaveObserver = new TelemetryObserver() {
+        @Override
+        public void onFrame(TelemetryFrame frame) {
+            autosave();
+        }
+
+        @Override
+        public void onStageSeparation(int stageNumber) {
+        }
+    };
 
     public RocketController(RocketModel model) {
         this.model = model;
+        model.addObserver(autosaveObserver);
     }
 
     @Override
@@ -31,6 +44,10 @@ public class RocketController implements RocketControl {
         model.resumeSimulation();
     }
 
+    public void stepSimulation(int steps) {
+        model.stepSimulation(steps);
+    }
+
     public void resetSimulation() {
         model.stopSimulation();
         model.resetSimulationVariables();
@@ -40,16 +57,19 @@ public class RocketController implements RocketControl {
 
     @Override
     public void setRocketParameters(double payloadMass, double[] stageMasses, double[] fuelMasses, double thrustPerKgFuel) {
+        model.stopSimulation();
         model.setRocketParameters(payloadMass, stageMasses, fuelMasses, thrustPerKgFuel);
     }
 
     @Override
     public void setCycleDelay(int delay) {
+        model.stopSimulation();
         model.setCycleDelay(delay);
     }
 
     @Override
     public void setFuelConsumptionPerCycle(double fuelConsumption) {
+        model.stopSimulation();
         model.setFuelConsumptionPerCycle(fuelConsumption);
     }
 
@@ -70,48 +90,103 @@ public class RocketController implements RocketControl {
     }
 
     public void loadSettings(File file) {
+        model.stopSimulation();
         model.loadSettings(file);
     }
 
     public void saveSimulationState(File file) {
-        try (Writer writer = new FileWriter(file)) {
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            gson.toJson(model, writer);
+        model.saveSimulationState(file);
+    }
+
+    private synchronized void autosave() {
+        if (shutDown) {
+            return;
+        }
+        if (autosaveManager == null) {
+            autosaveManager = new AutosaveManager(new File("rocket_simulation_state.json"));
+        }
+        autosaveManager.requestSave(model);
+    }
+
+    // Called when the application closes: ends a recording and writes a last
+    // autosave checkpoint of the current state before the journal is closed.
+    public synchronized void shutdown() {
+        shutDown = true;
+        model.removeObserver(autosaveObserver);
+        stopRecording();
+        if (autosaveManager != null) {
+            autosaveManager.saveNow(model);
+            autosaveManager.close();
+            autosaveManager = null;
+        }
+    }
+
+    public void loadSimulationState(File file) {
+        model.stopSimulation();
+        if (AutosaveManager.isAutosave(file)) {
+            try {
+                AutosaveManager.recover(file, model);
+                model.notifyObservers();
+                model.setLoadedFromSave(true);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+        model.loadSimulationState(file);
+    }
+
+    // Records the model's flight from its current state until stopRecording().
+    public void startRecording(File file) {
+        stopRecording();
+        try {
+            recorder = new FlightRecorder(model, file);
+            recorder.start();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    public void loadSimulationState(File file) {
-        try (Reader reader = new FileReader(file)) {
-            Gson gson = new Gson();
-            RocketModel loadedModel = gson.fromJson(reader, RocketModel.class);
-            model.copyFrom(loadedModel);
-            model.notifyObservers();
-            model.setLoadedFromSave(true);
+    public void stopRecording() {
+        if (recorder != null) {
+            recorder.close();
+            recorder = null;
+        }
+    }
+
+    public boolean isRecording() {
+        return recorder != null;
+    }
+
+    // The caller owns the replay and closes it together with its log.
+    public FlightReplay openReplay(File file) {
+        try {
+            return new FlightReplay(FlightLog.open(file));
         } catch (IOException e) {
             e.printStackTrace();
+            return null;
         }
     }
 
     public void saveSettingsToFile(File file) {
-        try (Writer writer = new FileWriter(file)) {
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            gson.toJson(model, writer);
+        try {
+            SimulationJson.write(file, model, false);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     public void loadSettingsFromFile(File file) {
-        try (Reader reader = new FileReader(file)) {
-            Gson gson = new Gson();
-            RocketModel loadedModel = gson.fromJson(reader, RocketModel.class);
+        try {
+            RocketModel loadedModel = SimulationJson.read(file);
+            model.stopSimulation();
             model.setRocketParameters(
                     loadedModel.getPayloadMass(),
                     loadedModel.getStageMasses(),
                     loadedModel.getFuelMasses(),
-                    loadedModel.getThrustPerKgFuel()
+                    loadedModel.getThrustPerKgFuel(),
+                    loadedModel.getStageThrustPerKgFuel(),
+                    loadedModel.getStageFuelConsumption()
             );
             model.setCycleDelay(loadedModel.getCycleDelay());
             model.setFuelConsumptionPerCycle(loadedModel.getFuelConsumptionPerCycle());
@@ -120,4 +195,12 @@ public class RocketController implements RocketControl {
         }
     }
 
+    public void exportSimulationJson(File file) {
+        try {
+            SimulationJson.write(file, model, true);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
 }
@@ -1,10 +1,12 @@
 package com.github.f1nnabel.ipo.rgz;
 
-import com.google.gson.Gson;
-
 import java.util.Arrays;
-import java.util.List;
-import java.util.ArrayList;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.io.*;
 
 public class RocketModel implements Serializable {
@@ -12,12 +14,18 @@ public class RocketModel implements Serializable {
     public static final double EARTH_RADIUS = 6_371_000; // в метрах
     public static final double GRAVITATIONAL_CONSTANT = 6.67430e-11; // м^3 кг^-1 с^-2
     public static final double EARTH_MASS = 5.972e24; // кг
+    // Samples per history column kept on the heap; older ones are spilled to disk.
+    public static final int DEFAULT_HISTORY_RESIDENT_SAMPLES = 1 << 18;
 
     private double payloadMass;
     private double[] stageMasses;
     private double[] fuelMasses;
     private double[] initialFuelMasses;
     private double thrustPerKgFuel;
+    // Per-stage engine settings; null means every stage uses the single
+    // thrustPerKgFuel and fuelConsumptionPerCycle values.
+    private double[] stageThrustPerKgFuel;
+    private double[] stageFuelConsumption;
 
     private double currentMass;
     private double speed;
@@ -25,206 +33,528 @@ public class RocketModel implements Serializable {
     private double horizontalDistance;
 
     private int remainingStages;
-    private transient boolean paused = false;
+    private transient volatile boolean paused = false;
     private int cycleDelay = 100;
     private double fuelConsumptionPerCycle = 0.01;
     private double deltaTime = cycleDelay / 1000.0;
+    // set by setTimeStep; until then the step follows the cycle delay, so
+    // simulated time runs at the speed of real time
+    private boolean timeStepFixed = false;
     private boolean loadedFromSave = false;
-    private transient Object pauseLock = new Object();
 
-    private transient List<RocketObserver> observers = new ArrayList<>();
-    private transient boolean running = false;
+    private transient ObserverBus observerBus = new ObserverBus();
+    private transient TelemetryFramePool framePool = new TelemetryFramePool();
+    private transient AtomicLong frameSequence = new AtomicLong();
+    private transient volatile boolean running = false;
+    private transient AtomicInteger pendingSteps = new AtomicInteger();
 
-    private transient DatabaseManager dbManager = new DatabaseManager();
+    private transient DatabaseManager dbManager;
 
     private transient Thread simulationThread;
+    private transient volatile SimulationEngine.Instance engineInstance;
+    private transient FlightKernel kernel;
+    private transient volatile boolean kernelLoaded = false;
 
-    private List<Double> timeData = new ArrayList<>();
-    private List<Double> speedData = new ArrayList<>();
-    private List<Double> altitudeData = new ArrayList<>();
-    private List<Double> massData = new ArrayList<>();
+    private DoubleSeries timeData = new DoubleSeries();
+    private DoubleSeries speedData = new DoubleSeries();
+    private DoubleSeries altitudeData = new DoubleSeries();
+    private DoubleSeries massData = new DoubleSeries();
 
     private double totalTime = 0;
+    private transient volatile int historyGeneration = 0;
+    private transient int historyResidentLimit = DEFAULT_HISTORY_RESIDENT_SAMPLES;
+
+    // One policy per sink; FILE is only read by the autosave thread.
+    private transient SamplingPolicy[] samplingPolicies = defaultSamplingPolicies();
+    private transient long tick = 0;
+    // Sinks that still owe a forced sample for a stage separation or landing, one bit per Sink.
+    private transient int pendingEvents = 0;
+    // History indices of samples recorded because of an event, for the file sink.
+    private transient DoubleSeries eventSamples = new DoubleSeries();
+
+    static final long IDLE = -1;
+    static final long FINISHED = -2;
+
+    private static final int ALL_EVENTS = (1 << SamplingPolicy.Sink.values().length) - 1;
+
+    // Seqlock over the flight state: odd while it is being written. step() is
+    // the only writer while the simulation runs; every other mutator, of the
+    // flight state or of a parameter step() reads, first checks that it is
+    // stopped (checkStopped), so there is never a second one.
+    private static final VarHandle STATE_VERSION;
+    private transient int stateVersion = 0;
+
+    static {
+        try {
+            STATE_VERSION = MethodHandles.lookup().findVarHandle(RocketModel.class, "stateVersion", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public RocketModel() {
+        this(DatabaseManager.getDefault());
+    }
+
+    public RocketModel(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+        applyHistoryResidentLimit();
+    }
 
     public void startSimulation(boolean resetRequired) {
         if (!running) {
+            awaitSimulationThread();
             if (resetRequired) {
                 resetSimulationVariables();
             }
             running = true;
             paused = false;
-            simulationThread = new Thread(() -> {
-                while (running) {
-                    synchronized (pauseLock) {
-                        if (paused) {
-                            try {
-                                pauseLock.wait();
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                                break;
-                            }
-                        }
-                    }
-                    if (altitude <= 0 && speed <= 0 && remainingStages == 0) {
-                        running = false;
-                        break;
-                    }
-                    updateRocketState();
-                    notifyObservers();
-                    try {
-                        Thread.sleep(cycleDelay);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                }
-                running = false;
-            });
-            simulationThread.start();
+            pendingSteps.set(0);
+            if (engineInstance != null) {
+                engineInstance.wake();
+            } else {
+                simulationThread = new Thread(this::runSimulation, "rocket-simulation");
+                simulationThread.start();
+            }
         } else if (paused) {
             resumeSimulation();
         }
     }
 
+    // One iteration of the simulation loop, shared by the model's own thread
+    // and SimulationEngine. Returns the nanoseconds until the next iteration
+    // is due, IDLE while paused with no queued steps, or FINISHED.
+    long advance() {
+        if (!running) {
+            return FINISHED;
+        }
+        if (paused) {
+            if (pendingSteps.get() == 0) {
+                return IDLE;
+            }
+            pendingSteps.decrementAndGet();
+        }
+        if (!step()) {
+            running = false;
+            return FINISHED;
+        }
+        if (shouldRecord(SamplingPolicy.Sink.UI)) {
+            notifyObservers();
+        }
+        return paused ? 0 : TimeUnit.MILLISECONDS.toNanos(cycleDelay);
+    }
+
+    boolean hasPendingWork() {
+        return running && (!paused || pendingSteps.get() > 0);
+    }
 
+    private void runSimulation() {
+        long delay;
+        while ((delay = advance()) != FINISHED) {
+            if (delay == IDLE) {
+                LockSupport.park(this);
+                continue;
+            }
+            long deadline = System.nanoTime() + delay;
+            long remaining;
+            while (running && !paused && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+    }
 
     public void stopSimulation() {
         running = false;
         paused = false;
-        if (simulationThread != null) {
-            simulationThread.interrupt();
-            try {
-                simulationThread.join();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+        wakeSimulation();
+        awaitSimulationThread();
+    }
+
+    private void wakeSimulation() {
+        SimulationEngine.Instance instance = engineInstance;
+        if (instance != null) {
+            instance.wake();
+            return;
+        }
+        Thread thread = simulationThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    // Waits for the current iteration on the engine, or for the model's own
+    // thread to exit; does nothing when called from the simulation itself.
+    private void awaitSimulationThread() {
+        SimulationEngine.Instance instance = engineInstance;
+        if (instance != null) {
+            instance.awaitTick();
+        }
+        Thread thread = simulationThread;
+        if (thread == null || thread == Thread.currentThread()) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    SimulationEngine.Instance getEngineInstance() {
+        return engineInstance;
+    }
+
+    // Hands scheduling to an engine, or back to a thread of the model's own with null.
+    void setEngineInstance(SimulationEngine.Instance instance) {
+        if (running) {
+            throw new IllegalStateException("Cannot change the scheduler of a running simulation");
         }
+        awaitSimulationThread();
+        engineInstance = instance;
     }
 
     public void resetSimulationVariables() {
+        checkStopped();
+        beginStateWrite();
         altitude = 0;
         speed = 0;
         horizontalDistance = 0;
         currentMass = payloadMass + Arrays.stream(stageMasses).sum() + Arrays.stream(fuelMasses).sum();
         remainingStages = stageMasses.length;
         fuelMasses = initialFuelMasses.clone();
-        timeData.clear();
-        speedData.clear();
-        altitudeData.clear();
-        massData.clear();
+        releaseHistory();
+        // new columns rather than clear(): views taken before the reset keep the old run
+        timeData = new DoubleSeries();
+        speedData = new DoubleSeries();
+        altitudeData = new DoubleSeries();
+        massData = new DoubleSeries();
+        eventSamples = new DoubleSeries();
+        historyGeneration++;
         totalTime = 0;
+        endStateWrite();
+        applyHistoryResidentLimit();
+        invalidateKernel();
+        tick = 0;
+        pendingEvents = 0;
+        for (SamplingPolicy.Sink sink : SamplingPolicy.Sink.values()) {
+            if (sink != SamplingPolicy.Sink.FILE) {
+                samplingPolicies[sink.ordinal()].reset();
+            }
+        }
         paused = false;
         running = false;
+        if (dbManager != null) {
+            dbManager.beginRun();
+        }
     }
 
-
-    private void updateRocketState() {
-        if (remainingStages == 0) {
-            simulatePayloadFlight();
-            return;
+    // Throws while the simulation runs or is paused, otherwise waits until the
+    // last iteration has left step() so the caller is the only writer.
+    private void checkStopped() {
+        if (running) {
+            throw new IllegalStateException("Cannot change the flight state of a running simulation");
+        }
+        awaitSimulationThread();
+    }
+
+    private void beginStateWrite() {
+        STATE_VERSION.setOpaque(this, stateVersion + 1);
+        VarHandle.storeStoreFence();
+    }
+
+    private void endStateWrite() {
+        STATE_VERSION.setRelease(this, stateVersion + 1);
+    }
+
+    // Copies a consistent view of the flight state into the caller's holder.
+    // Safe from any thread; retries while a write is in progress.
+    public RocketState readState(RocketState into) {
+        while (true) {
+            int version = (int) STATE_VERSION.getAcquire(this);
+            if ((version & 1) == 0) {
+                into.totalTime = totalTime;
+                into.currentMass = currentMass;
+                into.speed = speed;
+                into.altitude = altitude;
+                into.horizontalDistance = horizontalDistance;
+                into.remainingStages = remainingStages;
+                into.sampleCount = timeData.size();
+                into.copyFuelMasses(fuelMasses);
+                VarHandle.loadLoadFence();
+                if ((int) STATE_VERSION.getOpaque(this) == version) {
+                    into.version = version;
+                    return into;
+                }
+            }
+            Thread.onSpinWait();
         }
+    }
+
 
-        int currentStage = remainingStages - 1;
+    public boolean step() {
+        if (isFlightFinished()) {
+            return false;
+        }
+        beginStateWrite();
+        try {
+            updateRocketState();
+        } finally {
+            endStateWrite();
+        }
+        return true;
+    }
 
-        double thrust = fuelConsumptionPerCycle / deltaTime * thrustPerKgFuel;
+    // Runs the given number of ticks while the simulation is paused.
+    public void stepSimulation(int steps) {
+        if (steps <= 0) {
+            throw new IllegalArgumentException("Step count must be positive: " + steps);
+        }
+        pendingSteps.addAndGet(steps);
+        wakeSimulation();
+    }
 
-        fuelMasses[currentStage] -= fuelConsumptionPerCycle;
+    public boolean isFlightFinished() {
+        return altitude <= 0 && speed <= 0 && remainingStages == 0;
+    }
 
-        if (fuelMasses[currentStage] <= 0) {
-            fuelMasses[currentStage] = 0;
+    private void updateRocketState() {
+        if (!kernelLoaded) {
+            loadKernel();
+        }
+        int result = kernel.step(0);
+        if (result == FlightKernel.SEPARATED) {
+            fuelMasses[remainingStages - 1] = 0;
             separateStage();
             return;
         }
-
-        currentMass = payloadMass;
-        for (int i = 0; i < remainingStages; i++) {
-            currentMass += stageMasses[i] + fuelMasses[i];
+        if (result == FlightKernel.FINISHED) {
+            return;
         }
-
-        double gravity = calculateGravity(altitude);
-
-        double acceleration = (thrust / currentMass) - gravity;
-
-        speed += acceleration * deltaTime;
-
-        altitude += speed * deltaTime;
-
-        if (altitude < 0) {
-            altitude = 0;
-            speed = 0;
+        totalTime = kernel.getTime(0);
+        speed = kernel.getSpeed(0);
+        altitude = kernel.getAltitude(0);
+        currentMass = kernel.getMass(0);
+        tick++;
+
+        if (result == FlightKernel.BURNING) {
+            fuelMasses[remainingStages - 1] = kernel.getFuel(0, remainingStages - 1);
+            recordHistory();
+        } else if (result == FlightKernel.LANDED) {
+            running = false;
+            pendingEvents = ALL_EVENTS;
+        }
+        saveStatistics();
+    }
+
+    // Starts a run of recordSample calls by FlightIntegrator. The kernel is
+    // dropped up front, so it is reloaded even if the run stops half way.
+    void beginIntegration() {
+        checkStopped();
+        invalidateKernel();
+    }
+
+    // A state integrated outside step(), by FlightIntegrator, goes to the
+    // same sinks and sampling policies as a tick. Only valid between
+    // beginIntegration and the restoreState that ends the run.
+    void recordSample(double totalTime, double speed, double altitude, double currentMass,
+                      int remainingStages, double[] fuelMasses) {
+        beginStateWrite();
+        try {
+            this.totalTime = totalTime;
+            this.speed = speed;
+            this.altitude = altitude;
+            this.currentMass = currentMass;
+            if (remainingStages != this.remainingStages) {
+                pendingEvents = ALL_EVENTS;
+            }
+            this.remainingStages = remainingStages;
+            if (this.fuelMasses.length == fuelMasses.length) {
+                System.arraycopy(fuelMasses, 0, this.fuelMasses, 0, fuelMasses.length);
+            } else {
+                this.fuelMasses = fuelMasses.clone();
+            }
+            tick++;
+            recordHistory();
+            saveStatistics();
+        } finally {
+            endStateWrite();
         }
-
-        totalTime += deltaTime;
-        timeData.add(totalTime);
-        speedData.add(speed);
-        altitudeData.add(altitude);
-        massData.add(currentMass);
-        dbManager.saveStatistics(this);
-
     }
 
-    private void simulatePayloadFlight() {
-        currentMass = payloadMass;
+    private void recordHistory() {
+        if (shouldRecord(SamplingPolicy.Sink.MEMORY)) {
+            int fileEvent = 1 << SamplingPolicy.Sink.FILE.ordinal();
+            if ((pendingEvents & fileEvent) != 0) {
+                eventSamples.add(timeData.size());
+                pendingEvents &= ~fileEvent;
+            }
+            timeData.add(totalTime);
+            speedData.add(speed);
+            altitudeData.add(altitude);
+            massData.add(currentMass);
+        }
+    }
 
-        double gravity = calculateGravity(altitude);
+    // The kernel caches values derived from the parameters and the state, so
+    // every change made outside step() has to reload it.
+    // True if the next step() separates a stage without advancing the time.
+    boolean separatesNext() {
+        if (!kernelLoaded) {
+            loadKernel();
+        }
+        return kernel.separatesNext(0);
+    }
 
-        double acceleration = -gravity;
+    private void loadKernel() {
+        if (kernel == null || kernel.getMaxStages() != stageMasses.length) {
+            kernel = new FlightKernel(1, stageMasses.length);
+        }
+        kernel.load(0, this);
+        kernelLoaded = true;
+    }
 
-        speed += acceleration * deltaTime;
+    private void invalidateKernel() {
+        kernelLoaded = false;
+    }
 
-        altitude += speed * deltaTime;
+    private void saveStatistics() {
+        if (dbManager != null && shouldRecord(SamplingPolicy.Sink.DATABASE)) {
+            dbManager.saveStatistics(this);
+        }
+    }
 
-        if (altitude <= 0) {
-            altitude = 0;
-            speed = 0;
-            stopSimulation();
+    private boolean shouldRecord(SamplingPolicy.Sink sink) {
+        int bit = 1 << sink.ordinal();
+        if (SamplingPolicy.sample(samplingPolicies[sink.ordinal()], (pendingEvents & bit) != 0, tick, totalTime,
+                speed, altitude, currentMass)) {
+            pendingEvents &= ~bit;
+            return true;
         }
+        return false;
+    }
 
-        dbManager.saveStatistics(this);
+    public void addObserver(TelemetryObserver observer) {
+        observerBus.subscribe(observer);
+    }
+
+    public void removeObserver(TelemetryObserver observer) {
+        observerBus.unsubscribe(observer);
     }
 
     public void addObserver(RocketObserver observer) {
-        observers.add(observer);
+        observerBus.subscribe(new RocketObserverAdapter(observer));
     }
 
     public void removeObserver(RocketObserver observer) {
-        observers.remove(observer);
+        observerBus.unsubscribe(new RocketObserverAdapter(observer));
     }
 
     public void notifyObservers() {
-        for (RocketObserver observer : observers) {
-            observer.onUpdateStatus(currentMass, speed, altitude, horizontalDistance, remainingStages, fuelMasses, initialFuelMasses);
+        if (observerBus.hasSubscribers()) {
+            TelemetryFrame frame = framePool.acquire();
+            frame.fill(frameSequence.incrementAndGet(), totalTime, currentMass, speed, altitude, horizontalDistance,
+                    remainingStages, fuelMasses, initialFuelMasses);
+            observerBus.publish(frame);
+            frame.release();
         }
     }
 
     private void separateStage() {
         remainingStages--;
-        for (RocketObserver observer : observers) {
-            observer.onStageSeparation(remainingStages + 1);
-        }
+        pendingEvents = ALL_EVENTS;
+        publishStageSeparation(remainingStages + 1);
+    }
+
+    void publishStageSeparation(int stageNumber) {
+        observerBus.publishStageSeparation(stageNumber);
     }
 
     public void setRocketParameters(double payloadMass, double[] stageMasses, double[] fuelMasses, double thrustPerKgFuel) {
+        setRocketParameters(payloadMass, stageMasses, fuelMasses, thrustPerKgFuel, null, null);
+    }
+
+    public void setRocketParameters(double payloadMass, double[] stageMasses, double[] fuelMasses, double thrustPerKgFuel,
+                                    double[] stageThrustPerKgFuel, double[] stageFuelConsumption) {
+        checkStageArray(stageMasses, fuelMasses.length, "fuel masses");
+        checkStageArray(stageThrustPerKgFuel, stageMasses.length, "stage thrust");
+        checkStageArray(stageFuelConsumption, stageMasses.length, "stage fuel consumption");
+        checkStopped();
+        beginStateWrite();
         this.payloadMass = payloadMass;
         this.stageMasses = stageMasses;
         this.fuelMasses = fuelMasses;
         this.initialFuelMasses = fuelMasses.clone();
         this.thrustPerKgFuel = thrustPerKgFuel;
+        this.stageThrustPerKgFuel = stageThrustPerKgFuel;
+        this.stageFuelConsumption = stageFuelConsumption;
         this.remainingStages = stageMasses.length;
         this.currentMass = payloadMass + Arrays.stream(stageMasses).sum() + Arrays.stream(fuelMasses).sum();
         this.altitude = 0;
         this.speed = 0;
         this.horizontalDistance = 0;
-        dbManager.saveSettings(this);
+        endStateWrite();
+        invalidateKernel();
+        if (dbManager != null) {
+            dbManager.saveSettings(this);
+        }
+    }
+
+    // Replaces the whole stage configuration without touching the flight state;
+    // call resetSimulationVariables() before flying it.
+    public void setStages(double[] stageMasses, double[] fuelMasses, double[] stageThrustPerKgFuel,
+                          double[] stageFuelConsumption) {
+        checkStageArray(stageMasses, fuelMasses.length, "fuel masses");
+        checkStageArray(stageThrustPerKgFuel, stageMasses.length, "stage thrust");
+        checkStageArray(stageFuelConsumption, stageMasses.length, "stage fuel consumption");
+        checkStopped();
+        beginStateWrite();
+        this.stageMasses = stageMasses;
+        this.fuelMasses = fuelMasses;
+        this.initialFuelMasses = fuelMasses.clone();
+        this.stageThrustPerKgFuel = stageThrustPerKgFuel;
+        this.stageFuelConsumption = stageFuelConsumption;
+        endStateWrite();
+        invalidateKernel();
+    }
+
+    // Either array may be null to use the single value for every stage.
+    public void setStageEngines(double[] stageThrustPerKgFuel, double[] stageFuelConsumption) {
+        checkStageArray(stageThrustPerKgFuel, stageMasses.length, "stage thrust");
+        checkStageArray(stageFuelConsumption, stageMasses.length, "stage fuel consumption");
+        checkStopped();
+        this.stageThrustPerKgFuel = stageThrustPerKgFuel;
+        this.stageFuelConsumption = stageFuelConsumption;
+        invalidateKernel();
     }
 
+    private static void checkStageArray(double[] values, int stages, String name) {
+        if (values != null && values.length != stages) {
+            throw new IllegalArgumentException("Expected " + stages + " " + name + " values, got " + values.length);
+        }
+    }
+
+    // Also sets the time step, unless one was chosen with setTimeStep.
     public void setCycleDelay(int delay) {
+        checkStopped();
         this.cycleDelay = delay;
-        this.deltaTime = delay / 1000.0;
+        if (!timeStepFixed) {
+            this.deltaTime = delay / 1000.0;
+        }
+        invalidateKernel();
+    }
+
+    // The step no longer follows later changes of the cycle delay.
+    public void setTimeStep(double timeStep) {
+        checkStopped();
+        this.deltaTime = timeStep;
+        this.timeStepFixed = true;
+        invalidateKernel();
     }
 
     public void setFuelConsumptionPerCycle(double fuelConsumption) {
+        checkStopped();
         this.fuelConsumptionPerCycle = fuelConsumption;
+        invalidateKernel();
     }
 
     public double getDeltaTime() {
@@ -235,10 +565,9 @@ public class RocketModel implements Serializable {
     }
 
     public void resumeSimulation() {
+        pendingSteps.set(0);
         paused = false;
-        synchronized (this) {
-            notifyAll();
-        }
+        wakeSimulation();
     }
 
     public boolean isPaused() {
@@ -247,9 +576,19 @@ public class RocketModel implements Serializable {
     public double getPayloadMass() { return payloadMass; }
     public double[] getStageMasses() { return stageMasses; }
     public double[] getFuelMasses() { return fuelMasses; }
+    public double[] getInitialFuelMasses() { return initialFuelMasses; }
     public double getThrustPerKgFuel() { return thrustPerKgFuel; }
     public int getCycleDelay() { return cycleDelay; }
     public double getFuelConsumptionPerCycle() { return fuelConsumptionPerCycle; }
+    public int getStageCount() { return stageMasses == null ? 0 : stageMasses.length; }
+    public double[] getStageThrustPerKgFuel() { return stageThrustPerKgFuel; }
+    public double[] getStageFuelConsumption() { return stageFuelConsumption; }
+    public double getThrustPerKgFuel(int stage) {
+        return stageThrustPerKgFuel == null ? thrustPerKgFuel : stageThrustPerKgFuel[stage];
+    }
+    public double getFuelConsumptionPerCycle(int stage) {
+        return stageFuelConsumption == null ? fuelConsumptionPerCycle : stageFuelConsumption[stage];
+    }
     public double getCurrentMass() { return currentMass; }
     public double getSpeed() { return speed; }
     public double getAltitude() { return altitude; }
@@ -257,20 +596,20 @@ public class RocketModel implements Serializable {
     public double getHorizontalDistance() {
         return horizontalDistance;
     }
-    public List<Double> getTimeData() {
-        return timeData;
+    public SeriesView getTimeData() {
+        return timeData.view();
     }
 
-    public List<Double> getSpeedData() {
-        return speedData;
+    public SeriesView getSpeedData() {
+        return speedData.view();
     }
 
-    public List<Double> getAltitudeData() {
-        return altitudeData;
+    public SeriesView getAltitudeData() {
+        return altitudeData.view();
     }
 
-    public List<Double> getMassData() {
-        return massData;
+    public SeriesView getMassData() {
+        return massData.view();
     }
     public boolean isLoadedFromSave() {
         return loadedFromSave;
@@ -280,13 +619,42 @@ public class RocketModel implements Serializable {
         this.loadedFromSave = loadedFromSave;
     }
 
+    int getHistoryGeneration() {
+        return historyGeneration;
+    }
+
     public double getTotalTime() {
         return totalTime;
     }
-    public void setPayloadMass(double payloadMass) { this.payloadMass = payloadMass; }
-    public void setStageMasses(double[] stageMasses) { this.stageMasses = stageMasses; }
-    public void setFuelMasses(double[] fuelMasses) { this.fuelMasses = fuelMasses; }
-    public void setThrustPerKgFuel(double thrustPerKgFuel) { this.thrustPerKgFuel = thrustPerKgFuel; }
+    public void setPayloadMass(double payloadMass) {
+        checkStopped();
+        this.payloadMass = payloadMass;
+        invalidateKernel();
+    }
+    public void setStageMasses(double[] stageMasses) {
+        checkStopped();
+        this.stageMasses = stageMasses;
+        // per-stage engines no longer line up with a different number of stages
+        if (stageThrustPerKgFuel != null && stageThrustPerKgFuel.length != stageMasses.length) {
+            stageThrustPerKgFuel = null;
+        }
+        if (stageFuelConsumption != null && stageFuelConsumption.length != stageMasses.length) {
+            stageFuelConsumption = null;
+        }
+        invalidateKernel();
+    }
+    public void setFuelMasses(double[] fuelMasses) {
+        checkStopped();
+        beginStateWrite();
+        this.fuelMasses = fuelMasses;
+        endStateWrite();
+        invalidateKernel();
+    }
+    public void setThrustPerKgFuel(double thrustPerKgFuel) {
+        checkStopped();
+        this.thrustPerKgFuel = thrustPerKgFuel;
+        invalidateKernel();
+    }
 
     public void saveSettings(File file) {
         try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
@@ -296,6 +664,8 @@ public class RocketModel implements Serializable {
             out.writeObject(thrustPerKgFuel);
             out.writeObject(cycleDelay);
             out.writeObject(fuelConsumptionPerCycle);
+            out.writeObject(stageThrustPerKgFuel);
+            out.writeObject(stageFuelConsumption);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -303,13 +673,28 @@ public class RocketModel implements Serializable {
 
     public void loadSettings(File file) {
         try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
-            payloadMass = (double) in.readObject();
-            stageMasses = (double[]) in.readObject();
-            fuelMasses = (double[]) in.readObject();
-            thrustPerKgFuel = (double) in.readObject();
-            cycleDelay = (int) in.readObject();
-            fuelConsumptionPerCycle = (double) in.readObject();
+            double payloadMass = (double) in.readObject();
+            double[] stageMasses = (double[]) in.readObject();
+            double[] fuelMasses = (double[]) in.readObject();
+            double thrustPerKgFuel = (double) in.readObject();
+            int cycleDelay = (int) in.readObject();
+            double fuelConsumptionPerCycle = (double) in.readObject();
+            double[] stageThrustPerKgFuel;
+            double[] stageFuelConsumption;
+            try {
+                stageThrustPerKgFuel = (double[]) in.readObject();
+                stageFuelConsumption = (double[]) in.readObject();
+            } catch (EOFException e) {
+                // written before per-stage engines existed
+                stageThrustPerKgFuel = null;
+                stageFuelConsumption = null;
+            }
 
+            setCycleDelay(cycleDelay);
+            setFuelConsumptionPerCycle(fuelConsumptionPerCycle);
+            setPayloadMass(payloadMass);
+            setThrustPerKgFuel(thrustPerKgFuel);
+            setStages(stageMasses, fuelMasses, stageThrustPerKgFuel, stageFuelConsumption);
             resetSimulationVariables();
         } catch (IOException | ClassNotFoundException e) {
             e.printStackTrace();
@@ -317,8 +702,8 @@ public class RocketModel implements Serializable {
     }
 
     public void saveSimulationState(File file) {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
-            out.writeObject(this);
+        try {
+            SimFile.write(file, this);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -326,10 +711,18 @@ public class RocketModel implements Serializable {
 
 
     public void loadSimulationState(File file) {
-        try (Reader reader = new FileReader(file)) {
-            Gson gson = new Gson();
-            RocketModel loadedModel = gson.fromJson(reader, RocketModel.class);
-            copyFrom(loadedModel);
+        if (SimFile.isSimFile(file)) {
+            try {
+                SimFile.read(file, this);
+                this.loadedFromSave = true;
+                notifyObservers();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+        try {
+            moveFrom(SimulationJson.read(file));
             this.loadedFromSave = true;
             notifyObservers();
         } catch (IOException e) {
@@ -338,12 +731,90 @@ public class RocketModel implements Serializable {
     }
 
 
+    void restoreState(double totalTime, double currentMass, double speed, double altitude,
+                      double horizontalDistance, int remainingStages, double[] fuelMasses) {
+        checkStopped();
+        beginStateWrite();
+        this.totalTime = totalTime;
+        this.currentMass = currentMass;
+        this.speed = speed;
+        this.altitude = altitude;
+        this.horizontalDistance = horizontalDistance;
+        this.remainingStages = remainingStages;
+        this.fuelMasses = fuelMasses;
+        endStateWrite();
+        invalidateKernel();
+    }
+
+    void restoreHistory(DoubleSeries time, DoubleSeries speed, DoubleSeries altitude, DoubleSeries mass) {
+        checkStopped();
+        releaseHistory();
+        beginStateWrite();
+        this.timeData = time;
+        this.speedData = speed;
+        this.altitudeData = altitude;
+        this.massData = mass;
+        this.eventSamples = new DoubleSeries();
+        this.historyGeneration++;
+        endStateWrite();
+        applyHistoryResidentLimit();
+    }
+
+    public int getHistoryResidentLimit() {
+        return historyResidentLimit;
+    }
+
+    // Zero or less keeps the whole history on the heap.
+    public void setHistoryResidentLimit(int samples) {
+        checkStopped();
+        historyResidentLimit = samples;
+        applyHistoryResidentLimit();
+    }
+
+    private void applyHistoryResidentLimit() {
+        timeData.setResidentLimit(historyResidentLimit);
+        speedData.setResidentLimit(historyResidentLimit);
+        altitudeData.setResidentLimit(historyResidentLimit);
+        massData.setResidentLimit(historyResidentLimit);
+    }
+
+    // Closes the spill files of the history columns, for a model that is
+    // discarded or whose columns are about to be replaced. The history stays
+    // readable; columns that keep growing open a new spill file.
+    public void releaseHistory() {
+        timeData.close();
+        speedData.close();
+        altitudeData.close();
+        massData.close();
+    }
+
+    void appendSample(double time, double speed, double altitude, double mass) {
+        timeData.add(time);
+        speedData.add(speed);
+        altitudeData.add(altitude);
+        massData.add(mass);
+    }
+
     public void copyFrom(RocketModel other) {
+        copyFrom(other, true);
+    }
+
+    // Takes over the history of a detached model instead of copying it.
+    void moveFrom(RocketModel other) {
+        copyFrom(other, false);
+    }
+
+    private void copyFrom(RocketModel other, boolean copyHistory) {
+        checkStopped();
+        releaseHistory();
+        beginStateWrite();
         this.payloadMass = other.payloadMass;
         this.stageMasses = other.stageMasses.clone();
         this.fuelMasses = other.fuelMasses.clone();
         this.initialFuelMasses = other.initialFuelMasses.clone();
         this.thrustPerKgFuel = other.thrustPerKgFuel;
+        this.stageThrustPerKgFuel = other.stageThrustPerKgFuel == null ? null : other.stageThrustPerKgFuel.clone();
+        this.stageFuelConsumption = other.stageFuelConsumption == null ? null : other.stageFuelConsumption.clone();
         this.currentMass = other.currentMass;
         this.speed = other.speed;
         this.altitude = other.altitude;
@@ -352,11 +823,17 @@ public class RocketModel implements Serializable {
         this.cycleDelay = other.cycleDelay;
         this.fuelConsumptionPerCycle = other.fuelConsumptionPerCycle;
         this.deltaTime = other.deltaTime;
-        this.timeData = new ArrayList<>(other.timeData);
-        this.speedData = new ArrayList<>(other.speedData);
-        this.altitudeData = new ArrayList<>(other.altitudeData);
-        this.massData = new ArrayList<>(other.massData);
+        this.timeStepFixed = other.timeStepFixed;
+        this.timeData = copyHistory ? other.timeData.copy() : other.timeData;
+        this.speedData = copyHistory ? other.speedData.copy() : other.speedData;
+        this.altitudeData = copyHistory ? other.altitudeData.copy() : other.altitudeData;
+        this.massData = copyHistory ? other.massData.copy() : other.massData;
+        this.eventSamples = copyHistory ? other.eventSamples.copy() : other.eventSamples;
+        this.historyGeneration++;
         this.totalTime = other.totalTime;
+        endStateWrite();
+        invalidateKernel();
+        applyHistoryResidentLimit();
         this.running = other.running;
         this.paused = other.paused;
     }
@@ -365,13 +842,44 @@ public class RocketModel implements Serializable {
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
-        observers = new ArrayList<>();
-        dbManager = new DatabaseManager();
+        observerBus = new ObserverBus();
+        framePool = new TelemetryFramePool();
+        frameSequence = new AtomicLong();
+        pendingSteps = new AtomicInteger();
+        samplingPolicies = defaultSamplingPolicies();
+        eventSamples = new DoubleSeries();
+        historyResidentLimit = DEFAULT_HISTORY_RESIDENT_SAMPLES;
+        applyHistoryResidentLimit();
+        dbManager = DatabaseManager.getDefault();
+    }
+
+    private static SamplingPolicy[] defaultSamplingPolicies() {
+        SamplingPolicy[] policies = new SamplingPolicy[SamplingPolicy.Sink.values().length];
+        Arrays.fill(policies, SamplingPolicy.always());
+        return policies;
+    }
+
+    public SamplingPolicy getSamplingPolicy(SamplingPolicy.Sink sink) {
+        return samplingPolicies[sink.ordinal()];
+    }
+
+    // Stateful policies must not be shared between sinks or models.
+    public void setSamplingPolicy(SamplingPolicy.Sink sink, SamplingPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Sampling policy must not be null");
+        }
+        checkStopped();
+        policy.reset();
+        samplingPolicies[sink.ordinal()] = policy;
+    }
+
+    SeriesView getEventSamples() {
+        return eventSamples;
     }
 
-    private double calculateGravity(double altitude) {
+    static double calculateGravity(double altitude) {
         double distanceFromEarthCenter = EARTH_RADIUS + altitude;
-        return GRAVITATIONAL_CONSTANT * EARTH_MASS / (distanceFromEarthCenter * distanceFromEarthCenter);
+        return FlightKernel.GM / (distanceFromEarthCenter * distanceFromEarthCenter);
     }
 
     public boolean isRunning() {
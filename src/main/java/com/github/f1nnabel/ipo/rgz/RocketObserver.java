@@ -1,6 +1,13 @@
 package com.github.f1nnabel.ipo.rgz;
 
 public interface RocketObserver {
+    int UI_UPDATE_RATE = TelemetryObserver.UI_UPDATE_RATE;
+
     void onStageSeparation(int stageNumber);
     void onUpdateStatus(double currentMass, double speed, double altitude, double horizontalDistance, int remainingStages, double[] fuelMasses, double[] initialFuelMasses);
+
+    // Maximum number of status updates per second, 0 for every update.
+    default int getMaxUpdateRate() {
+        return 0;
+    }
 }
@@ -0,0 +1,38 @@
+package com.github.f1nnabel.ipo.rgz;
+
+// Delivers frames to a legacy RocketObserver. The fuel arrays are copied so the
+// observer may keep them after the frame is reused.
+class RocketObserverAdapter implements TelemetryObserver {
+    private final RocketObserver observer;
+
+    RocketObserverAdapter(RocketObserver observer) {
+        this.observer = observer;
+    }
+
+    @Override
+    public void onFrame(TelemetryFrame frame) {
+        observer.onUpdateStatus(frame.getCurrentMass(), frame.getSpeed(), frame.getAltitude(),
+                frame.getHorizontalDistance(), frame.getRemainingStages(), frame.copyFuelMasses(),
+                frame.copyInitialFuelMasses());
+    }
+
+    @Override
+    public void onStageSeparation(int stageNumber) {
+        observer.onStageSeparation(stageNumber);
+    }
+
+    @Override
+    public int getMaxUpdateRate() {
+        return observer.getMaxUpdateRate();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RocketObserverAdapter && ((RocketObserverAdapter) o).observer == observer;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(observer);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.f1nnabel.ipo.rgz;
+
+// Reader-owned copy of the flight state filled by RocketModel.readState().
+// Reuse one instance per reader to avoid allocating on every read.
+public class RocketState {
+    int version;
+    double totalTime;
+    double currentMass;
+    double speed;
+    double altitude;
+    double horizontalDistance;
+    int remainingStages;
+    int sampleCount;
+    double[] fuelMasses = new double[0];
+
+    void copyFuelMasses(double[] source) {
+        int length = source == null ? 0 : source.length;
+        if (fuelMasses.length != length) {
+            fuelMasses = new double[length];
+        }
+        if (length > 0) {
+            System.arraycopy(source, 0, fuelMasses, 0, length);
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public double getTotalTime() {
+        return totalTime;
+    }
+
+    public double getCurrentMass() {
+        return currentMass;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public double getAltitude() {
+        return altitude;
+    }
+
+    public double getHorizontalDistance() {
+        return horizontalDistance;
+    }
+
+    public int getRemainingStages() {
+        return remainingStages;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public double[] getFuelMasses() {
+        return fuelMasses;
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Read side of the telemetry tables. Run summaries and window sizes come from
+// single index probes, and telemetry windows are bucketed by SQLite so at most
+// maxPoints buckets are returned however many rows the run has. Keeps one read
+// connection and its statements open until close().
+public class RunHistoryRepository implements AutoCloseable {
+    private static final String SELECT_RUNS = "SELECT r.id, r.settings_id, r.started_at, r.delta_time, " +
+            "(SELECT max(tick) + 1 FROM telemetry t WHERE t.run_id = r.id) AS samples, " +
+            "(SELECT min(time) FROM telemetry t WHERE t.run_id = r.id) AS start_time, " +
+            "(SELECT max(time) FROM telemetry t WHERE t.run_id = r.id) AS end_time " +
+            "FROM runs r ORDER BY r.id DESC;";
+
+    private static final String SELECT_ROWS = "SELECT time, speed, altitude, currentMass FROM telemetry " +
+            "WHERE run_id = ? AND time >= ? AND time <= ? ORDER BY time;";
+
+    // A row at exactly toTime would start bucket maxPoints; it joins the last one.
+    private static final String SELECT_BUCKETS = "SELECT min(CAST((time - ?) / ? AS INTEGER), ?) AS bucket, min(time), " +
+            "min(speed), max(speed), min(altitude), max(altitude), min(currentMass), max(currentMass) " +
+            "FROM telemetry WHERE run_id = ? AND time >= ? AND time <= ? GROUP BY bucket ORDER BY bucket;";
+
+    // Ticks are contiguous within a run, so the row count of a time window is
+    // the difference between the ticks of its last and first rows. Each is one
+    // probe of telemetry_run_time, which holds (run_id, time, tick); a max()
+    // over the window would read every row in it.
+    private static final String COUNT_ROWS = "SELECT " +
+            "(SELECT tick FROM telemetry WHERE run_id = ? AND time <= ? ORDER BY time DESC, tick DESC LIMIT 1) - " +
+            "(SELECT tick FROM telemetry WHERE run_id = ? AND time >= ? ORDER BY time, tick LIMIT 1) + 1;";
+
+    private final String url;
+    private Connection conn;
+    private PreparedStatement selectRunsStatement;
+    private PreparedStatement selectRowsStatement;
+    private PreparedStatement selectBucketsStatement;
+    private PreparedStatement countRowsStatement;
+
+    public RunHistoryRepository(String url) {
+        this.url = url;
+    }
+
+    private Connection connection() throws SQLException {
+        if (conn == null) {
+            Connection opened = DriverManager.getConnection(url);
+            try {
+                DatabaseManager.configure(opened);
+                selectRunsStatement = opened.prepareStatement(SELECT_RUNS);
+                selectRowsStatement = opened.prepareStatement(SELECT_ROWS);
+                selectBucketsStatement = opened.prepareStatement(SELECT_BUCKETS);
+                countRowsStatement = opened.prepareStatement(COUNT_ROWS);
+            } catch (SQLException e) {
+                opened.close();
+                throw e;
+            }
+            conn = opened;
+        }
+        return conn;
+    }
+
+    public synchronized List<RunInfo> listRuns() throws SQLException {
+        connection();
+        List<RunInfo> runs = new ArrayList<>();
+        try (ResultSet rs = selectRunsStatement.executeQuery()) {
+            while (rs.next()) {
+                runs.add(new RunInfo(rs.getLong("id"), rs.getInt("settings_id"), rs.getString("started_at"),
+                        rs.getDouble("delta_time"), rs.getLong("samples"), rs.getDouble("start_time"),
+                        rs.getDouble("end_time")));
+            }
+        }
+        return runs;
+    }
+
+    // Rows with fromTime <= time <= toTime. If maxPoints is positive and the
+    // window holds more rows, they are grouped into at most maxPoints equal
+    // time buckets. Each bucket gives two envelope rows at its first time, one
+    // with the minimum and one with the maximum of every column. A column's
+    // extreme is taken on its own, so an envelope row is not a recorded sample.
+    public synchronized RunTelemetry loadTelemetry(long runId, double fromTime, double toTime, int maxPoints) throws SQLException {
+        connection();
+        double bucketWidth = maxPoints > 0 ? (toTime - fromTime) / maxPoints : 0;
+        if (bucketWidth <= 0 || countRows(runId, fromTime, toTime) <= maxPoints) {
+            return loadRows(runId, fromTime, toTime);
+        }
+        RunTelemetry telemetry = new RunTelemetry(runId, fromTime, toTime, true);
+        selectBucketsStatement.setDouble(1, fromTime);
+        selectBucketsStatement.setDouble(2, bucketWidth);
+        selectBucketsStatement.setInt(3, maxPoints - 1);
+        selectBucketsStatement.setLong(4, runId);
+        selectBucketsStatement.setDouble(5, fromTime);
+        selectBucketsStatement.setDouble(6, toTime);
+        try (ResultSet rs = selectBucketsStatement.executeQuery()) {
+            while (rs.next()) {
+                double time = rs.getDouble(2);
+                telemetry.add(time, rs.getDouble(3), rs.getDouble(5), rs.getDouble(7));
+                telemetry.add(time, rs.getDouble(4), rs.getDouble(6), rs.getDouble(8));
+            }
+        }
+        return telemetry;
+    }
+
+    public RunTelemetry loadTelemetry(RunInfo run, int maxPoints) throws SQLException {
+        return loadTelemetry(run.getId(), run.getStartTime(), run.getEndTime(), maxPoints);
+    }
+
+    private RunTelemetry loadRows(long runId, double fromTime, double toTime) throws SQLException {
+        RunTelemetry telemetry = new RunTelemetry(runId, fromTime, toTime, false);
+        selectRowsStatement.setLong(1, runId);
+        selectRowsStatement.setDouble(2, fromTime);
+        selectRowsStatement.setDouble(3, toTime);
+        try (ResultSet rs = selectRowsStatement.executeQuery()) {
+            while (rs.next()) {
+                telemetry.add(rs.getDouble(1), rs.getDouble(2), rs.getDouble(3), rs.getDouble(4));
+            }
+        }
+        return telemetry;
+    }
+
+    private long countRows(long runId, double fromTime, double toTime) throws SQLException {
+        countRowsStatement.setLong(1, runId);
+        countRowsStatement.setDouble(2, toTime);
+        countRowsStatement.setLong(3, runId);
+        countRowsStatement.setDouble(4, fromTime);
+        try (ResultSet rs = countRowsStatement.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (conn == null) {
+            return;
+        }
+        try {
+            selectRunsStatement.close();
+            selectRowsStatement.close();
+            selectBucketsStatement.close();
+            countRowsStatement.close();
+            conn.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            conn = null;
+        }
+    }
+}
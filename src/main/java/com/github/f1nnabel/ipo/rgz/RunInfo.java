@@ -0,0 +1,35 @@
+package com.github.f1nnabel.ipo.rgz;
+
+public class RunInfo {
+    private final long id;
+    private final int settingsId;
+    private final String startedAt;
+    private final double deltaTime;
+    private final long sampleCount;
+    private final double startTime;
+    private final double endTime;
+
+    public RunInfo(long id, int settingsId, String startedAt, double deltaTime, long sampleCount,
+                   double startTime, double endTime) {
+        this.id = id;
+        this.settingsId = settingsId;
+        this.startedAt = startedAt;
+        this.deltaTime = deltaTime;
+        this.sampleCount = sampleCount;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    public long getId() { return id; }
+    public int getSettingsId() { return settingsId; }
+    public String getStartedAt() { return startedAt; }
+    public double getDeltaTime() { return deltaTime; }
+    public long getSampleCount() { return sampleCount; }
+    public double getStartTime() { return startTime; }
+    public double getEndTime() { return endTime; }
+
+    @Override
+    public String toString() {
+        return String.format("Запуск №%d (%s): %d точек, %.2f с", id, startedAt, sampleCount, endTime);
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.f1nnabel.ipo.rgz;
+
+// Telemetry of one run over a time window. When the window was downsampled
+// every bucket contributes two envelope rows at its start time, the minimum
+// and the maximum of each value, so plots keep the envelope of the skipped
+// rows. Each column's extreme is taken separately, so the values of an
+// envelope row need not have occurred together.
+public class RunTelemetry {
+    private final long runId;
+    private final double fromTime;
+    private final double toTime;
+    private final boolean downsampled;
+    private final DoubleSeries timeData = new DoubleSeries();
+    private final DoubleSeries speedData = new DoubleSeries();
+    private final DoubleSeries altitudeData = new DoubleSeries();
+    private final DoubleSeries massData = new DoubleSeries();
+
+    public RunTelemetry(long runId, double fromTime, double toTime, boolean downsampled) {
+        this.runId = runId;
+        this.fromTime = fromTime;
+        this.toTime = toTime;
+        this.downsampled = downsampled;
+    }
+
+    void add(double time, double speed, double altitude, double mass) {
+        timeData.add(time);
+        speedData.add(speed);
+        altitudeData.add(altitude);
+        massData.add(mass);
+    }
+
+    public long getRunId() { return runId; }
+    public double getFromTime() { return fromTime; }
+    public double getToTime() { return toTime; }
+    public boolean isDownsampled() { return downsampled; }
+    public SeriesView getTimeData() { return timeData.view(); }
+    public SeriesView getSpeedData() { return speedData.view(); }
+    public SeriesView getAltitudeData() { return altitudeData.view(); }
+    public SeriesView getMassData() { return massData.view(); }
+}
@@ -0,0 +1,38 @@
+package com.github.f1nnabel.ipo.rgz;
+
+public class RungeKutta4Integrator implements Integrator {
+    private double[] k1 = new double[0];
+    private double[] k2;
+    private double[] k3;
+    private double[] k4;
+    private double[] tmp;
+
+    @Override
+    public double step(OdeSystem system, double t, double[] y, double h) {
+        int n = y.length;
+        if (k1.length != n) {
+            k1 = new double[n];
+            k2 = new double[n];
+            k3 = new double[n];
+            k4 = new double[n];
+            tmp = new double[n];
+        }
+        system.derivatives(t, y, k1);
+        for (int i = 0; i < n; i++) {
+            tmp[i] = y[i] + h / 2 * k1[i];
+        }
+        system.derivatives(t + h / 2, tmp, k2);
+        for (int i = 0; i < n; i++) {
+            tmp[i] = y[i] + h / 2 * k2[i];
+        }
+        system.derivatives(t + h / 2, tmp, k3);
+        for (int i = 0; i < n; i++) {
+            tmp[i] = y[i] + h * k3[i];
+        }
+        system.derivatives(t + h, tmp, k4);
+        for (int i = 0; i < n; i++) {
+            y[i] += h / 6 * (k1[i] + 2 * k2[i] + 2 * k3[i] + k4[i]);
+        }
+        return h;
+    }
+}
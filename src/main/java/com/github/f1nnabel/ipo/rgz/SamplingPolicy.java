@@ -0,0 +1,175 @@
+package com.github.f1nnabel.ipo.rgz;
+
+// Decides which ticks a sink records. Policies may keep state, so every sink
+// needs its own instance. Events such as stage separation are always recorded
+// by the caller; accept() is only asked about ordinary ticks, and recorded()
+// is called for every tick that was actually kept.
+public interface SamplingPolicy {
+
+    enum Sink {
+        MEMORY,
+        DATABASE,
+        FILE,
+        UI
+    }
+
+    boolean accept(long tick, double time, double speed, double altitude, double mass);
+
+    default void recorded(long tick, double time, double speed, double altitude, double mass) {
+    }
+
+    default void reset() {
+    }
+
+    default SamplingPolicy or(SamplingPolicy other) {
+        SamplingPolicy first = this;
+        return new SamplingPolicy() {
+            @Override
+            public boolean accept(long tick, double time, double speed, double altitude, double mass) {
+                // both sides see every tick so stateful policies stay in step
+                return first.accept(tick, time, speed, altitude, mass) | other.accept(tick, time, speed, altitude, mass);
+            }
+
+            @Override
+            public void recorded(long tick, double time, double speed, double altitude, double mass) {
+                first.recorded(tick, time, speed, altitude, mass);
+                other.recorded(tick, time, speed, altitude, mass);
+            }
+
+            @Override
+            public void reset() {
+                first.reset();
+                other.reset();
+            }
+        };
+    }
+
+    static boolean sample(SamplingPolicy policy, boolean event, long tick, double time, double speed,
+                          double altitude, double mass) {
+        if (event || policy.accept(tick, time, speed, altitude, mass)) {
+            policy.recorded(tick, time, speed, altitude, mass);
+            return true;
+        }
+        return false;
+    }
+
+    static SamplingPolicy always() {
+        return (tick, time, speed, altitude, mass) -> true;
+    }
+
+    static SamplingPolicy never() {
+        return (tick, time, speed, altitude, mass) -> false;
+    }
+
+    static SamplingPolicy everyNth(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Sampling period must be positive: " + n);
+        }
+        return (tick, time, speed, altitude, mass) -> tick % n == 0;
+    }
+
+    static SamplingPolicy interval(double seconds) {
+        if (!(seconds > 0)) {
+            throw new IllegalArgumentException("Sampling interval must be positive: " + seconds);
+        }
+        return new SamplingPolicy() {
+            // tolerance for accumulated rounding of totalTime
+            private final double epsilon = seconds * 1e-6;
+            private double lastTime = Double.NaN;
+
+            @Override
+            public boolean accept(long tick, double time, double speed, double altitude, double mass) {
+                return Double.isNaN(lastTime) || time - lastTime >= seconds - epsilon;
+            }
+
+            @Override
+            public void recorded(long tick, double time, double speed, double altitude, double mass) {
+                lastTime = time;
+            }
+
+            @Override
+            public void reset() {
+                lastTime = Double.NaN;
+            }
+        };
+    }
+
+    // Records when any value moved more than its threshold since the last
+    // recorded tick; a negative threshold ignores that value.
+    static SamplingPolicy deadband(double speedThreshold, double altitudeThreshold, double massThreshold) {
+        return new SamplingPolicy() {
+            private boolean hasLast = false;
+            private double lastSpeed;
+            private double lastAltitude;
+            private double lastMass;
+
+            @Override
+            public boolean accept(long tick, double time, double speed, double altitude, double mass) {
+                return !hasLast
+                        || exceeds(speed - lastSpeed, speedThreshold)
+                        || exceeds(altitude - lastAltitude, altitudeThreshold)
+                        || exceeds(mass - lastMass, massThreshold);
+            }
+
+            @Override
+            public void recorded(long tick, double time, double speed, double altitude, double mass) {
+                hasLast = true;
+                lastSpeed = speed;
+                lastAltitude = altitude;
+                lastMass = mass;
+            }
+
+            @Override
+            public void reset() {
+                hasLast = false;
+            }
+
+            private boolean exceeds(double delta, double threshold) {
+                return threshold >= 0 && Math.abs(delta) > threshold;
+            }
+        };
+    }
+
+    // all | never | every:N | interval:SECONDS | deadband:SPEED,ALTITUDE,MASS,
+    // several joined with '+' are combined with or().
+    static SamplingPolicy parse(String spec) {
+        SamplingPolicy result = null;
+        for (String part : spec.split("\\+")) {
+            String[] nameAndArgs = part.trim().split(":", 2);
+            SamplingPolicy policy;
+            switch (nameAndArgs[0]) {
+                case "all":
+                    policy = always();
+                    break;
+                case "never":
+                    policy = never();
+                    break;
+                case "every":
+                    policy = everyNth(Integer.parseInt(argument(nameAndArgs, part)));
+                    break;
+                case "interval":
+                    policy = interval(Double.parseDouble(argument(nameAndArgs, part)));
+                    break;
+                case "deadband":
+                    String[] thresholds = argument(nameAndArgs, part).split(",");
+                    if (thresholds.length != 3) {
+                        throw new IllegalArgumentException("Deadband needs speed,altitude,mass thresholds: " + part);
+                    }
+                    policy = deadband(Double.parseDouble(thresholds[0]), Double.parseDouble(thresholds[1]),
+                            Double.parseDouble(thresholds[2]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown sampling policy: " + part);
+            }
+            result = result == null ? policy : result.or(policy);
+        }
+        return result;
+    }
+
+    private static String argument(String[] nameAndArgs, String part) {
+        if (nameAndArgs.length < 2) {
+            throw new IllegalArgumentException("Missing argument for sampling policy: " + part);
+        }
+        return nameAndArgs[1];
+    }
+}
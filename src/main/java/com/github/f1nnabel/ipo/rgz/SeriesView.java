@@ -0,0 +1,28 @@
+package com.github.f1nnabel.ipo.rgz;
+
+public interface SeriesView {
+    int size();
+
+    double get(int index);
+
+    double min();
+
+    double max();
+
+    double mean();
+
+    double last();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    default double[] toArray() {
+        int n = size();
+        double[] array = new double[n];
+        for (int i = 0; i < n; i++) {
+            array[i] = get(i);
+        }
+        return array;
+    }
+}
@@ -3,10 +3,19 @@ package com.github.f1nnabel.ipo.rgz;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.io.File;
 
 public class SettingsWindow extends JFrame {
+    private static final int DEFAULT_STAGES = 3;
+    private static final int MAX_STAGES = 99;
+    private static final int STAGE_COLUMN = 0;
+    private static final int STAGE_MASS_COLUMN = 1;
+    private static final int FUEL_MASS_COLUMN = 2;
+    private static final int THRUST_COLUMN = 3;
+    private static final int CONSUMPTION_COLUMN = 4;
+
     private RocketController controller;
 
     private JButton saveSettingsButton;
@@ -14,8 +23,9 @@ public class SettingsWindow extends JFrame {
     private JButton applySettingsButton;
 
     private JTextField payloadMassField;
-    private JTextField[] stageMassFields;
-    private JTextField[] fuelMassFields;
+    private JSpinner stageCountSpinner;
+    private DefaultTableModel stageTableModel;
+    private JTable stageTable;
     private JTextField thrustField;
     private JTextField cycleDelayField;
     private JTextField fuelConsumptionField;
@@ -27,7 +37,7 @@ public class SettingsWindow extends JFrame {
 
     private void initUI() {
         setTitle("Настройки симуляции");
-        setSize(400, 500);
+        setSize(560, 500);
         setLayout(new BorderLayout());
 
         JPanel contentPanel = new JPanel();
@@ -36,16 +46,33 @@ public class SettingsWindow extends JFrame {
         payloadMassField = new JTextField("10");
         contentPanel.add(createFieldPanel("Полезная масса (кг):", payloadMassField));
 
-        stageMassFields = new JTextField[3];
-        fuelMassFields = new JTextField[3];
-
-        for (int i = 0; i < 3; i++) {
-            stageMassFields[i] = new JTextField("5");
-            fuelMassFields[i] = new JTextField("3");
+        stageCountSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_STAGES, 1, MAX_STAGES, 1));
+        contentPanel.add(createFieldPanel("Количество ступеней:", stageCountSpinner));
+
+        // A table only lays out and paints the visible rows, so dozens of
+        // stages cost no more than three. Empty thrust and fuel-per-cycle
+        // cells use the values below.
+        stageTableModel = new DefaultTableModel(new Object[]{"Ступень", "Масса (кг)", "Топливо (кг)",
+                "Тяга на кг топлива", "Топливо за цикл (кг)"}, 0) {
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column == STAGE_COLUMN ? Integer.class : Double.class;
+            }
 
-            contentPanel.add(createFieldPanel("Масса ступени " + (i + 1) + " (кг):", stageMassFields[i]));
-            contentPanel.add(createFieldPanel("Масса топлива ступени " + (i + 1) + " (кг):", fuelMassFields[i]));
-        }
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return column != STAGE_COLUMN;
+            }
+        };
+        setStageCount(DEFAULT_STAGES);
+        stageTable = new JTable(stageTableModel);
+        stageTable.putClientProperty("terminateEditOnFocusLost", Boolean.TRUE);
+        stageTable.getColumnModel().getColumn(STAGE_COLUMN).setMaxWidth(60);
+        JScrollPane stageScrollPane = new JScrollPane(stageTable);
+        stageScrollPane.setPreferredSize(new Dimension(500, 160));
+        stageScrollPane.setBorder(new EmptyBorder(5, 0, 5, 0));
+        contentPanel.add(stageScrollPane);
+        stageCountSpinner.addChangeListener(e -> setStageCount((Integer) stageCountSpinner.getValue()));
 
         thrustField = new JTextField("3500");
         contentPanel.add(createFieldPanel("Тяга на кг топлива:", thrustField));
@@ -82,25 +109,44 @@ public class SettingsWindow extends JFrame {
         setVisible(true);
     }
 
-    private JPanel createFieldPanel(String labelText, JTextField textField) {
+    private JPanel createFieldPanel(String labelText, JComponent field) {
         JPanel panel = new JPanel(new BorderLayout(10, 0));
         JLabel label = new JLabel(labelText);
         label.setPreferredSize(new Dimension(220, 25));
         panel.add(label, BorderLayout.WEST);
-        panel.add(textField, BorderLayout.CENTER);
-        textField.setMaximumSize(new Dimension(Integer.MAX_VALUE, textField.getPreferredSize().height));
+        panel.add(field, BorderLayout.CENTER);
+        field.setMaximumSize(new Dimension(Integer.MAX_VALUE, field.getPreferredSize().height));
 
         return panel;
     }
+
+    // New rows copy the masses of the last stage; removed rows are dropped from the end.
+    private void setStageCount(int count) {
+        int rows = stageTableModel.getRowCount();
+        if (count < rows) {
+            stageTableModel.setRowCount(count);
+            return;
+        }
+        for (int i = rows; i < count; i++) {
+            Object stageMass = i > 0 ? stageTableModel.getValueAt(i - 1, STAGE_MASS_COLUMN) : 5.0;
+            Object fuelMass = i > 0 ? stageTableModel.getValueAt(i - 1, FUEL_MASS_COLUMN) : 3.0;
+            stageTableModel.addRow(new Object[]{i + 1, stageMass, fuelMass, null, null});
+        }
+    }
     private void updateFieldsFromModel() {
         RocketModel model = controller.getModel();
         payloadMassField.setText(String.valueOf(model.getPayloadMass()));
         double[] stageMasses = model.getStageMasses();
         double[] fuelMasses = model.getFuelMasses();
-        for (int i = 0; i < 3; i++) {
-            stageMassFields[i].setText(String.valueOf(stageMasses[i]));
-            fuelMassFields[i].setText(String.valueOf(fuelMasses[i]));
+        double[] stageThrusts = model.getStageThrustPerKgFuel();
+        double[] stageConsumption = model.getStageFuelConsumption();
+        stageTableModel.setRowCount(0);
+        for (int i = 0; i < stageMasses.length; i++) {
+            stageTableModel.addRow(new Object[]{i + 1, stageMasses[i], fuelMasses[i],
+                    stageThrusts != null ? stageThrusts[i] : null,
+                    stageConsumption != null ? stageConsumption[i] : null});
         }
+        stageCountSpinner.setValue(Math.max(1, stageMasses.length));
         thrustField.setText(String.valueOf(model.getThrustPerKgFuel()));
         cycleDelayField.setText(String.valueOf(model.getCycleDelay()));
         fuelConsumptionField.setText(String.valueOf(model.getFuelConsumptionPerCycle()));
@@ -136,20 +182,39 @@ public class SettingsWindow extends JFrame {
 
     private void applySettings() {
         try {
-            double payloadMass = Double.parseDouble(payloadMassField.getText());
-            double[] stageMasses = new double[3];
-            double[] fuelMasses = new double[3];
-            for (int i = 0; i < 3; i++) {
-                stageMasses[i] = Double.parseDouble(stageMassFields[i].getText());
-                fuelMasses[i] = Double.parseDouble(fuelMassFields[i].getText());
+            if (stageTable.isEditing() && !stageTable.getCellEditor().stopCellEditing()) {
+                throw new NumberFormatException("Invalid stage table value");
             }
+            double payloadMass = Double.parseDouble(payloadMassField.getText());
             double thrustPerKgFuel = Double.parseDouble(thrustField.getText());
             int cycleDelay = Integer.parseInt(cycleDelayField.getText());
             double fuelConsumptionPerCycle = Double.parseDouble(fuelConsumptionField.getText());
 
-            controller.getModel().setRocketParameters(payloadMass, stageMasses, fuelMasses, thrustPerKgFuel);
+            int stages = stageTableModel.getRowCount();
+            double[] stageMasses = new double[stages];
+            double[] fuelMasses = new double[stages];
+            double[] stageThrusts = new double[stages];
+            double[] stageConsumption = new double[stages];
+            boolean customThrust = false;
+            boolean customConsumption = false;
+            for (int i = 0; i < stages; i++) {
+                stageMasses[i] = cellValue(i, STAGE_MASS_COLUMN, Double.NaN);
+                fuelMasses[i] = cellValue(i, FUEL_MASS_COLUMN, Double.NaN);
+                if (Double.isNaN(stageMasses[i]) || Double.isNaN(fuelMasses[i])) {
+                    throw new NumberFormatException("Missing mass of stage " + (i + 1));
+                }
+                stageThrusts[i] = cellValue(i, THRUST_COLUMN, thrustPerKgFuel);
+                stageConsumption[i] = cellValue(i, CONSUMPTION_COLUMN, fuelConsumptionPerCycle);
+                customThrust |= stageTableModel.getValueAt(i, THRUST_COLUMN) != null;
+                customConsumption |= stageTableModel.getValueAt(i, CONSUMPTION_COLUMN) != null;
+            }
+
+            controller.stopSimulation();
             controller.getModel().setCycleDelay(cycleDelay);
             controller.getModel().setFuelConsumptionPerCycle(fuelConsumptionPerCycle);
+            controller.getModel().setRocketParameters(payloadMass, stageMasses, fuelMasses, thrustPerKgFuel,
+                    customThrust ? stageThrusts : null, customConsumption ? stageConsumption : null);
+            controller.getModel().notifyObservers();
 
             controller.setSettingsConfirmed(true);
             controller.saveSettingsToFile(new File("rocket_settings.json"));
@@ -158,4 +223,9 @@ public class SettingsWindow extends JFrame {
             JOptionPane.showMessageDialog(this, "Ошибка ввода данных. Пожалуйста, введите корректные числовые значения.", "Ошибка", JOptionPane.ERROR_MESSAGE);
         }
     }
+
+    private double cellValue(int row, int column, double defaultValue) {
+        Object value = stageTableModel.getValueAt(row, column);
+        return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+    }
 }
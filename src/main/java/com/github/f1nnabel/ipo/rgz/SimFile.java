@@ -0,0 +1,266 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Binary simulation file. Little-endian layout:
+//   int magic, version, headerBytes, stageCount, sampleCount, cycleDelay, remainingStages, flags
+//   double payloadMass, thrustPerKgFuel, fuelConsumptionPerCycle, deltaTime,
+//          totalTime, currentMass, speed, altitude, horizontalDistance
+//   double stageMasses[stageCount], fuelMasses[stageCount], initialFuelMasses[stageCount]
+//   double stageThrustPerKgFuel[stageCount], stageFuelConsumption[stageCount]
+//          (only with FLAG_STAGE_ENGINES; version 1 files have flags = 0)
+//   double min, max, sum for each of the time, speed, altitude and mass columns
+// followed at headerBytes by the four columns, sampleCount doubles each.
+// Loading maps the columns instead of reading them.
+public final class SimFile {
+    public static final int MAGIC = 0x4D495352; // "RSIM"
+    public static final int VERSION = 2;
+    private static final int FLAG_STAGE_ENGINES = 1;
+
+    private static final int FIXED_HEADER_BYTES = 8 * Integer.BYTES + 9 * Double.BYTES;
+    private static final int COLUMN_COUNT = 4;
+    private static final int STATS_PER_COLUMN = 3;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    private SimFile() {
+    }
+
+    public static boolean isSimFile(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            return readFully(channel, buffer, 0) && buffer.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Written to a temporary file and moved into place, so a file that is
+    // currently mapped by a loaded model is never truncated underneath it.
+    public static void write(File file, RocketModel model) throws IOException {
+        RocketState state = model.readState(new RocketState());
+        SeriesView[] columns = {model.getTimeData(), model.getSpeedData(), model.getAltitudeData(), model.getMassData()};
+        int sampleCount = state.getSampleCount();
+        for (SeriesView column : columns) {
+            sampleCount = Math.min(sampleCount, column.size());
+        }
+        double[] stageMasses = model.getStageMasses();
+        double[] initialFuelMasses = model.getInitialFuelMasses();
+        double[] fuelMasses = state.getFuelMasses();
+        double[] stageThrusts = model.getStageThrustPerKgFuel();
+        double[] stageConsumption = model.getStageFuelConsumption();
+        int flags = stageThrusts != null || stageConsumption != null ? FLAG_STAGE_ENGINES : 0;
+        int stageCount = stageMasses.length;
+        int headerBytes = headerBytes(stageCount, flags);
+
+        Path target = file.toPath().toAbsolutePath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            double[] stats = new double[COLUMN_COUNT * STATS_PER_COLUMN];
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(headerBytes);
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                writeColumn(channel, buffer, columns[c], sampleCount, stats, c * STATS_PER_COLUMN);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(headerBytes);
+            header.putInt(stageCount);
+            header.putInt(sampleCount);
+            header.putInt(model.getCycleDelay());
+            header.putInt(state.getRemainingStages());
+            header.putInt(flags);
+            header.putDouble(model.getPayloadMass());
+            header.putDouble(model.getThrustPerKgFuel());
+            header.putDouble(model.getFuelConsumptionPerCycle());
+            header.putDouble(model.getDeltaTime());
+            header.putDouble(state.getTotalTime());
+            header.putDouble(state.getCurrentMass());
+            header.putDouble(state.getSpeed());
+            header.putDouble(state.getAltitude());
+            header.putDouble(state.getHorizontalDistance());
+            putArray(header, stageMasses);
+            putArray(header, fuelMasses);
+            putArray(header, initialFuelMasses);
+            if (flags != 0) {
+                putArray(header, stageThrusts != null ? stageThrusts : filled(model.getThrustPerKgFuel(), stageCount));
+                putArray(header, stageConsumption != null ? stageConsumption
+                        : filled(model.getFuelConsumptionPerCycle(), stageCount));
+            }
+            putArray(header, stats);
+            header.flip();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(false);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void read(File file, RocketModel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(8 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (!readFully(channel, prefix, 0) || prefix.getInt(0) != MAGIC) {
+                throw new IOException("Not a simulation file: " + file);
+            }
+            int version = prefix.getInt(4);
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported simulation file version " + version + ": " + file);
+            }
+            int headerBytes = prefix.getInt(8);
+            int stageCount = prefix.getInt(12);
+            int flags = prefix.getInt(28);
+            if (stageCount < 0 || headerBytes != headerBytes(stageCount, flags)) {
+                throw new IOException("Corrupt simulation file header: " + file);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+            if (!readFully(channel, header, 0)) {
+                throw new IOException("Truncated simulation file: " + file);
+            }
+            header.position(4 * Integer.BYTES);
+            int sampleCount = header.getInt();
+            int cycleDelay = header.getInt();
+            int remainingStages = header.getInt();
+            header.getInt();
+            double payloadMass = header.getDouble();
+            double thrustPerKgFuel = header.getDouble();
+            double fuelConsumptionPerCycle = header.getDouble();
+            double deltaTime = header.getDouble();
+            double totalTime = header.getDouble();
+            double currentMass = header.getDouble();
+            double speed = header.getDouble();
+            double altitude = header.getDouble();
+            double horizontalDistance = header.getDouble();
+            double[] stageMasses = getArray(header, stageCount);
+            double[] fuelMasses = getArray(header, stageCount);
+            double[] initialFuelMasses = getArray(header, stageCount);
+            double[] stageThrusts = null;
+            double[] stageConsumption = null;
+            if ((flags & FLAG_STAGE_ENGINES) != 0) {
+                stageThrusts = getArray(header, stageCount);
+                stageConsumption = getArray(header, stageCount);
+            }
+            double[] stats = getArray(header, COLUMN_COUNT * STATS_PER_COLUMN);
+
+            long columnBytes = (long) sampleCount * Double.BYTES;
+            if (sampleCount < 0 || channel.size() < headerBytes + COLUMN_COUNT * columnBytes) {
+                throw new IOException("Truncated simulation file: " + file);
+            }
+            DoubleSeries[] columns = new DoubleSeries[COLUMN_COUNT];
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                int s = c * STATS_PER_COLUMN;
+                columns[c] = DoubleSeries.mapped(mapColumn(channel, headerBytes + c * columnBytes, sampleCount),
+                        sampleCount, stats[s], stats[s + 1], stats[s + 2]);
+            }
+
+            RocketModel restored = new RocketModel(null);
+            restored.setCycleDelay(cycleDelay);
+            restored.setTimeStep(deltaTime);
+            restored.setFuelConsumptionPerCycle(fuelConsumptionPerCycle);
+            restored.setRocketParameters(payloadMass, stageMasses, initialFuelMasses, thrustPerKgFuel, stageThrusts,
+                    stageConsumption);
+            restored.restoreHistory(columns[0], columns[1], columns[2], columns[3]);
+            restored.restoreState(totalTime, currentMass, speed, altitude, horizontalDistance, remainingStages,
+                    fuelMasses);
+            target.moveFrom(restored);
+        }
+    }
+
+    private static int headerBytes(int stageCount, int flags) {
+        int stageArrays = (flags & FLAG_STAGE_ENGINES) != 0 ? 5 : 3;
+        return FIXED_HEADER_BYTES + (stageArrays * stageCount + COLUMN_COUNT * STATS_PER_COLUMN) * Double.BYTES;
+    }
+
+    private static double[] filled(double value, int length) {
+        double[] values = new double[length];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    private static void writeColumn(FileChannel channel, ByteBuffer buffer, SeriesView column, int count,
+                                    double[] stats, int statsOffset) throws IOException {
+        double min = 0;
+        double max = 0;
+        double sum = 0;
+        DoubleBuffer doubles = buffer.clear().asDoubleBuffer();
+        for (int i = 0; i < count; i++) {
+            double value = column.get(i);
+            if (i == 0) {
+                min = value;
+                max = value;
+            } else {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            sum += value;
+            doubles.put(value);
+            if (!doubles.hasRemaining()) {
+                flush(channel, buffer, doubles);
+            }
+        }
+        flush(channel, buffer, doubles);
+        stats[statsOffset] = min;
+        stats[statsOffset + 1] = max;
+        stats[statsOffset + 2] = sum;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, DoubleBuffer doubles) throws IOException {
+        buffer.clear();
+        buffer.limit(doubles.position() * Double.BYTES);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        doubles.clear();
+    }
+
+    private static DoubleBuffer[] mapColumn(FileChannel channel, long position, int count) throws IOException {
+        int segmentSize = 1 << DoubleSeries.MAPPED_SEGMENT_SHIFT;
+        DoubleBuffer[] segments = new DoubleBuffer[(count + segmentSize - 1) / segmentSize];
+        for (int i = 0; i < segments.length; i++) {
+            int length = Math.min(segmentSize, count - i * segmentSize);
+            long offset = position + (long) i * segmentSize * Double.BYTES;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) length * Double.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer();
+        }
+        return segments;
+    }
+
+    private static void putArray(ByteBuffer buffer, double[] values) {
+        for (double value : values) {
+            buffer.putDouble(value);
+        }
+    }
+
+    private static double[] getArray(ByteBuffer buffer, int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = buffer.getDouble();
+        }
+        return values;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,231 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs many RocketModels on a fixed pool of worker threads instead of one
+// thread per model. Each model keeps its own lifecycle: startSimulation,
+// pauseSimulation, resumeSimulation, stepSimulation and stopSimulation work
+// as before, but every iteration is a short task that reschedules itself
+// after the model's cycle delay. Paused models take no worker at all.
+public class SimulationEngine implements AutoCloseable {
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<RocketModel, Instance> instances = new ConcurrentHashMap<>();
+    private final Object finishLock = new Object();
+
+    public SimulationEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public SimulationEngine(int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Worker count must be positive: " + workers);
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(workers, r -> {
+            Thread thread = new Thread(r, "simulation-engine-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    // The model must not be running; it is started with startSimulation as usual.
+    public Instance add(RocketModel model) {
+        Instance instance = new Instance(this, model);
+        if (instances.putIfAbsent(model, instance) != null) {
+            throw new IllegalArgumentException("Model is already in this engine");
+        }
+        try {
+            model.setEngineInstance(instance);
+        } catch (IllegalStateException e) {
+            instances.remove(model);
+            throw e;
+        }
+        return instance;
+    }
+
+    // Stops the model and gives it back its own thread for later runs.
+    public void remove(RocketModel model) {
+        Instance instance = instances.remove(model);
+        if (instance == null) {
+            return;
+        }
+        model.stopSimulation();
+        instance.detached = true;
+        model.setEngineInstance(null);
+        signalFinished();
+    }
+
+    public List<RocketModel> getModels() {
+        return new ArrayList<>(instances.keySet());
+    }
+
+    public int size() {
+        return instances.size();
+    }
+
+    public int getWorkerCount() {
+        return executor.getCorePoolSize();
+    }
+
+    public int getRunningCount() {
+        int count = 0;
+        for (RocketModel model : instances.keySet()) {
+            if (model.isRunning()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void startAll(boolean resetRequired) {
+        for (RocketModel model : instances.keySet()) {
+            model.startSimulation(resetRequired);
+        }
+    }
+
+    public void pauseAll() {
+        for (RocketModel model : instances.keySet()) {
+            model.pauseSimulation();
+        }
+    }
+
+    public void resumeAll() {
+        for (RocketModel model : instances.keySet()) {
+            model.resumeSimulation();
+        }
+    }
+
+    public void stopAll() {
+        for (RocketModel model : instances.keySet()) {
+            model.stopSimulation();
+        }
+    }
+
+    // Returns false if some model was still running when the timeout expired.
+    public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (finishLock) {
+            while (getRunningCount() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(finishLock, remaining);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        for (RocketModel model : getModels()) {
+            remove(model);
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void signalFinished() {
+        synchronized (finishLock) {
+            finishLock.notifyAll();
+        }
+    }
+
+    // Scheduling state of one model. At most one task per model is queued or
+    // running at a time; wake() brings a delayed iteration forward.
+    public static final class Instance implements Runnable {
+        private final SimulationEngine engine;
+        private final RocketModel model;
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> delayed;
+        private volatile boolean detached = false;
+
+        private Instance(SimulationEngine engine, RocketModel model) {
+            this.engine = engine;
+            this.model = model;
+        }
+
+        public RocketModel getModel() {
+            return model;
+        }
+
+        public SimulationEngine getEngine() {
+            return engine;
+        }
+
+        void wake() {
+            if (detached) {
+                return;
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                submit();
+                return;
+            }
+            ScheduledFuture<?> future = delayed;
+            if (future != null && future.cancel(false)) {
+                submit();
+            }
+        }
+
+        // Blocks until an iteration in progress on another thread is done.
+        void awaitTick() {
+            synchronized (this) {
+                // run() holds this monitor for the whole iteration, so getting
+                // it is the barrier; there is nothing to do inside
+            }
+        }
+
+        @Override
+        public void run() {
+            long delay;
+            synchronized (this) {
+                delayed = null;
+                delay = detached ? RocketModel.FINISHED : model.advance();
+                try {
+                    if (delay > 0) {
+                        delayed = engine.executor.schedule(this, delay, TimeUnit.NANOSECONDS);
+                        return;
+                    }
+                    if (delay == 0) {
+                        engine.executor.execute(this);
+                        return;
+                    }
+                } catch (RejectedExecutionException e) {
+                    // the engine is shutting down
+                    delay = RocketModel.FINISHED;
+                }
+            }
+            scheduled.set(false);
+            if (delay == RocketModel.FINISHED) {
+                engine.signalFinished();
+            }
+            // a start, resume or step may have arrived while this task still looked scheduled
+            if (model.hasPendingWork()) {
+                wake();
+            }
+        }
+
+        private void submit() {
+            try {
+                engine.executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// Streaming JSON codec for RocketModel. Uses the same field names as the
+// reflective Gson output, so older files load unchanged, but history arrays
+// are written and read one value at a time straight from/into DoubleSeries.
+public final class SimulationJson {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private SimulationJson() {
+    }
+
+    public static void write(File file, RocketModel model, boolean includeHistory) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            write(writer, model, includeHistory);
+        }
+    }
+
+    public static void write(Writer writer, RocketModel model, boolean includeHistory) throws IOException {
+        RocketState state = model.readState(new RocketState());
+        JsonWriter out = new JsonWriter(writer);
+        out.beginObject();
+        out.name("payloadMass").value(model.getPayloadMass());
+        writeArray(out.name("stageMasses"), model.getStageMasses());
+        writeArray(out.name("fuelMasses"), state.getFuelMasses());
+        writeArray(out.name("initialFuelMasses"), model.getInitialFuelMasses());
+        out.name("thrustPerKgFuel").value(model.getThrustPerKgFuel());
+        out.name("currentMass").value(state.getCurrentMass());
+        out.name("speed").value(state.getSpeed());
+        out.name("altitude").value(state.getAltitude());
+        out.name("horizontalDistance").value(state.getHorizontalDistance());
+        out.name("remainingStages").value(state.getRemainingStages());
+        out.name("cycleDelay").value(model.getCycleDelay());
+        out.name("fuelConsumptionPerCycle").value(model.getFuelConsumptionPerCycle());
+        out.name("deltaTime").value(model.getDeltaTime());
+        if (model.getStageThrustPerKgFuel() != null) {
+            writeArray(out.name("stageThrustPerKgFuel"), model.getStageThrustPerKgFuel());
+        }
+        if (model.getStageFuelConsumption() != null) {
+            writeArray(out.name("stageFuelConsumption"), model.getStageFuelConsumption());
+        }
+        if (includeHistory) {
+            int count = state.getSampleCount();
+            writeSeries(out.name("timeData"), model.getTimeData(), count);
+            writeSeries(out.name("speedData"), model.getSpeedData(), count);
+            writeSeries(out.name("altitudeData"), model.getAltitudeData(), count);
+            writeSeries(out.name("massData"), model.getMassData(), count);
+        }
+        out.name("totalTime").value(state.getTotalTime());
+        out.endObject();
+        out.flush();
+    }
+
+    public static RocketModel read(File file) throws IOException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            return read(reader);
+        }
+    }
+
+    // Returns a detached model without a database; fields missing from the
+    // file keep their defaults.
+    public static RocketModel read(Reader reader) throws IOException {
+        RocketModel model = new RocketModel(null);
+        double payloadMass = 0;
+        double[] stageMasses = null;
+        double[] fuelMasses = null;
+        double[] initialFuelMasses = null;
+        double thrustPerKgFuel = 0;
+        double[] stageThrustPerKgFuel = null;
+        double[] stageFuelConsumption = null;
+        double currentMass = 0;
+        double speed = 0;
+        double altitude = 0;
+        double horizontalDistance = 0;
+        int remainingStages = -1;
+        int cycleDelay = model.getCycleDelay();
+        double fuelConsumptionPerCycle = model.getFuelConsumptionPerCycle();
+        double deltaTime = Double.NaN;
+        double totalTime = 0;
+        DoubleSeries time = new DoubleSeries();
+        DoubleSeries speedSeries = new DoubleSeries();
+        DoubleSeries altitudeSeries = new DoubleSeries();
+        DoubleSeries mass = new DoubleSeries();
+
+        JsonReader in = new JsonReader(reader);
+        try {
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "payloadMass":
+                        payloadMass = in.nextDouble();
+                        break;
+                    case "stageMasses":
+                        stageMasses = readArray(in);
+                        break;
+                    case "fuelMasses":
+                        fuelMasses = readArray(in);
+                        break;
+                    case "initialFuelMasses":
+                        initialFuelMasses = readArray(in);
+                        break;
+                    case "thrustPerKgFuel":
+                        thrustPerKgFuel = in.nextDouble();
+                        break;
+                    case "stageThrustPerKgFuel":
+                        stageThrustPerKgFuel = readArray(in);
+                        break;
+                    case "stageFuelConsumption":
+                        stageFuelConsumption = readArray(in);
+                        break;
+                    case "currentMass":
+                        currentMass = in.nextDouble();
+                        break;
+                    case "speed":
+                        speed = in.nextDouble();
+                        break;
+                    case "altitude":
+                        altitude = in.nextDouble();
+                        break;
+                    case "horizontalDistance":
+                        horizontalDistance = in.nextDouble();
+                        break;
+                    case "remainingStages":
+                        remainingStages = in.nextInt();
+                        break;
+                    case "cycleDelay":
+                        cycleDelay = in.nextInt();
+                        break;
+                    case "fuelConsumptionPerCycle":
+                        fuelConsumptionPerCycle = in.nextDouble();
+                        break;
+                    case "deltaTime":
+                        deltaTime = in.nextDouble();
+                        break;
+                    case "totalTime":
+                        totalTime = in.nextDouble();
+                        break;
+                    case "timeData":
+                        readSeries(in, time);
+                        break;
+                    case "speedData":
+                        readSeries(in, speedSeries);
+                        break;
+                    case "altitudeData":
+                        readSeries(in, altitudeSeries);
+                        break;
+                    case "massData":
+                        readSeries(in, mass);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed simulation JSON: " + e.getMessage(), e);
+        }
+
+        if (stageMasses == null || (fuelMasses == null && initialFuelMasses == null)) {
+            throw new IOException("Simulation JSON has no stage or fuel masses");
+        }
+        if ((stageThrustPerKgFuel != null && stageThrustPerKgFuel.length != stageMasses.length)
+                || (stageFuelConsumption != null && stageFuelConsumption.length != stageMasses.length)) {
+            throw new IOException("Simulation JSON has per-stage engines for a different number of stages");
+        }
+        if (initialFuelMasses == null) {
+            initialFuelMasses = fuelMasses.clone();
+        }
+        if (fuelMasses == null) {
+            fuelMasses = initialFuelMasses.clone();
+        }
+
+        model.setCycleDelay(cycleDelay);
+        if (!Double.isNaN(deltaTime)) {
+            model.setTimeStep(deltaTime);
+        }
+        model.setFuelConsumptionPerCycle(fuelConsumptionPerCycle);
+        model.setRocketParameters(payloadMass, stageMasses, initialFuelMasses.clone(), thrustPerKgFuel,
+                stageThrustPerKgFuel, stageFuelConsumption);
+        model.restoreHistory(time, speedSeries, altitudeSeries, mass);
+        model.restoreState(totalTime, currentMass, speed, altitude, horizontalDistance,
+                remainingStages < 0 ? stageMasses.length : remainingStages, fuelMasses);
+        return model;
+    }
+
+    private static void writeArray(JsonWriter out, double[] values) throws IOException {
+        if (values == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (double value : values) {
+            out.value(value);
+        }
+        out.endArray();
+    }
+
+    private static void writeSeries(JsonWriter out, SeriesView series, int count) throws IOException {
+        out.beginArray();
+        int n = Math.min(count, series.size());
+        for (int i = 0; i < n; i++) {
+            out.value(series.get(i));
+        }
+        out.endArray();
+    }
+
+    private static double[] readArray(JsonReader in) throws IOException {
+        DoubleSeries values = new DoubleSeries();
+        readSeries(in, values);
+        return values.toArray();
+    }
+
+    private static void readSeries(JsonReader in, DoubleSeries into) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            into.add(in.nextDouble());
+        }
+        in.endArray();
+    }
+}
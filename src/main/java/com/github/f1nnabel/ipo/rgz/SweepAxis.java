@@ -0,0 +1,63 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.util.function.BiFunction;
+
+public class SweepAxis {
+    private final String name;
+    private final double[] values;
+    private final BiFunction<FlightParameters, Double, FlightParameters> apply;
+
+    public SweepAxis(String name, double[] values, BiFunction<FlightParameters, Double, FlightParameters> apply) {
+        this.name = name;
+        this.values = values.clone();
+        this.apply = apply;
+    }
+
+    public static SweepAxis payloadMass(double... values) {
+        return new SweepAxis("payloadMass", values, FlightParameters::withPayloadMass);
+    }
+
+    public static SweepAxis stageMass(int stage, double... values) {
+        return new SweepAxis("stageMass" + (stage + 1), values, (p, v) -> p.withStageMass(stage, v));
+    }
+
+    public static SweepAxis fuelMass(int stage, double... values) {
+        return new SweepAxis("fuelMass" + (stage + 1), values, (p, v) -> p.withFuelMass(stage, v));
+    }
+
+    public static SweepAxis thrustPerKgFuel(double... values) {
+        return new SweepAxis("thrustPerKgFuel", values, FlightParameters::withThrustPerKgFuel);
+    }
+
+    public static SweepAxis stageThrustPerKgFuel(int stage, double... values) {
+        return new SweepAxis("thrustPerKgFuel" + (stage + 1), values, (p, v) -> p.withStageThrustPerKgFuel(stage, v));
+    }
+
+    public static SweepAxis stageFuelConsumption(int stage, double... values) {
+        return new SweepAxis("fuelConsumptionPerCycle" + (stage + 1), values, (p, v) -> p.withStageFuelConsumption(stage, v));
+    }
+
+    public static SweepAxis cycleDelay(double... values) {
+        return new SweepAxis("cycleDelay", values, (p, v) -> p.withCycleDelay((int) Math.round(v)));
+    }
+
+    public static SweepAxis fuelConsumptionPerCycle(double... values) {
+        return new SweepAxis("fuelConsumptionPerCycle", values, FlightParameters::withFuelConsumptionPerCycle);
+    }
+
+    public static double[] range(double from, double to, int count) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = count == 1 ? from : from + (to - from) * i / (count - 1);
+        }
+        return values;
+    }
+
+    public String getName() { return name; }
+    public int size() { return values.length; }
+    public double getValue(int index) { return values[index]; }
+
+    public FlightParameters apply(FlightParameters parameters, int index) {
+        return apply.apply(parameters, values[index]);
+    }
+}
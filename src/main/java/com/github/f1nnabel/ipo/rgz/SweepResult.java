@@ -0,0 +1,81 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.io.*;
+import java.util.Locale;
+import java.util.function.ToDoubleFunction;
+
+public class SweepResult {
+    public enum Metric {
+        APOGEE(FlightResult::getApogee),
+        MAX_SPEED(FlightResult::getMaxSpeed),
+        BURN_TIME(FlightResult::getBurnTime),
+        FLIGHT_TIME(FlightResult::getSimulatedTime);
+
+        private final ToDoubleFunction<FlightResult> extractor;
+
+        Metric(ToDoubleFunction<FlightResult> extractor) {
+            this.extractor = extractor;
+        }
+
+        public double of(FlightResult result) {
+            return extractor.applyAsDouble(result);
+        }
+    }
+
+    private final SweepAxis rows;
+    private final SweepAxis columns;
+    private final FlightResult[][] results;
+
+    public SweepResult(SweepAxis rows, SweepAxis columns, FlightResult[][] results) {
+        this.rows = rows;
+        this.columns = columns;
+        this.results = results;
+    }
+
+    public SweepAxis getRows() { return rows; }
+    public SweepAxis getColumns() { return columns; }
+
+    public FlightResult get(int row, int column) {
+        return results[row][column];
+    }
+
+    public double[][] matrix(Metric metric) {
+        double[][] matrix = new double[rows.size()][columns.size()];
+        for (int r = 0; r < rows.size(); r++) {
+            for (int c = 0; c < columns.size(); c++) {
+                matrix[r][c] = metric.of(results[r][c]);
+            }
+        }
+        return matrix;
+    }
+
+    public void writeCsv(Writer writer, Metric metric) throws IOException {
+        double[][] matrix = matrix(metric);
+        PrintWriter out = new PrintWriter(writer);
+        out.print(rows.getName() + "\\" + columns.getName());
+        for (int c = 0; c < columns.size(); c++) {
+            out.print("," + format(columns.getValue(c)));
+        }
+        out.println();
+        for (int r = 0; r < rows.size(); r++) {
+            out.print(format(rows.getValue(r)));
+            for (int c = 0; c < columns.size(); c++) {
+                out.print("," + format(matrix[r][c]));
+            }
+            out.println();
+        }
+        out.flush();
+    }
+
+    public void writeCsv(File file, Metric metric) {
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            writeCsv(writer, metric);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6g", value);
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Snapshot of the model state at one tick. A frame is filled once by the
+// simulation thread and is read-only after it is published. Frames are
+// reference counted and reused by TelemetryFramePool: an observer that keeps
+// a frame past onFrame() must retain() it and release() it when done.
+public final class TelemetryFrame {
+    private final AtomicInteger refCount = new AtomicInteger();
+
+    private long sequence;
+    private double simTime;
+    private double currentMass;
+    private double speed;
+    private double altitude;
+    private double horizontalDistance;
+    private int remainingStages;
+    private double[] fuelMasses = new double[0];
+    private double[] initialFuelMasses = new double[0];
+
+    TelemetryFrame() {
+    }
+
+    boolean tryClaim() {
+        return refCount.compareAndSet(0, 1);
+    }
+
+    void fill(long sequence, double simTime, double currentMass, double speed, double altitude,
+              double horizontalDistance, int remainingStages, double[] fuelMasses, double[] initialFuelMasses) {
+        this.sequence = sequence;
+        this.simTime = simTime;
+        this.currentMass = currentMass;
+        this.speed = speed;
+        this.altitude = altitude;
+        this.horizontalDistance = horizontalDistance;
+        this.remainingStages = remainingStages;
+        if (this.fuelMasses.length != fuelMasses.length) {
+            this.fuelMasses = new double[fuelMasses.length];
+        }
+        if (this.initialFuelMasses.length != initialFuelMasses.length) {
+            this.initialFuelMasses = new double[initialFuelMasses.length];
+        }
+        System.arraycopy(fuelMasses, 0, this.fuelMasses, 0, fuelMasses.length);
+        System.arraycopy(initialFuelMasses, 0, this.initialFuelMasses, 0, initialFuelMasses.length);
+    }
+
+    public TelemetryFrame retain() {
+        while (true) {
+            int count = refCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("Frame " + sequence + " has already been released");
+            }
+            if (refCount.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    public void release() {
+        if (refCount.decrementAndGet() < 0) {
+            refCount.incrementAndGet();
+            throw new IllegalStateException("Frame " + sequence + " released more times than retained");
+        }
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public double getSimTime() {
+        return simTime;
+    }
+
+    public double getCurrentMass() {
+        return currentMass;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public double getAltitude() {
+        return altitude;
+    }
+
+    public double getHorizontalDistance() {
+        return horizontalDistance;
+    }
+
+    public int getRemainingStages() {
+        return remainingStages;
+    }
+
+    public int getStageCount() {
+        return fuelMasses.length;
+    }
+
+    public double getFuelMass(int stage) {
+        return fuelMasses[stage];
+    }
+
+    public double getInitialFuelMass(int stage) {
+        return initialFuelMasses[stage];
+    }
+
+    public int getFuelPercentage(int stage) {
+        return initialFuelMasses[stage] > 0 ? (int) (fuelMasses[stage] / initialFuelMasses[stage] * 100) : 0;
+    }
+
+    public double[] copyFuelMasses() {
+        return fuelMasses.clone();
+    }
+
+    public double[] copyInitialFuelMasses() {
+        return initialFuelMasses.clone();
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.f1nnabel.ipo.rgz;
+
+// Fixed set of frames reused by the publishing thread. A frame is free when its
+// reference count is zero; if every frame is still held by slow observers a
+// fresh one is allocated instead of waiting.
+class TelemetryFramePool {
+    public static final int DEFAULT_SIZE = 16;
+
+    private final TelemetryFrame[] frames;
+    private int cursor = 0;
+
+    public TelemetryFramePool() {
+        this(DEFAULT_SIZE);
+    }
+
+    public TelemetryFramePool(int size) {
+        frames = new TelemetryFrame[size];
+        for (int i = 0; i < size; i++) {
+            frames[i] = new TelemetryFrame();
+        }
+    }
+
+    public TelemetryFrame acquire() {
+        int start = cursor;
+        for (int i = 0; i < frames.length; i++) {
+            int index = (start + i) % frames.length;
+            if (frames[index].tryClaim()) {
+                cursor = index + 1;
+                return frames[index];
+            }
+        }
+        TelemetryFrame frame = new TelemetryFrame();
+        frame.tryClaim();
+        return frame;
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.f1nnabel.ipo.rgz;
+
+// Second version of the observer contract. Updates arrive as TelemetryFrame
+// instead of separate arguments; RocketObserver is still accepted through
+// RocketObserverAdapter.
+public interface TelemetryObserver {
+    int UI_UPDATE_RATE = 60;
+
+    void onFrame(TelemetryFrame frame);
+
+    void onStageSeparation(int stageNumber);
+
+    // Maximum number of frames per second, 0 for every frame.
+    default int getMaxUpdateRate() {
+        return 0;
+    }
+}
@@ -0,0 +1,316 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TelemetryWriter implements AutoCloseable {
+
+    public enum BackpressurePolicy {
+        DROP,
+        BLOCK
+    }
+
+    private static final String INSERT_TELEMETRY = "INSERT INTO telemetry (run_id, tick, time, currentMass, speed, altitude, horizontalDistance, remainingStages, fuelMasses) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?);";
+    private static final String INSERT_RUN = "INSERT INTO runs (settings_id, delta_time) VALUES (?, ?);";
+    private static final Row END_OF_STREAM = new Row();
+    private static final long OFFER_RETRY_MILLIS = 100;
+    private static final long CLOSE_TIMEOUT_MILLIS = 10000;
+
+    private final Connection conn;
+    private final PreparedStatement insertStatement;
+    private final PreparedStatement insertRunStatement;
+    private final BlockingQueue<Row> queue;
+    // Rows the worker has written, reused by submit(); never more than the
+    // queue and one batch hold at a time.
+    private final BlockingQueue<Row> freeRows;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final BackpressurePolicy policy;
+    private final Thread worker;
+
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsDropped = new AtomicLong();
+
+    private volatile int settingsId = -1;
+    private volatile int runGeneration = 0;
+    private volatile boolean closed = false;
+    private int lastSettingsId = -1;
+
+    // Worker-only: the run rows are currently written to.
+    private int writtenGeneration = -1;
+    private long runId = -1;
+    private long nextTick = 0;
+
+    public TelemetryWriter(String url, int capacity, int batchSize, long flushIntervalMillis, BackpressurePolicy policy) throws SQLException {
+        this.conn = DriverManager.getConnection(url);
+        DatabaseManager.configure(conn);
+        this.conn.setAutoCommit(false);
+        this.insertStatement = conn.prepareStatement(INSERT_TELEMETRY);
+        this.insertRunStatement = conn.prepareStatement(INSERT_RUN);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.freeRows = new ArrayBlockingQueue<>(capacity + batchSize);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.policy = policy;
+        this.worker = new Thread(this::drainLoop, "telemetry-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public void submit(RocketModel model) {
+        if (closed) {
+            rowsDropped.incrementAndGet();
+            return;
+        }
+        Row row = freeRows.poll();
+        if (row == null) {
+            row = new Row();
+        }
+        row.runGeneration = runGeneration;
+        row.time = model.getTotalTime();
+        row.deltaTime = model.getDeltaTime();
+        row.settingsId = settingsId;
+        row.currentMass = model.getCurrentMass();
+        row.speed = model.getSpeed();
+        row.altitude = model.getAltitude();
+        row.horizontalDistance = model.getHorizontalDistance();
+        row.remainingStages = model.getRemainingStages();
+        double[] fuelMasses = model.getFuelMasses();
+        if (row.fuelMasses == null || row.fuelMasses.length != fuelMasses.length) {
+            row.fuelMasses = new double[fuelMasses.length];
+        }
+        System.arraycopy(fuelMasses, 0, row.fuelMasses, 0, fuelMasses.length);
+
+        if (policy == BackpressurePolicy.BLOCK) {
+            try {
+                // timed, so a producer is not parked forever on a writer that has stopped
+                while (!queue.offer(row, OFFER_RETRY_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        rowsDropped.incrementAndGet();
+                        freeRows.offer(row);
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rowsDropped.incrementAndGet();
+                freeRows.offer(row);
+            }
+        } else if (!queue.offer(row)) {
+            rowsDropped.incrementAndGet();
+            freeRows.offer(row);
+        }
+    }
+
+    public void setSettingsId(int settingsId) {
+        this.settingsId = settingsId;
+    }
+
+    // Rows submitted after this call go to a new run; the run row itself is
+    // only created once its first sample is written.
+    public void beginRun() {
+        runGeneration++;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    public long getRowsDropped() {
+        return rowsDropped.get();
+    }
+
+    public int getPendingRows() {
+        return queue.size();
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // a worker that has died cannot take the marker; give the rest time to drain
+            if (!worker.isAlive() || !queue.offer(END_OF_STREAM, CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                worker.interrupt();
+            } else {
+                worker.join(CLOSE_TIMEOUT_MILLIS);
+                if (worker.isAlive()) {
+                    worker.interrupt();
+                }
+            }
+            worker.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        List<Row> batch = new ArrayList<>(batchSize);
+        boolean endOfStream = false;
+        try {
+            while (!endOfStream) {
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Row row = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (row == null) {
+                        break;
+                    }
+                    int drained = batch.size();
+                    batch.add(row);
+                    queue.drainTo(batch, batchSize - batch.size());
+                    // only the rows just taken can be the marker
+                    for (int i = drained; i < batch.size(); i++) {
+                        if (batch.get(i) == END_OF_STREAM) {
+                            batch.remove(i);
+                            endOfStream = true;
+                            break;
+                        }
+                    }
+                    if (endOfStream) {
+                        break;
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                    for (Row row : batch) {
+                        freeRows.offer(row);
+                    }
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closed = true;
+            rowsDropped.addAndGet(batch.size() + queue.size());
+            queue.clear();
+            try {
+                insertStatement.close();
+                insertRunStatement.close();
+                conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void flush(List<Row> batch) {
+        int generation = writtenGeneration;
+        long run = runId;
+        long tick = nextTick;
+        try {
+            for (Row row : batch) {
+                if (row.runGeneration != generation) {
+                    run = insertRun(row);
+                    generation = row.runGeneration;
+                    tick = 0;
+                }
+                insertStatement.setLong(1, run);
+                insertStatement.setLong(2, tick++);
+                insertStatement.setDouble(3, row.time);
+                insertStatement.setDouble(4, row.currentMass);
+                insertStatement.setDouble(5, row.speed);
+                insertStatement.setDouble(6, row.altitude);
+                insertStatement.setDouble(7, row.horizontalDistance);
+                insertStatement.setInt(8, row.remainingStages);
+                insertStatement.setBytes(9, packDoubles(row.fuelMasses));
+                insertStatement.addBatch();
+            }
+            insertStatement.executeBatch();
+            conn.commit();
+            writtenGeneration = generation;
+            runId = run;
+            nextTick = tick;
+            rowsWritten.addAndGet(batch.size());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            rowsDropped.addAndGet(batch.size());
+            try {
+                insertStatement.clearBatch();
+                conn.rollback();
+            } catch (SQLException rollbackError) {
+                rollbackError.printStackTrace();
+            }
+        }
+    }
+
+    private long insertRun(Row row) throws SQLException {
+        int rowSettingsId = row.settingsId >= 0 ? row.settingsId : getLastSettingsId();
+        if (rowSettingsId >= 0) {
+            insertRunStatement.setInt(1, rowSettingsId);
+        } else {
+            insertRunStatement.setNull(1, Types.INTEGER);
+        }
+        insertRunStatement.setDouble(2, row.deltaTime);
+        insertRunStatement.executeUpdate();
+        try (Statement stmt = conn.createStatement();
+             ResultSet keys = stmt.executeQuery("SELECT last_insert_rowid();")) {
+            keys.next();
+            return keys.getLong(1);
+        }
+    }
+
+    private int getLastSettingsId() throws SQLException {
+        if (lastSettingsId >= 0) {
+            return lastSettingsId;
+        }
+        String query = "SELECT id FROM settings ORDER BY id DESC LIMIT 1;";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            if (rs.next()) {
+                lastSettingsId = rs.getInt("id");
+            }
+            return lastSettingsId;
+        }
+    }
+
+    static byte[] packDoubles(double[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (double value : values) {
+            buffer.putDouble(value);
+        }
+        return buffer.array();
+    }
+
+    static double[] unpackDoubles(byte[] bytes) {
+        if (bytes == null) {
+            return new double[0];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        double[] values = new double[bytes.length / Double.BYTES];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getDouble();
+        }
+        return values;
+    }
+
+    private static final class Row {
+        int runGeneration;
+        double time;
+        double deltaTime;
+        int settingsId;
+        double currentMass;
+        double speed;
+        double altitude;
+        double horizontalDistance;
+        int remainingStages;
+        double[] fuelMasses;
+    }
+}
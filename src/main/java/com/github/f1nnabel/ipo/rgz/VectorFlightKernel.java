@@ -0,0 +1,81 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD path of FlightKernel.stepAll(): one vector of lanes is a group of
+// rockets. Finished lanes are masked out, lanes whose stage runs dry are
+// separated one by one afterwards, and the tail shorter than a vector goes
+// through the scalar step. Only referenced when the incubator module is
+// present, so the rest of the code loads without it. Plain multiply and add
+// are used instead of fma so results match the scalar path bit for bit.
+final class VectorFlightKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONG_SPECIES = VectorSpecies.of(long.class, SPECIES.vectorShape());
+
+    private VectorFlightKernel() {
+    }
+
+    static int stepAll(FlightKernel k, int count) {
+        int bound = SPECIES.loopBound(count);
+        int active = 0;
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector earthRadius = DoubleVector.broadcast(SPECIES, RocketModel.EARTH_RADIUS);
+        DoubleVector gm = DoubleVector.broadcast(SPECIES, FlightKernel.GM);
+        DoubleVector maxTime = DoubleVector.broadcast(SPECIES, k.maxSimulatedTime);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector h = DoubleVector.fromArray(SPECIES, k.altitude, i);
+            DoubleVector v = DoubleVector.fromArray(SPECIES, k.speed, i);
+            DoubleVector t = DoubleVector.fromArray(SPECIES, k.time, i);
+            VectorMask<Double> burning = DoubleVector.fromArray(SPECIES, k.burning, i).compare(VectorOperators.GT, 0);
+            VectorMask<Double> live = burning
+                    .or(h.compare(VectorOperators.GT, 0))
+                    .or(v.compare(VectorOperators.GT, 0))
+                    .andNot(t.compare(VectorOperators.GE, maxTime));
+            if (!live.anyTrue()) {
+                continue;
+            }
+            active += live.trueCount();
+
+            DoubleVector fuel = DoubleVector.fromArray(SPECIES, k.fuel, i)
+                    .sub(DoubleVector.fromArray(SPECIES, k.burnPerStep, i));
+            VectorMask<Double> separating = burning.and(live).and(fuel.compare(VectorOperators.LE, 0));
+            VectorMask<Double> moving = live.andNot(separating);
+
+            DoubleVector m = DoubleVector.fromArray(SPECIES, k.massBelow, i)
+                    .add(DoubleVector.fromArray(SPECIES, k.dryMass, i).add(fuel))
+                    .blend(DoubleVector.fromArray(SPECIES, k.payloadMass, i), burning.not());
+            DoubleVector r = earthRadius.add(h);
+            DoubleVector gravity = gm.div(r.mul(r));
+            DoubleVector acceleration = DoubleVector.fromArray(SPECIES, k.thrust, i).div(m).sub(gravity)
+                    .blend(gravity.neg(), burning.not());
+            DoubleVector dt = DoubleVector.fromArray(SPECIES, k.deltaTime, i);
+            DoubleVector nextV = v.add(acceleration.mul(dt));
+            DoubleVector nextH = h.add(nextV.mul(dt));
+            // a burning rocket sits on the pad while thrust is too weak; a coasting one lands
+            VectorMask<Double> grounded = burning.and(nextH.compare(VectorOperators.LT, 0))
+                    .or(burning.not().and(nextH.compare(VectorOperators.LE, 0)));
+            nextH = nextH.blend(zero, grounded);
+            nextV = nextV.blend(zero, grounded);
+
+            nextH.intoArray(k.altitude, i, moving);
+            nextV.intoArray(k.speed, i, moving);
+            t.add(dt).intoArray(k.time, i, moving);
+            m.intoArray(k.mass, i, moving);
+            fuel.intoArray(k.fuel, i, moving.and(burning));
+            DoubleVector.fromArray(SPECIES, k.apogee, i).max(nextH).intoArray(k.apogee, i, moving);
+            DoubleVector.fromArray(SPECIES, k.maxSpeed, i).max(nextV).intoArray(k.maxSpeed, i, moving);
+            LongVector.fromArray(LONG_SPECIES, k.steps, i).add(1).intoArray(k.steps, i, live.cast(LONG_SPECIES));
+
+            long separated = separating.toLong();
+            while (separated != 0) {
+                k.separate(i + Long.numberOfTrailingZeros(separated));
+                separated &= separated - 1;
+            }
+        }
+        return active + k.stepScalar(bound, count);
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AutosaveManagerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static RocketModel newModel() {
+        RocketModel model = new RocketModel(null);
+        model.setRocketParameters(10, new double[]{5, 5, 5}, new double[]{3, 3, 3}, 3500);
+        return model;
+    }
+
+    private static void step(RocketModel model, int steps) {
+        for (int i = 0; i < steps; i++) {
+            model.step();
+        }
+    }
+
+    private static void assertSameFlight(RocketModel expected, RocketModel actual) {
+        assertEquals(expected.getTotalTime(), actual.getTotalTime(), 0);
+        assertEquals(expected.getCurrentMass(), actual.getCurrentMass(), 0);
+        assertEquals(expected.getAltitude(), actual.getAltitude(), 0);
+        assertEquals(expected.getRemainingStages(), actual.getRemainingStages());
+        assertArrayEquals(expected.getFuelMasses(), actual.getFuelMasses(), 0);
+        assertArrayEquals(expected.getTimeData().toArray(), actual.getTimeData().toArray(), 0);
+        assertArrayEquals(expected.getAltitudeData().toArray(), actual.getAltitudeData().toArray(), 0);
+    }
+
+    @Test
+    public void closeKeepsTheLastCheckpoint() throws IOException {
+        File file = folder.newFile("autosave.json");
+        RocketModel model = newModel();
+        AutosaveManager manager = new AutosaveManager(file, 0);
+        step(model, 200);
+        manager.requestSave(model);
+        step(model, 300);
+        manager.saveNow(model);
+        manager.close();
+
+        RocketModel recovered = new RocketModel(null);
+        AutosaveManager.recover(file, recovered);
+        assertSameFlight(model, recovered);
+    }
+
+    @Test
+    public void resetStartsANewJournal() throws IOException {
+        File file = folder.newFile("autosave.json");
+        RocketModel model = newModel();
+        AutosaveManager manager = new AutosaveManager(file, 0);
+        step(model, 300);
+        manager.saveNow(model);
+        // the second run grows past the first one before or after that checkpoint is written
+        model.resetSimulationVariables();
+        step(model, 600);
+        manager.saveNow(model);
+        manager.close();
+
+        RocketModel recovered = new RocketModel(null);
+        AutosaveManager.recover(file, recovered);
+        assertSameFlight(model, recovered);
+        assertTrue(recovered.getTimeData().size() > 300);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        assertFalse(new File(AutosaveManager.journalFileFor(file).getPath() + ".tmp").exists());
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DatabaseMigrationTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Connection conn;
+
+    @Before
+    public void open() throws Exception {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + folder.newFile("simulation.db").getAbsolutePath());
+    }
+
+    @After
+    public void close() throws SQLException {
+        conn.close();
+    }
+
+    // The settings/statistics layout the application shipped with, user_version 0.
+    private void createBaselineSchema() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE settings (id INTEGER PRIMARY KEY AUTOINCREMENT, payloadMass REAL,"
+                    + " stageMasses TEXT, fuelMasses TEXT, thrustPerKgFuel REAL, cycleDelay INTEGER,"
+                    + " fuelConsumptionPerCycle REAL);");
+            stmt.execute("CREATE TABLE statistics (id INTEGER, settings_id INTEGER, currentMass REAL, speed REAL,"
+                    + " altitude REAL, horizontalDistance REAL, remainingStages INTEGER, fuelMasses TEXT,"
+                    + " timeStamp DATETIME DEFAULT CURRENT_TIMESTAMP, FOREIGN KEY(settings_id) REFERENCES settings(id));");
+            stmt.execute("INSERT INTO settings (payloadMass, stageMasses, fuelMasses, thrustPerKgFuel, cycleDelay,"
+                    + " fuelConsumptionPerCycle) VALUES (10, '5.0,4.0,3.0', '3.0,3.0,3.0', 3500, 10, 0.01);");
+            stmt.execute("INSERT INTO settings (payloadMass, stageMasses, fuelMasses, thrustPerKgFuel, cycleDelay,"
+                    + " fuelConsumptionPerCycle) VALUES (20, '8.0,6.0', '4.0,2.5', 3000, 15, 0.02);");
+            // ids are round(totalTime * 10); the second run repeats id 1
+            stmt.execute("INSERT INTO statistics (id, settings_id, currentMass, speed, altitude, horizontalDistance,"
+                    + " remainingStages, fuelMasses, timeStamp) VALUES"
+                    + " (1, 1, 30.9, 1.5, 0.1, 0, 3, '3.0,3.0,2.99', '2024-03-01 10:00:00'),"
+                    + " (2, 1, 30.8, 3.1, 0.4, 0, 3, '3.0,3.0,2.98', '2024-03-01 10:00:00'),"
+                    + " (1, 2, 40.4, 1.2, 0.1, 0, 2, '4.0,2.48', '2024-03-02 11:30:00');");
+        }
+    }
+
+    private int userVersion() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version;")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private boolean tableExists(String table) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = '" + table + "';")) {
+            return rs.next();
+        }
+    }
+
+    @Test
+    public void baselineDatabaseMigratesToTheCurrentSchema() throws SQLException {
+        createBaselineSchema();
+        assertEquals(0, userVersion());
+        DatabaseManager.upgradeSchema(conn);
+        assertEquals(3, userVersion());
+        assertFalse(tableExists("statistics"));
+
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT settings_id, stage, stageMass, fuelMass, thrustPerKgFuel"
+                    + " FROM settings_stages ORDER BY settings_id, stage;")) {
+                double[][] expected = {{1, 0, 5, 3}, {1, 1, 4, 3}, {1, 2, 3, 3}, {2, 0, 8, 4}, {2, 1, 6, 2.5}};
+                for (double[] row : expected) {
+                    assertTrue(rs.next());
+                    assertArrayEquals(row, new double[]{rs.getInt(1), rs.getInt(2), rs.getDouble(3), rs.getDouble(4)}, 0);
+                    rs.getDouble(5);
+                    assertTrue(rs.wasNull());
+                }
+                assertFalse(rs.next());
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM settings WHERE stageMasses IS NOT NULL"
+                    + " OR fuelMasses IS NOT NULL;")) {
+                rs.next();
+                assertEquals(0, rs.getInt(1));
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT id, settings_id, started_at FROM runs ORDER BY id;")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt("settings_id"));
+                assertEquals("2024-03-01 10:00:00", rs.getString("started_at"));
+                assertTrue(rs.next());
+                assertEquals(2, rs.getInt("settings_id"));
+                assertFalse(rs.next());
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT r.settings_id, t.tick, t.time, t.altitude, t.remainingStages,"
+                    + " t.fuelMasses FROM telemetry t JOIN runs r ON r.id = t.run_id ORDER BY r.id, t.tick;")) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getLong("tick"));
+                assertEquals(0.1, rs.getDouble("time"), 0);
+                assertArrayEquals(new double[]{3, 3, 2.99}, TelemetryWriter.unpackDoubles(rs.getBytes("fuelMasses")), 0);
+                assertTrue(rs.next());
+                assertEquals(1, rs.getLong("tick"));
+                assertEquals(0.2, rs.getDouble("time"), 0);
+                assertEquals(0.4, rs.getDouble("altitude"), 0);
+                assertTrue(rs.next());
+                assertEquals(2, rs.getInt("settings_id"));
+                assertEquals(0, rs.getLong("tick"));
+                assertEquals(2, rs.getInt("remainingStages"));
+                assertArrayEquals(new double[]{4, 2.48}, TelemetryWriter.unpackDoubles(rs.getBytes("fuelMasses")), 0);
+                assertFalse(rs.next());
+            }
+        }
+    }
+
+    @Test
+    public void upgradingTwiceChangesNothing() throws SQLException {
+        createBaselineSchema();
+        DatabaseManager.upgradeSchema(conn);
+        DatabaseManager.upgradeSchema(conn);
+        assertEquals(DatabaseManager.SCHEMA_VERSION, userVersion());
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT (SELECT count(*) FROM settings_stages),"
+                     + " (SELECT count(*) FROM runs), (SELECT count(*) FROM telemetry);")) {
+            rs.next();
+            assertEquals(5, rs.getInt(1));
+            assertEquals(2, rs.getInt(2));
+            assertEquals(3, rs.getInt(3));
+        }
+    }
+
+    @Test
+    public void emptyDatabaseStartsAtTheCurrentSchema() throws SQLException {
+        DatabaseManager.upgradeSchema(conn);
+        assertEquals(DatabaseManager.SCHEMA_VERSION, userVersion());
+        assertTrue(tableExists("settings_stages"));
+        assertTrue(tableExists("telemetry"));
+        assertFalse(tableExists("statistics"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+public class DoubleSeriesSpillTest {
+    private static final int VALUES = 100000;
+
+    private static int openSpillFiles() throws IOException {
+        File[] fds = new File("/proc/self/fd").listFiles();
+        assumeTrue(fds != null);
+        int open = 0;
+        for (File fd : fds) {
+            try {
+                if (Files.readSymbolicLink(fd.toPath()).toString().contains("rocket-history")) {
+                    open++;
+                }
+            } catch (IOException e) {
+                // the descriptor of the directory listing itself is gone by now
+            }
+        }
+        return open;
+    }
+
+    private static DoubleSeries spilledSeries() {
+        DoubleSeries series = new DoubleSeries();
+        series.setResidentLimit(1);
+        for (int i = 0; i < VALUES; i++) {
+            series.add(i * 0.5);
+        }
+        return series;
+    }
+
+    private static void assertValues(SeriesView series, int size) {
+        assertEquals(size, series.size());
+        for (int i = 0; i < size; i++) {
+            assertEquals(i * 0.5, series.get(i), 0);
+        }
+    }
+
+    @Test
+    public void clearClosesTheSpillFile() throws IOException {
+        int before = openSpillFiles();
+        DoubleSeries series = spilledSeries();
+        assertEquals(before + 1, openSpillFiles());
+        assertValues(series, VALUES);
+
+        series.clear();
+        assertEquals(before, openSpillFiles());
+        assertEquals(0, series.size());
+    }
+
+    @Test
+    public void closedSeriesStaysReadableAndCanGrow() throws IOException {
+        int before = openSpillFiles();
+        DoubleSeries series = spilledSeries();
+        DoubleSeries copy = series.copy();
+        SeriesView view = series.view();
+        series.close();
+        assertEquals(before, openSpillFiles());
+        assertValues(view, VALUES);
+        assertValues(copy, VALUES);
+
+        for (int i = VALUES; i < 2 * VALUES; i++) {
+            series.add(i * 0.5);
+        }
+        assertValues(series, 2 * VALUES);
+        series.clear();
+        copy.clear();
+        assertEquals(before, openSpillFiles());
+    }
+
+    @Test
+    public void resetReleasesTheOldHistory() throws IOException {
+        int before = openSpillFiles();
+        RocketModel model = new RocketModel(null);
+        model.setHistoryResidentLimit(1);
+        model.setRocketParameters(10, new double[]{5, 5, 5}, new double[]{10, 10, 10}, 3500);
+        model.setFuelConsumptionPerCycle(0.001);
+        for (int i = 0; i < 40000 && model.step(); i++) {
+            // long enough to spill every history column
+        }
+        assertEquals(before + 4, openSpillFiles());
+        model.resetSimulationVariables();
+        assertEquals(before, openSpillFiles());
+    }
+}
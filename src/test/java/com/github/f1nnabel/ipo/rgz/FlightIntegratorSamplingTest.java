@@ -0,0 +1,75 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlightIntegratorSamplingTest {
+    private static RocketModel newModel(SamplingPolicy memory) {
+        RocketModel model = new RocketModel(null);
+        model.setRocketParameters(10, new double[]{5, 5, 5}, new double[]{3, 3, 3}, 3500);
+        model.setSamplingPolicy(SamplingPolicy.Sink.MEMORY, memory);
+        return model;
+    }
+
+    private static FlightResult fly(RocketModel model) {
+        return new FlightIntegrator(Integrator.Type.RK4.create()).run(model);
+    }
+
+    @Test
+    public void everySampleIsRecordedByDefault() {
+        RocketModel model = newModel(SamplingPolicy.always());
+        FlightResult result = fly(model);
+        assertEquals(result.getSteps(), model.getTimeData().size());
+        assertEquals(result.getSimulatedTime(), model.getTimeData().last(), 0);
+    }
+
+    @Test
+    public void memoryPolicyThinsTheHistory() {
+        long steps = fly(newModel(SamplingPolicy.always())).getSteps();
+        RocketModel model = newModel(SamplingPolicy.everyNth(10));
+        fly(model);
+        int size = model.getTimeData().size();
+        assertTrue("Recorded " + size + " of " + steps, size >= steps / 10 && size < steps / 5);
+        assertEquals(size, model.getAltitudeData().size());
+    }
+
+    @Test
+    public void neverPolicyKeepsOnlyStageSeparations() {
+        RocketModel model = newModel(SamplingPolicy.never());
+        FlightResult result = fly(model);
+        // events are sampled under any policy, as they are for step()
+        assertEquals(3, model.getTimeData().size());
+        assertTrue(result.isLanded());
+    }
+
+    @Test(timeout = 20000)
+    public void stageSeparationsReachTheObservers() throws InterruptedException {
+        RocketModel model = newModel(SamplingPolicy.never());
+        List<Integer> separations = new CopyOnWriteArrayList<>();
+        TelemetryObserver observer = new TelemetryObserver() {
+            @Override
+            public void onFrame(TelemetryFrame frame) {
+            }
+
+            @Override
+            public void onStageSeparation(int stageNumber) {
+                separations.add(stageNumber);
+            }
+        };
+        model.addObserver(observer);
+        try {
+            fly(model);
+            while (separations.size() < 3) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of(3, 2, 1), separations);
+        } finally {
+            model.removeObserver(observer);
+        }
+    }
+}
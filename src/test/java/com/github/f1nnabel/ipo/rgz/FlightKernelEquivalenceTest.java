@@ -0,0 +1,149 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+// The kernels must reproduce RocketModel.step() bit for bit, so every
+// comparison is on the raw bits of the doubles.
+public class FlightKernelEquivalenceTest {
+    // odd, so the vector loop also runs its scalar tail
+    private static final int LANES = 11;
+    private static final int MAX_STAGES = 4;
+
+    private static final class Trajectory {
+        final List<double[]> states = new ArrayList<>();
+        final List<Boolean> separations = new ArrayList<>();
+    }
+
+    private static List<FlightParameters> flights() {
+        List<FlightParameters> flights = new ArrayList<>();
+        flights.add(new FlightParameters(10, new double[]{5, 5, 5}, new double[]{3, 3, 3}, 3500, 10, 0.01, 0.1));
+        Random random = new Random(7);
+        while (flights.size() < LANES) {
+            int stages = 1 + random.nextInt(MAX_STAGES);
+            double[] stageMasses = new double[stages];
+            double[] fuelMasses = new double[stages];
+            double[] thrusts = new double[stages];
+            double[] consumption = new double[stages];
+            for (int i = 0; i < stages; i++) {
+                stageMasses[i] = 1 + random.nextDouble() * 6;
+                fuelMasses[i] = 1 + random.nextDouble() * 4;
+                thrusts[i] = 2500 + random.nextDouble() * 2000;
+                consumption[i] = 0.005 + random.nextDouble() * 0.025;
+            }
+            boolean stageEngines = random.nextBoolean();
+            flights.add(new FlightParameters(5 + random.nextDouble() * 10, stageMasses, fuelMasses,
+                    2500 + random.nextDouble() * 2000, 5 + random.nextInt(16), 0.005 + random.nextDouble() * 0.025,
+                    0.05 + random.nextDouble() * 0.15, stageEngines ? thrusts : null, stageEngines ? consumption : null));
+        }
+        return flights;
+    }
+
+    private static double[] state(double time, double speed, double altitude, double mass, int stages,
+                                  double[] fuel) {
+        double[] state = new double[5 + fuel.length];
+        state[0] = time;
+        state[1] = speed;
+        state[2] = altitude;
+        state[3] = mass;
+        state[4] = stages;
+        System.arraycopy(fuel, 0, state, 5, fuel.length);
+        return state;
+    }
+
+    private static Trajectory reference(FlightParameters parameters) {
+        Trajectory trajectory = new Trajectory();
+        RocketModel model = parameters.createModel();
+        model.setSamplingPolicy(SamplingPolicy.Sink.MEMORY, SamplingPolicy.never());
+        while (true) {
+            int stages = model.getRemainingStages();
+            if (!model.step()) {
+                return trajectory;
+            }
+            trajectory.states.add(state(model.getTotalTime(), model.getSpeed(), model.getAltitude(),
+                    model.getCurrentMass(), model.getRemainingStages(), model.getFuelMasses()));
+            trajectory.separations.add(model.getRemainingStages() != stages);
+        }
+    }
+
+    private static double[] state(FlightKernel kernel, int lane, int stageCount) {
+        double[] fuel = new double[stageCount];
+        for (int i = 0; i < stageCount; i++) {
+            fuel[i] = kernel.getFuel(lane, i);
+        }
+        return state(kernel.getTime(lane), kernel.getSpeed(lane), kernel.getAltitude(lane), kernel.getMass(lane),
+                kernel.getRemainingStages(lane), fuel);
+    }
+
+    private static void assertSameState(String where, Trajectory expected, int step, double[] actual) {
+        double[] state = expected.states.get(step);
+        for (int i = 0; i < state.length; i++) {
+            // a separation does not touch the model's mass until the next burning step
+            if (i == 3 && expected.separations.get(step)) {
+                continue;
+            }
+            assertEquals(where + ", step " + step + ", value " + i,
+                    Double.doubleToRawLongBits(state[i]), Double.doubleToRawLongBits(actual[i]));
+        }
+    }
+
+    @Test
+    public void scalarStepMatchesTheModel() {
+        for (FlightParameters parameters : flights()) {
+            Trajectory expected = reference(parameters);
+            FlightKernel kernel = new FlightKernel(1, parameters.getStageCount());
+            kernel.load(0, parameters);
+            int step = 0;
+            while (kernel.step(0) != FlightKernel.FINISHED) {
+                assertTrue(parameters + " runs past the model", step < expected.states.size());
+                assertSameState(parameters.toString(), expected, step, state(kernel, 0, parameters.getStageCount()));
+                step++;
+            }
+            assertEquals(parameters.toString(), expected.states.size(), step);
+        }
+    }
+
+    private static void assertStepAllMatchesTheModel(boolean vectorized) {
+        List<FlightParameters> flights = flights();
+        Trajectory[] expected = new Trajectory[LANES];
+        FlightKernel kernel = new FlightKernel(LANES, MAX_STAGES);
+        kernel.setVectorized(vectorized);
+        assertEquals(vectorized, kernel.isVectorized());
+        for (int lane = 0; lane < LANES; lane++) {
+            expected[lane] = reference(flights.get(lane));
+            kernel.load(lane, flights.get(lane));
+        }
+        int step = 0;
+        while (kernel.stepAll(LANES) > 0) {
+            for (int lane = 0; lane < LANES; lane++) {
+                if (step < expected[lane].states.size()) {
+                    assertSameState("lane " + lane, expected[lane], step,
+                            state(kernel, lane, flights.get(lane).getStageCount()));
+                }
+            }
+            step++;
+        }
+        for (int lane = 0; lane < LANES; lane++) {
+            assertTrue("lane " + lane + " stopped early", step >= expected[lane].states.size());
+            assertTrue(kernel.isFinished(lane));
+        }
+    }
+
+    @Test
+    public void scalarStepAllMatchesTheModel() {
+        assertStepAllMatchesTheModel(false);
+    }
+
+    @Test
+    public void vectorStepAllMatchesTheModel() {
+        assumeTrue(FlightKernel.VECTOR_API_AVAILABLE);
+        assertStepAllMatchesTheModel(true);
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// A replayed flight must be the recorded one bit for bit, wherever a seek
+// restores a keyframe and however far it steps from there.
+public class FlightReplayTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<double[]> reference = new ArrayList<>();
+    private FlightLog log;
+    private FlightReplay replay;
+
+    private static RocketModel newModel() {
+        RocketModel model = new RocketModel(null);
+        model.setCycleDelay(20);
+        model.setTimeStep(0.05);
+        model.setRocketParameters(10, new double[]{5, 4, 3}, new double[]{3, 2, 1}, 3500,
+                new double[]{3000, 3500, 4000}, new double[]{0.03, 0.02, 0.01});
+        model.setSamplingPolicy(SamplingPolicy.Sink.MEMORY, SamplingPolicy.never());
+        return model;
+    }
+
+    private static double[] state(RocketModel model) {
+        double[] fuel = model.getFuelMasses();
+        double[] state = new double[6 + fuel.length];
+        state[0] = model.getTotalTime();
+        state[1] = model.getSpeed();
+        state[2] = model.getAltitude();
+        state[3] = model.getHorizontalDistance();
+        state[4] = model.getCurrentMass();
+        state[5] = model.getRemainingStages();
+        System.arraycopy(fuel, 0, state, 6, fuel.length);
+        return state;
+    }
+
+    @Before
+    public void record() throws IOException {
+        RocketModel straight = newModel();
+        reference.add(state(straight));
+        while (straight.step()) {
+            reference.add(state(straight));
+        }
+
+        File file = folder.newFile("flight.rlog");
+        RocketModel recorded = newModel();
+        FlightRecorder recorder = new FlightRecorder(recorded, file, 0.5);
+        HeadlessSimulation simulation = new HeadlessSimulation(recorded);
+        simulation.setRecorder(recorder);
+        simulation.run();
+        recorder.close();
+        assertTrue(recorder.getKeyframeCount() > 10);
+        log = FlightLog.open(file);
+        replay = new FlightReplay(log);
+    }
+
+    @After
+    public void close() throws IOException {
+        replay.close();
+        log.close();
+    }
+
+    // A separation takes no time, so a seek lands after it, on the last
+    // reference state at that time.
+    private void assertSeekMatches(int step) {
+        while (step + 1 < reference.size() && reference.get(step + 1)[0] == reference.get(step)[0]) {
+            step++;
+        }
+        double[] expected = reference.get(step);
+        replay.seek(expected[0]);
+        double[] actual = state(replay.getModel());
+        assertEquals("stage count at step " + step, expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("step " + step + ", value " + i,
+                    Double.doubleToRawLongBits(expected[i]), Double.doubleToRawLongBits(actual[i]));
+        }
+    }
+
+    @Test
+    public void seekReproducesTheStraightRun() {
+        assertEquals(reference.get(reference.size() - 1)[0], log.getEndTime(), 0);
+        int last = reference.size() - 1;
+        for (int step : new int[]{0, 1, 7, 10, 11, last / 3, last / 2, last - 1, last}) {
+            assertSeekMatches(step);
+        }
+        // every step across the stage separations
+        for (int step = 1; step < last; step++) {
+            if (reference.get(step)[5] != reference.get(step - 1)[5]) {
+                assertSeekMatches(step - 2);
+                assertSeekMatches(step);
+                assertSeekMatches(step + 1);
+            }
+        }
+    }
+
+    @Test
+    public void rewindingRestoresEarlierStates() {
+        int last = reference.size() - 1;
+        assertSeekMatches(last);
+        for (int step = last; step > 0; step -= last / 17) {
+            assertSeekMatches(step);
+        }
+        assertSeekMatches(0);
+        assertSeekMatches(last / 2);
+        assertSeekMatches(last / 2 - 1);
+    }
+
+    @Test(timeout = 20000)
+    public void playingOverKeyframesPublishesEverySeparation() throws InterruptedException {
+        List<Integer> separations = new CopyOnWriteArrayList<>();
+        TelemetryObserver observer = new TelemetryObserver() {
+            @Override
+            public void onFrame(TelemetryFrame frame) {
+            }
+
+            @Override
+            public void onStageSeparation(int stageNumber) {
+                separations.add(stageNumber);
+            }
+        };
+        replay.addObserver(observer);
+        // fast enough that every move jumps over several keyframes
+        replay.setSpeed(1e4);
+        replay.play();
+        while (replay.isPlaying()) {
+            Thread.sleep(10);
+        }
+        replay.close();
+        assertEquals(log.getEndTime(), replay.getTime(), 0);
+        while (separations.size() < 3) {
+            Thread.sleep(10);
+        }
+        replay.removeObserver(observer);
+        assertEquals(List.of(3, 2, 1), separations);
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class MinMaxPyramidTest {
+    @Test
+    public void rangeMatchesAScanOfTheSamples() {
+        Random random = new Random(1);
+        DoubleSeries values = new DoubleSeries();
+        MinMaxPyramid pyramid = new MinMaxPyramid();
+        for (int i = 0; i < 5000; i++) {
+            double value = random.nextGaussian();
+            values.add(value);
+            pyramid.append(value);
+        }
+        double[] range = new double[2];
+        for (int k = 0; k < 2000; k++) {
+            int from = random.nextInt(values.size());
+            int to = from + 1 + random.nextInt(values.size() - from);
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, values.get(i));
+                max = Math.max(max, values.get(i));
+            }
+            pyramid.range(values, from, to, range);
+            assertEquals(min, range[0], 0);
+            assertEquals(max, range[1], 0);
+        }
+    }
+
+    @Test
+    public void clearStartsOver() {
+        MinMaxPyramid pyramid = new MinMaxPyramid();
+        DoubleSeries values = DoubleSeries.of(5, 6, 7, 8, 9, 10, 11, 12, 13);
+        for (int i = 0; i < values.size(); i++) {
+            pyramid.append(values.get(i));
+        }
+        pyramid.clear();
+        assertEquals(0, pyramid.size());
+        DoubleSeries next = DoubleSeries.of(-1, -2, -3, -4, -5, -6, -7, -8, -9, -10);
+        for (int i = 0; i < next.size(); i++) {
+            pyramid.append(next.get(i));
+        }
+        double[] range = new double[2];
+        pyramid.range(next, 0, next.size(), range);
+        assertEquals(-10, range[0], 0);
+        assertEquals(-1, range[1], 0);
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class MonteCarloRunnerTest {
+    // more than one full batch, so a single thread flies blocks of different sizes
+    private static final int FLIGHTS = 1100;
+    private static final long SEED = 42;
+
+    private static MonteCarloRunner newRunner(int parallelism) {
+        FlightParameters nominal = new FlightParameters(10, new double[]{5, 5, 5}, new double[]{3, 3, 3},
+                3500, 10, 0.01, 0.1);
+        return new MonteCarloRunner(nominal)
+                .setPayloadMass(ParameterDistribution.normal(10, 1))
+                .setFuelMass(0, ParameterDistribution.uniform(2.5, 3.5))
+                .setThrustPerKgFuel(ParameterDistribution.normal(3500, 100))
+                .setStageFuelConsumption(2, ParameterDistribution.uniform(0.005, 0.015))
+                .setParallelism(parallelism);
+    }
+
+    private static void assertSameResult(String where, FlightResult expected, FlightResult actual) {
+        assertEquals(where, expected.getSteps(), actual.getSteps());
+        assertEquals(where, Double.doubleToRawLongBits(expected.getSimulatedTime()),
+                Double.doubleToRawLongBits(actual.getSimulatedTime()));
+        assertEquals(where, Double.doubleToRawLongBits(expected.getApogee()),
+                Double.doubleToRawLongBits(actual.getApogee()));
+        assertEquals(where, Double.doubleToRawLongBits(expected.getMaxSpeed()),
+                Double.doubleToRawLongBits(actual.getMaxSpeed()));
+        assertEquals(where, Double.doubleToRawLongBits(expected.getBurnTime()),
+                Double.doubleToRawLongBits(actual.getBurnTime()));
+        assertEquals(where, expected.isLanded(), actual.isLanded());
+    }
+
+    @Test
+    public void sameSeedGivesTheSameFlightsWhateverTheBatching() {
+        MonteCarloResult expected = newRunner(1).run(FLIGHTS, SEED);
+        // parallelism sets the batch size: 1024, 158 and 18 flights per block
+        for (int parallelism : new int[]{7, 64}) {
+            MonteCarloResult actual = newRunner(parallelism).run(FLIGHTS, SEED);
+            assertEquals(FLIGHTS, actual.getFlightCount());
+            for (int flight = 0; flight < FLIGHTS; flight++) {
+                String where = "parallelism " + parallelism + ", flight " + flight;
+                assertEquals(where, expected.getParameters(flight), actual.getParameters(flight));
+                assertSameResult(where, expected.getResult(flight), actual.getResult(flight));
+            }
+        }
+    }
+
+    @Test
+    public void batchedFlightsMatchSingleFlights() {
+        MonteCarloRunner runner = newRunner(3);
+        MonteCarloResult result = runner.run(40, SEED);
+        for (int flight = 0; flight < 40; flight++) {
+            FlightParameters parameters = runner.sample(SEED, flight);
+            assertEquals(parameters, result.getParameters(flight));
+            assertSameResult("flight " + flight, parameters.simulate(), result.getResult(flight));
+        }
+    }
+
+    @Test
+    public void differentSeedsGiveDifferentFlights() {
+        MonteCarloResult first = newRunner(4).run(100, SEED);
+        MonteCarloResult second = newRunner(4).run(100, SEED + 1);
+        int differing = 0;
+        for (int flight = 0; flight < 100; flight++) {
+            assertFalse("flight " + flight + " drew the same parameters",
+                    first.getParameters(flight).equals(second.getParameters(flight)));
+            if (first.getResult(flight).getApogee() != second.getResult(flight).getApogee()) {
+                differing++;
+            }
+        }
+        assertEquals(100, differing);
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+
+public class ObserverBusTest {
+    private static final class SeparationObserver implements TelemetryObserver {
+        final BlockingQueue<Thread> threads = new ArrayBlockingQueue<>(16);
+
+        @Override
+        public void onFrame(TelemetryFrame frame) {
+        }
+
+        @Override
+        public void onStageSeparation(int stageNumber) {
+            threads.add(Thread.currentThread());
+        }
+
+        Thread awaitDelivery() throws InterruptedException {
+            Thread thread = threads.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Stage separation was not delivered", thread);
+            return thread;
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void dispatcherStopsWithTheLastSubscriber() throws InterruptedException {
+        ObserverBus bus = new ObserverBus();
+        SeparationObserver first = new SeparationObserver();
+        SeparationObserver second = new SeparationObserver();
+        bus.subscribe(first);
+        bus.subscribe(second);
+        bus.publishStageSeparation(1);
+        Thread dispatcher = first.awaitDelivery();
+        assertEquals(dispatcher, second.awaitDelivery());
+
+        bus.unsubscribe(first);
+        bus.publishStageSeparation(2);
+        assertEquals(dispatcher, second.awaitDelivery());
+        assertEquals(0, first.threads.size());
+
+        bus.unsubscribe(second);
+        dispatcher.join(5000);
+        assertFalse("Dispatcher outlived its subscribers", dispatcher.isAlive());
+
+        bus.subscribe(first);
+        bus.publishStageSeparation(3);
+        Thread next = first.awaitDelivery();
+        assertNotSame(dispatcher, next);
+        bus.unsubscribe(first);
+        next.join(5000);
+        assertFalse(next.isAlive());
+    }
+
+    @Test(timeout = 20000)
+    public void busesShareOneDispatcher() throws InterruptedException {
+        ObserverBus firstBus = new ObserverBus();
+        ObserverBus secondBus = new ObserverBus();
+        SeparationObserver first = new SeparationObserver();
+        SeparationObserver second = new SeparationObserver();
+        firstBus.subscribe(first);
+        secondBus.subscribe(second);
+        firstBus.publishStageSeparation(1);
+        secondBus.publishStageSeparation(1);
+        Thread dispatcher = first.awaitDelivery();
+        assertEquals(dispatcher, second.awaitDelivery());
+
+        // the dispatcher keeps serving the bus that still has a subscriber
+        firstBus.unsubscribe(first);
+        secondBus.publishStageSeparation(2);
+        assertEquals(dispatcher, second.awaitDelivery());
+        secondBus.unsubscribe(second);
+        dispatcher.join(5000);
+        assertFalse(dispatcher.isAlive());
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ParameterSweepTest {
+    private static final FlightParameters BASE = new FlightParameters(10, new double[]{5, 5, 5},
+            new double[]{3, 3, 3}, 3500, 10, 0.01, 0.1);
+
+    @Test
+    public void concurrentCellsWithTheSameParametersFlyOnce() {
+        ParameterSweep sweep = new ParameterSweep(BASE).setParallelism(4);
+        SweepResult result = sweep.sweep(SweepAxis.payloadMass(10, 10, 10, 10, 10, 10, 10, 10),
+                SweepAxis.thrustPerKgFuel(3500, 3500, 3500, 3500));
+        assertEquals(1, sweep.getFlightsRun());
+        assertEquals(31, sweep.getCacheHits());
+        assertEquals(1, sweep.getCacheSize());
+        assertSame(sweep.evaluate(BASE), sweep.evaluate(BASE));
+    }
+
+    @Test
+    public void distinctParametersFlySeparately() {
+        ParameterSweep sweep = new ParameterSweep(BASE).setParallelism(2);
+        sweep.sweep(SweepAxis.payloadMass(5, 10), SweepAxis.thrustPerKgFuel(3000, 3500, 4000));
+        assertEquals(6, sweep.getFlightsRun());
+        assertEquals(0, sweep.getCacheHits());
+        sweep.clearCache();
+        sweep.evaluate(BASE);
+        assertEquals(7, sweep.getFlightsRun());
+    }
+}
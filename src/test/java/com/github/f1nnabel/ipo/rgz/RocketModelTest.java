@@ -0,0 +1,25 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RocketModelTest {
+    @Test
+    public void timeStepFollowsTheCycleDelayUntilItIsSet() {
+        RocketModel model = new RocketModel(null);
+        model.setRocketParameters(10, new double[]{5, 5, 5}, new double[]{3, 3, 3}, 3500);
+        model.setCycleDelay(20);
+        assertEquals(0.02, model.getDeltaTime(), 0);
+
+        model.setTimeStep(0.05);
+        model.setCycleDelay(200);
+        assertEquals(200, model.getCycleDelay());
+        assertEquals(0.05, model.getDeltaTime(), 0);
+
+        RocketModel copy = new RocketModel(null);
+        copy.copyFrom(model);
+        copy.setCycleDelay(10);
+        assertEquals(0.05, copy.getDeltaTime(), 0);
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RocketStateConcurrencyTest {
+    private static final int READERS = 3;
+    private static final int ROUNDS = 3000;
+
+    // Short flights with different stage counts, so a read that mixes a
+    // parameter change with the state it replaces cannot match either one.
+    private static void fly(RocketModel model, boolean big, Set<String> states) {
+        if (big) {
+            model.setRocketParameters(4, new double[]{2, 2, 2, 2}, new double[]{0.2, 0.2, 0.2, 0.2}, 3000);
+        } else {
+            model.setRocketParameters(10, new double[]{5, 5, 5}, new double[]{0.3, 0.3, 0.3}, 3500);
+        }
+        record(model, states);
+        model.resetSimulationVariables();
+        record(model, states);
+        while (model.step()) {
+            record(model, states);
+        }
+    }
+
+    private static void record(RocketModel model, Set<String> states) {
+        if (states != null) {
+            states.add(key(model.readState(new RocketState())));
+        }
+    }
+
+    private static String key(RocketState state) {
+        return state.getTotalTime() + " " + state.getCurrentMass() + " " + state.getSpeed() + " "
+                + state.getAltitude() + " " + state.getHorizontalDistance() + " " + state.getRemainingStages()
+                + " " + Arrays.toString(state.getFuelMasses());
+    }
+
+    private static RocketModel newModel() {
+        RocketModel model = new RocketModel(null);
+        model.setSamplingPolicy(SamplingPolicy.Sink.MEMORY, SamplingPolicy.never());
+        return model;
+    }
+
+    @Test(timeout = 60000)
+    public void readersOnlySeeStatesTheWriterPublished() throws InterruptedException {
+        // every state the writer's sequence goes through; from the third round on it repeats
+        Set<String> published = new HashSet<>();
+        RocketModel reference = newModel();
+        for (int round = 0; round < 4; round++) {
+            fly(reference, round % 2 == 1, published);
+        }
+
+        RocketModel model = newModel();
+        fly(model, false, null);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> torn = new AtomicReference<>();
+        AtomicLong reads = new AtomicLong();
+        Thread[] readers = new Thread[READERS];
+        for (int i = 0; i < READERS; i++) {
+            readers[i] = new Thread(() -> {
+                RocketState state = new RocketState();
+                while (!done.get() && torn.get() == null) {
+                    String key = key(model.readState(state));
+                    if (!published.contains(key)) {
+                        torn.compareAndSet(null, key);
+                    }
+                    reads.incrementAndGet();
+                }
+            });
+            readers[i].start();
+        }
+        for (int round = 1; round < ROUNDS && torn.get() == null; round++) {
+            fly(model, round % 2 == 1, null);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull("Torn state read: " + torn.get(), torn.get());
+        assertTrue(reads.get() > 0);
+    }
+
+    @Test
+    public void readStateMatchesTheModel() {
+        RocketModel model = newModel();
+        fly(model, false, null);
+        RocketState state = model.readState(new RocketState());
+        assertEquals(model.getTotalTime(), state.getTotalTime(), 0);
+        assertEquals(model.getCurrentMass(), state.getCurrentMass(), 0);
+        assertEquals(0, state.getRemainingStages());
+        assertEquals(3, state.getFuelMasses().length);
+    }
+
+    private static void assertRejected(String mutator, Runnable call) {
+        try {
+            call.run();
+            fail(mutator + " changed a running simulation");
+        } catch (IllegalStateException expected) {
+            // the simulation keeps its parameters
+        }
+    }
+
+    @Test
+    public void mutatorsRejectARunningSimulation() {
+        RocketModel model = newModel();
+        model.setRocketParameters(10, new double[]{5, 5, 5}, new double[]{3, 3, 3}, 3500);
+        model.startSimulation(true);
+        model.pauseSimulation();
+        try {
+            assertRejected("setRocketParameters",
+                    () -> model.setRocketParameters(4, new double[]{2, 2}, new double[]{1, 1}, 3000));
+            assertRejected("setStages", () -> model.setStages(new double[]{2, 2}, new double[]{1, 1}, null, null));
+            assertRejected("setStageMasses", () -> model.setStageMasses(new double[]{2, 2}));
+            assertRejected("setFuelMasses", () -> model.setFuelMasses(new double[]{1, 1}));
+            assertRejected("setPayloadMass", () -> model.setPayloadMass(4));
+            assertRejected("setThrustPerKgFuel", () -> model.setThrustPerKgFuel(3000));
+            assertRejected("setStageEngines",
+                    () -> model.setStageEngines(new double[]{3000, 3000, 3000}, new double[]{0.1, 0.1, 0.1}));
+            assertRejected("setCycleDelay", () -> model.setCycleDelay(20));
+            assertRejected("setTimeStep", () -> model.setTimeStep(0.01));
+            assertRejected("setFuelConsumptionPerCycle", () -> model.setFuelConsumptionPerCycle(0.1));
+            assertRejected("setHistoryResidentLimit", () -> model.setHistoryResidentLimit(1));
+            assertRejected("setSamplingPolicy",
+                    () -> model.setSamplingPolicy(SamplingPolicy.Sink.MEMORY, SamplingPolicy.always()));
+            assertRejected("resetSimulationVariables", model::resetSimulationVariables);
+        } finally {
+            model.stopSimulation();
+        }
+        assertEquals(3, model.getStageCount());
+        assertEquals(10, model.getPayloadMass(), 0);
+        assertEquals(3500, model.getThrustPerKgFuel(), 0);
+        assertEquals(100, model.getCycleDelay());
+        assertEquals(0.1, model.getDeltaTime(), 0);
+        assertEquals(0.01, model.getFuelConsumptionPerCycle(), 0);
+        assertNull(model.getStageThrustPerKgFuel());
+
+        model.setRocketParameters(4, new double[]{2, 2}, new double[]{1, 1}, 3000);
+        assertEquals(2, model.getStageCount());
+        model.setCycleDelay(20);
+        model.setPayloadMass(5);
+        assertEquals(5, model.getPayloadMass(), 0);
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RunHistoryRepositoryTest {
+    private static final int ROWS = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RunHistoryRepository repository;
+
+    // One run of ROWS ticks, time = tick / 10 and altitude = tick.
+    @Before
+    public void createRun() throws Exception {
+        String url = "jdbc:sqlite:" + folder.newFile("runs.db").getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            DatabaseManager.upgradeSchema(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT INTO runs (settings_id, delta_time) VALUES (NULL, 0.1);");
+            }
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO telemetry (run_id, tick, time,"
+                    + " currentMass, speed, altitude) VALUES (1, ?, ?, ?, ?, ?);")) {
+                for (int tick = 0; tick < ROWS; tick++) {
+                    insert.setLong(1, tick);
+                    insert.setDouble(2, tick / 10.0);
+                    insert.setDouble(3, 100 - tick / 100.0);
+                    insert.setDouble(4, tick % 7);
+                    insert.setDouble(5, tick);
+                    insert.executeUpdate();
+                }
+            }
+            conn.commit();
+        }
+        repository = new RunHistoryRepository(url);
+    }
+
+    @After
+    public void close() {
+        repository.close();
+    }
+
+    @Test
+    public void smallWindowsReturnEveryRow() throws SQLException {
+        RunTelemetry telemetry = repository.loadTelemetry(1, 10, 19.95, 100);
+        assertFalse(telemetry.isDownsampled());
+        assertEquals(100, telemetry.getTimeData().size());
+        assertEquals(10, telemetry.getTimeData().get(0), 0);
+        assertEquals(199, telemetry.getAltitudeData().get(99), 0);
+    }
+
+    @Test
+    public void bucketsNeverExceedMaxPoints() throws SQLException {
+        // the last row lies exactly on toTime and must join the last bucket
+        RunTelemetry telemetry = repository.loadTelemetry(1, 0, (ROWS - 1) / 10.0, 10);
+        assertTrue(telemetry.isDownsampled());
+        assertEquals(2 * 10, telemetry.getTimeData().size());
+        assertEquals(ROWS - 1, telemetry.getAltitudeData().get(19), 0);
+        // envelope rows pair each column's own extreme
+        assertEquals(0, telemetry.getAltitudeData().get(0), 0);
+        assertEquals(0, telemetry.getSpeedData().get(0), 0);
+        assertEquals(6, telemetry.getSpeedData().get(1), 0);
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SimFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertSameHistory(RocketModel expected, RocketModel actual) {
+        assertArrayEquals(expected.getTimeData().toArray(), actual.getTimeData().toArray(), 0);
+        assertArrayEquals(expected.getSpeedData().toArray(), actual.getSpeedData().toArray(), 0);
+        assertArrayEquals(expected.getAltitudeData().toArray(), actual.getAltitudeData().toArray(), 0);
+        assertArrayEquals(expected.getMassData().toArray(), actual.getMassData().toArray(), 0);
+    }
+
+    private static void assertSameState(RocketModel expected, RocketModel actual) {
+        assertEquals(expected.getTotalTime(), actual.getTotalTime(), 0);
+        assertEquals(expected.getCurrentMass(), actual.getCurrentMass(), 0);
+        assertEquals(expected.getSpeed(), actual.getSpeed(), 0);
+        assertEquals(expected.getAltitude(), actual.getAltitude(), 0);
+        assertEquals(expected.getHorizontalDistance(), actual.getHorizontalDistance(), 0);
+        assertEquals(expected.getRemainingStages(), actual.getRemainingStages());
+        assertArrayEquals(expected.getFuelMasses(), actual.getFuelMasses(), 0);
+    }
+
+    @Test
+    public void roundTripKeepsTheFlightAndItsHistory() throws IOException {
+        RocketModel model = new RocketModel(null);
+        model.setCycleDelay(20);
+        model.setFuelConsumptionPerCycle(0.02);
+        model.setRocketParameters(10, new double[]{5, 4, 3}, new double[]{3, 2, 1}, 3500,
+                new double[]{3000, 3500, 4000}, new double[]{0.03, 0.02, 0.01});
+        for (int i = 0; i < 500; i++) {
+            model.step();
+        }
+        File file = folder.newFile("flight.sim");
+        SimFile.write(file, model);
+        assertTrue(SimFile.isSimFile(file));
+
+        RocketModel loaded = new RocketModel(null);
+        SimFile.read(file, loaded);
+        assertEquals(model.getCycleDelay(), loaded.getCycleDelay());
+        assertEquals(model.getDeltaTime(), loaded.getDeltaTime(), 0);
+        assertEquals(model.getPayloadMass(), loaded.getPayloadMass(), 0);
+        assertArrayEquals(model.getStageMasses(), loaded.getStageMasses(), 0);
+        assertArrayEquals(model.getInitialFuelMasses(), loaded.getInitialFuelMasses(), 0);
+        assertArrayEquals(model.getStageThrustPerKgFuel(), loaded.getStageThrustPerKgFuel(), 0);
+        assertArrayEquals(model.getStageFuelConsumption(), loaded.getStageFuelConsumption(), 0);
+        assertSameState(model, loaded);
+        assertSameHistory(model, loaded);
+        assertEquals(model.getAltitudeData().max(), loaded.getAltitudeData().max(), 0);
+        assertEquals(model.getSpeedData().mean(), loaded.getSpeedData().mean(), 1e-9);
+
+        // the loaded flight goes on from the mapped history exactly like the original
+        while (model.step()) {
+            assertTrue(loaded.step());
+        }
+        assertFalse(loaded.step());
+        assertSameState(model, loaded);
+        assertSameHistory(model, loaded);
+    }
+
+    @Test
+    public void versionOneFileLoads() throws IOException {
+        int stages = 2;
+        double[][] columns = {{0.1, 0.2, 0.3}, {5, 9, 12}, {0.5, 1.2, 2.3}, {30, 29.9, 29.8}};
+        int samples = columns[0].length;
+        int headerBytes = 8 * Integer.BYTES + 9 * Double.BYTES + (3 * stages + 12) * Double.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(headerBytes + 4 * samples * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(SimFile.MAGIC).putInt(1).putInt(headerBytes).putInt(stages).putInt(samples)
+                .putInt(15).putInt(2).putInt(0);
+        buffer.putDouble(10).putDouble(3500).putDouble(0.01).putDouble(0.1);
+        buffer.putDouble(0.3).putDouble(29.8).putDouble(12).putDouble(2.3).putDouble(0);
+        buffer.putDouble(5).putDouble(4);
+        buffer.putDouble(3).putDouble(2.8);
+        buffer.putDouble(3).putDouble(3);
+        for (double[] column : columns) {
+            double min = column[0];
+            double max = column[0];
+            double sum = 0;
+            for (double value : column) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value;
+            }
+            buffer.putDouble(min).putDouble(max).putDouble(sum);
+        }
+        for (double[] column : columns) {
+            for (double value : column) {
+                buffer.putDouble(value);
+            }
+        }
+        File file = folder.newFile("v1.sim");
+        Files.write(file.toPath(), buffer.array());
+
+        RocketModel loaded = new RocketModel(null);
+        SimFile.read(file, loaded);
+        assertEquals(15, loaded.getCycleDelay());
+        assertEquals(0.1, loaded.getDeltaTime(), 0);
+        assertEquals(10, loaded.getPayloadMass(), 0);
+        assertEquals(3500, loaded.getThrustPerKgFuel(), 0);
+        assertArrayEquals(new double[]{5, 4}, loaded.getStageMasses(), 0);
+        assertArrayEquals(new double[]{3, 2.8}, loaded.getFuelMasses(), 0);
+        assertArrayEquals(new double[]{3, 3}, loaded.getInitialFuelMasses(), 0);
+        assertNull(loaded.getStageThrustPerKgFuel());
+        assertEquals(0.3, loaded.getTotalTime(), 0);
+        assertEquals(2.3, loaded.getAltitude(), 0);
+        assertEquals(2, loaded.getRemainingStages());
+        assertArrayEquals(columns[0], loaded.getTimeData().toArray(), 0);
+        assertArrayEquals(columns[1], loaded.getSpeedData().toArray(), 0);
+        assertArrayEquals(columns[2], loaded.getAltitudeData().toArray(), 0);
+        assertArrayEquals(columns[3], loaded.getMassData().toArray(), 0);
+        assertEquals(12, loaded.getSpeedData().max(), 0);
+        assertTrue(loaded.step());
+        assertEquals(4, loaded.getTimeData().size());
+    }
+
+    @Test
+    public void otherFilesAreRejected() throws IOException {
+        File text = folder.newFile("settings.json");
+        Files.write(text.toPath(), "{\"payloadMass\": 10}".getBytes("UTF-8"));
+        assertFalse(SimFile.isSimFile(text));
+        try {
+            SimFile.read(text, new RocketModel(null));
+            fail("Read a JSON file as a simulation file");
+        } catch (IOException expected) {
+            // not a simulation file
+        }
+
+        File future = folder.newFile("future.sim");
+        Files.write(future.toPath(), ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(SimFile.MAGIC).putInt(SimFile.VERSION + 1).array());
+        try {
+            SimFile.read(future, new RocketModel(null));
+            fail("Read a simulation file from a newer version");
+        } catch (IOException expected) {
+            // unsupported version
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SimulationEngineTest {
+    private static final int WORKERS = 2;
+
+    private static final class CountingObserver implements TelemetryObserver {
+        final AtomicInteger frames = new AtomicInteger();
+
+        @Override
+        public void onFrame(TelemetryFrame frame) {
+            frames.incrementAndGet();
+        }
+
+        @Override
+        public void onStageSeparation(int stageNumber) {
+        }
+    }
+
+    private static RocketModel newModel(int cycleDelay) {
+        RocketModel model = new RocketModel(null);
+        model.setCycleDelay(cycleDelay);
+        model.setTimeStep(0.1);
+        model.setRocketParameters(10, new double[]{5, 5, 5}, new double[]{3, 3, 3}, 3500);
+        return model;
+    }
+
+    private static int countThreads(String namePrefix) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith(namePrefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void assertBoundedThreads() {
+        assertTrue(countThreads("simulation-engine-") <= WORKERS);
+        assertTrue(countThreads("rocket-observers") <= 1);
+        assertEquals(0, countThreads("rocket-simulation"));
+    }
+
+    private static int sampleCount(RocketModel model) {
+        return model.readState(new RocketState()).getSampleCount();
+    }
+
+    @Test(timeout = 60000)
+    public void manyObservedModelsShareTheEngineAndOneDispatcher() throws InterruptedException {
+        List<RocketModel> models = new ArrayList<>();
+        List<CountingObserver> observers = new ArrayList<>();
+        try (SimulationEngine engine = new SimulationEngine(WORKERS)) {
+            for (int i = 0; i < 64; i++) {
+                RocketModel model = newModel(1);
+                CountingObserver observer = new CountingObserver();
+                model.addObserver(observer);
+                assertSame(model, engine.add(model).getModel());
+                models.add(model);
+                observers.add(observer);
+            }
+            engine.startAll(true);
+            assertBoundedThreads();
+
+            engine.pauseAll();
+            for (RocketModel model : models) {
+                model.getEngineInstance().awaitTick();
+            }
+            int[] paused = new int[models.size()];
+            for (int i = 0; i < models.size(); i++) {
+                assertTrue(models.get(i).isPaused());
+                paused[i] = sampleCount(models.get(i));
+            }
+            Thread.sleep(50);
+            for (int i = 0; i < models.size(); i++) {
+                assertEquals("paused model " + i + " went on", paused[i], sampleCount(models.get(i)));
+            }
+            assertBoundedThreads();
+
+            engine.resumeAll();
+            assertTrue(engine.awaitFinished(50, TimeUnit.SECONDS));
+            assertBoundedThreads();
+            for (int i = 0; i < models.size(); i++) {
+                assertTrue(models.get(i).isFlightFinished());
+                assertTrue("observer " + i + " got no frames", observers.get(i).frames.get() > 0);
+            }
+        } finally {
+            for (int i = 0; i < models.size(); i++) {
+                models.get(i).removeObserver(observers.get(i));
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void removedModelStopsAndRunsOnItsOwnThread() throws InterruptedException {
+        try (SimulationEngine engine = new SimulationEngine(WORKERS)) {
+            RocketModel model = newModel(5);
+            engine.add(model);
+            model.startSimulation(true);
+            Thread.sleep(50);
+            engine.remove(model);
+            assertFalse(model.isRunning());
+            assertNull(model.getEngineInstance());
+            assertEquals(0, engine.size());
+            int samples = sampleCount(model);
+            Thread.sleep(50);
+            assertEquals("the engine ran a removed model", samples, sampleCount(model));
+
+            model.setCycleDelay(0);
+            model.startSimulation(false);
+            while (model.isRunning()) {
+                Thread.sleep(10);
+            }
+            assertTrue(model.isFlightFinished());
+        }
+    }
+
+    // Steps arrive from several threads while the model's next iteration is
+    // still scheduled a second ahead; every one must run exactly once.
+    @Test(timeout = 60000)
+    public void stepsRacingADelayedIterationRunExactlyOnce() throws InterruptedException {
+        final int threads = 4;
+        final int stepsPerThread = 100;
+        try (SimulationEngine engine = new SimulationEngine(WORKERS)) {
+            RocketModel model = newModel(1000);
+            SimulationEngine.Instance instance = engine.add(model);
+            model.startSimulation(true);
+            model.pauseSimulation();
+            instance.awaitTick();
+            int before = sampleCount(model);
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> steppers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Thread stepper = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < stepsPerThread; j++) {
+                        model.stepSimulation(1);
+                    }
+                });
+                stepper.start();
+                steppers.add(stepper);
+            }
+            start.countDown();
+            for (Thread stepper : steppers) {
+                stepper.join();
+            }
+            int expected = before + threads * stepsPerThread;
+            while (sampleCount(model) < expected) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(50);
+            assertEquals(expected, sampleCount(model));
+            assertTrue(model.isPaused());
+            model.stopSimulation();
+        }
+    }
+}
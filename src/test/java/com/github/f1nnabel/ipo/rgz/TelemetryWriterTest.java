@@ -0,0 +1,80 @@
+package com.github.f1nnabel.ipo.rgz;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TelemetryWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String url;
+
+    @Before
+    public void createTables() throws Exception {
+        url = "jdbc:sqlite:" + folder.newFile("telemetry.db").getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE settings (id INTEGER PRIMARY KEY AUTOINCREMENT);");
+            stmt.execute("CREATE TABLE runs (id INTEGER PRIMARY KEY AUTOINCREMENT, settings_id INTEGER, delta_time REAL);");
+            stmt.execute("CREATE TABLE telemetry (run_id INTEGER, tick INTEGER, time REAL, currentMass REAL, speed REAL,"
+                    + " altitude REAL, horizontalDistance REAL, remainingStages INTEGER, fuelMasses BLOB);");
+        }
+    }
+
+    @Test
+    public void rowsReusedByTheWriterKeepTheirOwnValues() throws SQLException {
+        RocketModel model = new RocketModel(null);
+        model.setRocketParameters(10, new double[]{5, 5, 5}, new double[]{3, 3, 3}, 3500);
+        TelemetryWriter writer = new TelemetryWriter(url, 16, 8, 1, TelemetryWriter.BackpressurePolicy.BLOCK);
+        int rows = 0;
+        while (model.step()) {
+            writer.submit(model);
+            rows++;
+        }
+        writer.close();
+        assertEquals(rows, writer.getRowsWritten());
+        assertEquals(0, writer.getRowsDropped());
+
+        RocketModel replay = new RocketModel(null);
+        replay.setRocketParameters(10, new double[]{5, 5, 5}, new double[]{3, 3, 3}, 3500);
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT time, altitude, fuelMasses FROM telemetry ORDER BY tick;")) {
+            int read = 0;
+            while (rs.next()) {
+                assertTrue(replay.step());
+                assertEquals(replay.getTotalTime(), rs.getDouble("time"), 0);
+                assertEquals(replay.getAltitude(), rs.getDouble("altitude"), 0);
+                assertArrayEquals(replay.getFuelMasses(), TelemetryWriter.unpackDoubles(rs.getBytes("fuelMasses")), 0);
+                read++;
+            }
+            assertEquals(rows, read);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void closedWriterDropsRowsWithoutBlocking() throws SQLException {
+        RocketModel model = new RocketModel(null);
+        model.setRocketParameters(10, new double[]{5, 5, 5}, new double[]{3, 3, 3}, 3500);
+        TelemetryWriter writer = new TelemetryWriter(url, 1, 1, 1, TelemetryWriter.BackpressurePolicy.BLOCK);
+        writer.close();
+        writer.close();
+        for (int i = 0; i < 100; i++) {
+            writer.submit(model);
+        }
+        assertEquals(100, writer.getRowsDropped());
+        assertEquals(0, writer.getPendingRows());
+    }
+}